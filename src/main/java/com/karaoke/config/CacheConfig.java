@@ -1,6 +1,11 @@
 package com.karaoke.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.KaraokeJob;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -9,22 +14,70 @@ import org.springframework.context.annotation.Configuration;
 
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Caffeine caches with their own sizing and expiry. Every cache records stats, which
+ * are exposed under {@code /health/caches}.
+ */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    public static final String HEALTH_CACHE = "health";
+    public static final String JOBS_CACHE = "jobs";
+
+    // Spec for caches that are not configured explicitly below
+    @Value("${app.cache.default-spec:maximumSize=1000,expireAfterWrite=10m}")
+    private String defaultSpec;
+
+    @Value("${app.cache.health-spec:maximumSize=10,expireAfterWrite=10s}")
+    private String healthSpec;
+
+    @Value("${app.cache.jobs.maximum-size:10000}")
+    private long jobsMaximumSize;
+
+    // Other nodes may be advancing an in-flight job, so its entry only lives briefly
+    @Value("${app.cache.jobs.in-flight-ttl-ms:2000}")
+    private long inFlightTtlMs;
+
+    @Value("${app.cache.jobs.terminal-ttl-ms:600000}")
+    private long terminalTtlMs;
+
     @Bean
-    public CacheManager cacheManager() {
+    public Cache<Long, KaraokeJob> jobsNativeCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(jobsMaximumSize)
+                .expireAfter(new Expiry<Long, KaraokeJob>() {
+                    @Override
+                    public long expireAfterCreate(Long id, KaraokeJob job, long currentTime) {
+                        return ttlNanos(job);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, KaraokeJob job, long currentTime, long currentDuration) {
+                        return ttlNanos(job);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, KaraokeJob job, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public CacheManager cacheManager(Cache<Long, KaraokeJob> jobsNativeCache) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCaffeine(caffeineCacheBuilder());
+        cacheManager.setCaffeine(Caffeine.from(defaultSpec).recordStats());
+        cacheManager.registerCustomCache(HEALTH_CACHE, Caffeine.from(healthSpec).recordStats().build());
+        cacheManager.registerCustomCache(JOBS_CACHE, (Cache<Object, Object>) (Cache<?, ?>) jobsNativeCache);
         return cacheManager;
     }
 
-    private Caffeine<Object, Object> caffeineCacheBuilder() {
-        return Caffeine.newBuilder()
-                .initialCapacity(100)
-                .maximumSize(1000)
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .recordStats();
+    private long ttlNanos(KaraokeJob job) {
+        boolean terminal = job.getStatus() == JobStatus.COMPLETED || job.getStatus() == JobStatus.FAILED;
+        return TimeUnit.MILLISECONDS.toNanos(terminal ? terminalTtlMs : inFlightTtlMs);
     }
 }
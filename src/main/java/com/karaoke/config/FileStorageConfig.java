@@ -20,6 +20,9 @@ public class FileStorageConfig {
     @Value("${app.storage.output-dir:./output}")
     private String outputDir;
 
+    @Value("${app.storage.cache-dir:./cache}")
+    private String cacheDir;
+
     @Value("${app.storage.retention-hours:24}")
     private Integer retentionHours;
 
@@ -28,6 +31,7 @@ public class FileStorageConfig {
         try {
             Path tempPath = Paths.get(tempDir);
             Path outputPath = Paths.get(outputDir);
+            Path cachePath = Paths.get(cacheDir);
             
             if (!Files.exists(tempPath)) {
                 Files.createDirectories(tempPath);
@@ -35,6 +39,9 @@ public class FileStorageConfig {
             if (!Files.exists(outputPath)) {
                 Files.createDirectories(outputPath);
             }
+            if (!Files.exists(cachePath)) {
+                Files.createDirectories(cachePath);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to create storage directories", e);
         }
@@ -47,4 +54,8 @@ public class FileStorageConfig {
     public String getOutputDirPath() {
         return new File(outputDir).getAbsolutePath();
     }
+
+    public String getCacheDirPath() {
+        return new File(cacheDir).getAbsolutePath();
+    }
 }
@@ -0,0 +1,39 @@
+package com.karaoke.config;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Identifies this instance when it leases jobs from the shared queue. Set {@code app.node.id}
+ * to a stable value (e.g. a StatefulSet pod name) so a restarted node can reclaim its own
+ * jobs immediately instead of waiting for their leases to expire.
+ */
+@Component
+@Getter
+@Slf4j
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity(@Value("${app.node.id:}") String configuredNodeId) {
+        this.nodeId = configuredNodeId != null && !configuredNodeId.isBlank()
+                ? configuredNodeId
+                : defaultNodeId();
+        log.info("Node id: {}", nodeId);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,82 @@
+package com.karaoke.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * One bounded pool per pipeline stage type, so a network-bound download never holds a slot
+ * that a CPU-bound encode could use and stages of different jobs overlap. A size of 0 means
+ * "derive from the core count". Separation and encoding are multi-threaded themselves, so
+ * their pools get a share of the cores rather than one slot per core.
+ */
+@Configuration
+@Getter
+@Slf4j
+public class PipelineExecutors {
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    @Value("${app.pipeline.download-threads:0}")
+    private int downloadThreads;
+
+    @Value("${app.pipeline.separation-threads:0}")
+    private int separationThreads;
+
+    @Value("${app.pipeline.lyrics-threads:0}")
+    private int lyricsThreads;
+
+    // Concurrent lyrics provider requests of all jobs; they only wait on the network
+    @Value("${app.pipeline.lyrics-provider-threads:0}")
+    private int lyricsProviderThreads;
+
+    @Value("${app.pipeline.render-threads:0}")
+    private int renderThreads;
+
+    // Chunks of chunked renders from all jobs share this pool, which bounds their encoders
+    @Value("${app.pipeline.render-chunk-threads:0}")
+    private int renderChunkThreads;
+
+    private ThreadPoolTaskExecutor downloadExecutor;
+    private ThreadPoolTaskExecutor separationExecutor;
+    private ThreadPoolTaskExecutor lyricsExecutor;
+    private ThreadPoolTaskExecutor lyricsProviderExecutor;
+    private ThreadPoolTaskExecutor renderExecutor;
+    private ThreadPoolTaskExecutor renderChunkExecutor;
+
+    @PostConstruct
+    public void init() {
+        downloadExecutor = createExecutor("download", downloadThreads, Math.max(4, CORES));
+        separationExecutor = createExecutor("separation", separationThreads, Math.max(1, CORES / 4));
+        lyricsExecutor = createExecutor("lyrics", lyricsThreads, 4);
+        lyricsProviderExecutor = createExecutor("lyrics-provider", lyricsProviderThreads, 8);
+        renderExecutor = createExecutor("render", renderThreads, Math.max(1, CORES / 4));
+        renderChunkExecutor = createExecutor("render-chunk", renderChunkThreads, Math.max(1, CORES / 4));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        downloadExecutor.shutdown();
+        separationExecutor.shutdown();
+        lyricsExecutor.shutdown();
+        lyricsProviderExecutor.shutdown();
+        renderExecutor.shutdown();
+        renderChunkExecutor.shutdown();
+    }
+
+    private ThreadPoolTaskExecutor createExecutor(String stage, int configuredThreads, int defaultThreads) {
+        int threads = configuredThreads > 0 ? configuredThreads : defaultThreads;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // Queue length is bounded by how many jobs JobQueueWorker admits
+        executor.setThreadNamePrefix("karaoke-" + stage + "-");
+        executor.initialize();
+        log.info("Pipeline {} pool: {} threads", stage, threads);
+        return executor;
+    }
+}
@@ -0,0 +1,61 @@
+package com.karaoke.config;
+
+import com.karaoke.model.dto.SeparationQuality;
+import com.karaoke.service.audio.AudioSeparationEngine;
+import com.karaoke.service.audio.ScriptSeparationEngine;
+import com.karaoke.service.audio.SeparationSettings;
+import com.karaoke.service.audio.SeparationWorkerPool;
+import com.karaoke.service.process.ProcessRunner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * One separation engine per quality tier, each a {@code separate_audio.py} settings spec.
+ * The engine settings are part of the stems cache key, so changing a spec re-separates,
+ * and each spec names one method so the key pins down how the stems were made.
+ */
+@Configuration
+public class SeparationEngineConfig {
+
+    @Value("${app.tools.python-path:python}")
+    private String pythonPath;
+
+    @Value("${app.process.separation-timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.intermediate.stems-format:flac}")
+    private String stemsFormat;
+
+    @Bean
+    public AudioSeparationEngine fastSeparationEngine(ProcessRunner processRunner, SeparationWorkerPool workerPool,
+            @Value("${app.separation.engines.fast:method=demucs,shifts=0,overlap=0.1}") String spec) {
+        return engine(SeparationQuality.FAST, spec, processRunner, workerPool);
+    }
+
+    @Bean
+    public AudioSeparationEngine balancedSeparationEngine(ProcessRunner processRunner, SeparationWorkerPool workerPool,
+            @Value("${app.separation.engines.balanced:method=demucs,shifts=1,overlap=0.25}") String spec) {
+        return engine(SeparationQuality.BALANCED, spec, processRunner, workerPool);
+    }
+
+    @Bean
+    public AudioSeparationEngine highSeparationEngine(ProcessRunner processRunner, SeparationWorkerPool workerPool,
+            @Value("${app.separation.engines.high:method=demucs,shifts=5,overlap=0.5}") String spec) {
+        return engine(SeparationQuality.HIGH, spec, processRunner, workerPool);
+    }
+
+    private AudioSeparationEngine engine(SeparationQuality quality, String spec, ProcessRunner processRunner,
+                                         SeparationWorkerPool workerPool) {
+        SeparationSettings settings = SeparationSettings.parse(spec).withStemFormat(stemsFormat);
+        // auto runs whichever method the node has, so stems under one cache key would differ by node
+        if ("auto".equals(settings.getMethod())) {
+            throw new IllegalArgumentException("Separation engine " + quality + " must name its method, not auto: "
+                    + spec);
+        }
+        return new ScriptSeparationEngine(quality, settings, processRunner, workerPool, pythonPath,
+                Duration.ofMillis(timeoutMs));
+    }
+}
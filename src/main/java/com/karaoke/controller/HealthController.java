@@ -26,4 +26,10 @@ public class HealthController {
     public ResponseEntity<Map<String, Object>> health() {
         return ResponseEntity.ok(healthService.getHealthStatus());
     }
+
+    @GetMapping("/caches")
+    @Operation(summary = "Cache statistics", description = "Returns size, hit/miss and eviction counters of the in-memory caches")
+    public ResponseEntity<Map<String, Map<String, Object>>> caches() {
+        return ResponseEntity.ok(healthService.getCacheStats());
+    }
 }
@@ -1,25 +1,38 @@
 package com.karaoke.controller;
 
 import com.karaoke.model.dto.GenerateKaraokeRequest;
+import com.karaoke.model.dto.JobEvent;
+import com.karaoke.model.dto.JobListPage;
+import com.karaoke.model.dto.JobListResponse;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.JobSummary;
 import com.karaoke.model.dto.KaraokeJobResponse;
 import com.karaoke.model.entity.KaraokeJob;
 import com.karaoke.service.KaraokeService;
+import com.karaoke.service.video.KaraokeVideoGeneratorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.web.PageableDefault;
-import org.springframework.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/karaoke")
@@ -28,13 +41,20 @@ import java.io.File;
 public class KaraokeController {
 
     private final KaraokeService karaokeService;
+    private final RangeFileSender rangeFileSender;
+
+    private static final MediaType HLS_PLAYLIST_TYPE = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final MediaType HLS_SEGMENT_TYPE = MediaType.parseMediaType("video/mp4");
+
+    @Value("${app.events.keep-alive-interval-ms:15000}")
+    private long keepAliveMs;
 
     @PostMapping("/generate")
     @Operation(summary = "Generate karaoke video", 
                description = "Creates a new karaoke video generation job from a YouTube URL. Returns job ID for status tracking.")
     public ResponseEntity<KaraokeJobResponse> generateKaraoke(@Valid @RequestBody GenerateKaraokeRequest request) {
+        // PENDING jobs are picked up from the database queue by JobQueueWorker
         KaraokeJob job = karaokeService.createJob(request);
-        karaokeService.processJob(job.getId());
         
         return ResponseEntity.status(HttpStatus.ACCEPTED)
                 .body(mapToResponse(job));
@@ -45,53 +65,113 @@ public class KaraokeController {
                description = "Retrieves the status and progress of a karaoke generation job")
     public ResponseEntity<KaraokeJobResponse> getJobStatus(@PathVariable Long id) {
         KaraokeJob job = karaokeService.getJob(id);
-        return ResponseEntity.ok(mapToResponse(job));
+        KaraokeJobResponse response = mapToResponse(job);
+        if (karaokeService.resolveHlsFile(job, KaraokeVideoGeneratorService.HLS_PLAYLIST).isPresent()) {
+            response.setHlsUrl("/karaoke/jobs/" + id + "/hls/" + KaraokeVideoGeneratorService.HLS_PLAYLIST);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream job events",
+               description = "Server-Sent Events stream of status and progress changes; ends when the job completes or fails")
+    public Flux<ServerSentEvent<JobEvent>> streamJobEvents(@PathVariable Long id) {
+        Flux<ServerSentEvent<JobEvent>> events = karaokeService.streamJobEvents(id)
+                .map(event -> ServerSentEvent.builder(withDownloadUrl(event))
+                        .event(event.isTerminal() ? "done" : "progress")
+                        .build())
+                .share();
+        // Comment lines keep idle connections open through proxies while a stage runs quietly
+        Flux<ServerSentEvent<JobEvent>> keepAlive = Flux.interval(Duration.ofMillis(keepAliveMs))
+                .map(tick -> ServerSentEvent.<JobEvent>builder().comment("keep-alive").build())
+                .takeUntilOther(events.then());
+        return Flux.merge(events, keepAlive);
     }
 
     @GetMapping("/jobs/{id}/download")
     @Operation(summary = "Download karaoke video", 
-               description = "Downloads the generated karaoke video file")
-    public ResponseEntity<Resource> downloadVideo(@PathVariable Long id) {
+               description = "Downloads the generated karaoke video file. Supports Range requests for seeking " +
+                             "and ETag / Last-Modified revalidation.")
+    public void downloadVideo(@PathVariable Long id, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
         KaraokeJob job = karaokeService.getJob(id);
         
-        if (job.getStatus() != com.karaoke.model.dto.JobStatus.COMPLETED) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        if (job.getStatus() != JobStatus.COMPLETED) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
         }
         
+        // Without its file the output was evicted from the artifact cache: it expired
         if (job.getOutputVideoPath() == null) {
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpStatus.GONE.value());
+            return;
         }
         
-        File videoFile = new File(job.getOutputVideoPath());
-        if (!videoFile.exists()) {
-            return ResponseEntity.notFound().build();
+        Path videoFile = Paths.get(job.getOutputVideoPath());
+        if (!Files.isRegularFile(videoFile)) {
+            response.setStatus(HttpStatus.GONE.value());
+            return;
         }
         
-        Resource resource = new FileSystemResource(videoFile);
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, 
-                       "attachment; filename=\"" + videoFile.getName() + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        rangeFileSender.send(videoFile, request, response);
+    }
+
+    @GetMapping("/jobs/{id}/hls/{fileName}")
+    @Operation(summary = "Stream karaoke video over HLS",
+               description = "Serves the playlist and fMP4 segments of a streamHls job. The playlist grows while " +
+                             "the job renders, so playback can start before it completes.")
+    public void streamHls(@PathVariable Long id, @PathVariable String fileName, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        Optional<Path> file = karaokeService.resolveHlsFile(id, fileName);
+        if (file.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        MediaType contentType = fileName.equals(KaraokeVideoGeneratorService.HLS_PLAYLIST)
+                ? HLS_PLAYLIST_TYPE : HLS_SEGMENT_TYPE;
+        rangeFileSender.send(file.get(), contentType, false, request, response);
     }
 
     @GetMapping("/jobs")
-    @Operation(summary = "List all jobs", 
-               description = "Retrieves a paginated list of all karaoke generation jobs")
-    public ResponseEntity<Page<KaraokeJobResponse>> listJobs(
-            @PageableDefault(size = 20) Pageable pageable) {
-        Page<KaraokeJob> jobs = karaokeService.getAllJobs(pageable);
-        Page<KaraokeJobResponse> response = jobs.map(this::mapToResponse);
-        return ResponseEntity.ok(response);
+    @Operation(summary = "List jobs",
+               description = "Lists karaoke generation jobs newest first, optionally filtered by status and creation time " +
+                             "(from inclusive, to exclusive). Pass nextCursor back as cursor to fetch the next page.")
+    public ResponseEntity<JobListResponse> listJobs(
+            @RequestParam(required = false) JobStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        JobListPage page = karaokeService.listJobs(status, from, to, cursor, size);
+        List<KaraokeJobResponse> content = page.getJobs().stream().map(this::mapToResponse).toList();
+        return ResponseEntity.ok(JobListResponse.builder()
+                .content(content)
+                .size(content.size())
+                .hasMore(page.getNextCursor() != null)
+                .nextCursor(page.getNextCursor())
+                .build());
     }
 
-    private KaraokeJobResponse mapToResponse(KaraokeJob job) {
-        String downloadUrl = null;
-        if (job.getStatus() == com.karaoke.model.dto.JobStatus.COMPLETED && job.getOutputVideoPath() != null) {
-            downloadUrl = "/karaoke/jobs/" + job.getId() + "/download";
+    private JobEvent withDownloadUrl(JobEvent event) {
+        if (event.getStatus() != JobStatus.COMPLETED) {
+            return event;
         }
-        
+        return event.toBuilder().downloadUrl("/karaoke/jobs/" + event.getJobId() + "/download").build();
+    }
+
+    private KaraokeJobResponse mapToResponse(JobSummary job) {
+        return KaraokeJobResponse.builder()
+                .id(job.getId())
+                .status(job.getStatus())
+                .youtubeUrl(job.getYoutubeUrl())
+                .progress(job.getProgress())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .downloadUrl(downloadUrl(job.getId(), job.getStatus(), job.getOutputVideoPath()))
+                .build();
+    }
+
+    private KaraokeJobResponse mapToResponse(KaraokeJob job) {
         return KaraokeJobResponse.builder()
                 .id(job.getId())
                 .status(job.getStatus())
@@ -100,7 +180,14 @@ public class KaraokeController {
                 .errorMessage(job.getErrorMessage())
                 .createdAt(job.getCreatedAt())
                 .updatedAt(job.getUpdatedAt())
-                .downloadUrl(downloadUrl)
+                .downloadUrl(downloadUrl(job.getId(), job.getStatus(), job.getOutputVideoPath()))
                 .build();
     }
+
+    private static String downloadUrl(Long id, JobStatus status, String outputVideoPath) {
+        if (status == JobStatus.COMPLETED && outputVideoPath != null) {
+            return "/karaoke/jobs/" + id + "/download";
+        }
+        return null;
+    }
 }
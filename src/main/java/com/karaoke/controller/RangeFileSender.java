@@ -0,0 +1,227 @@
+package com.karaoke.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Sends a file with HTTP range and conditional request support: single ranges get a 206,
+ * several ranges a multipart/byteranges 206, and a matching ETag or Last-Modified a 304.
+ * <p>
+ * Zero-copy is best-effort. When the container supports sendfile (Tomcat's NIO connector with
+ * {@code useSendfile}, the default) the whole file or a single range is handed to it and the
+ * kernel copies it straight to the socket. Multipart responses, and containers without
+ * sendfile, stream the bytes with {@link FileChannel#transferTo} into the servlet output
+ * stream, which goes through a small heap buffer per chunk; the file is never loaded whole.
+ */
+@Component
+@Slf4j
+public class RangeFileSender {
+
+    // Tomcat's sendfile request attributes (org.apache.catalina.Globals)
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Sends the file as an attachment, typed by its extension.
+     */
+    public void send(Path file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        send(file, contentType, true, request, response);
+    }
+
+    public void send(Path file, MediaType contentType, boolean attachment, HttpServletRequest request,
+                     HttpServletResponse response) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        // Also answers If-Match / If-Unmodified-Since with 412, and sets ETag and Last-Modified
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (attachment) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(file.getFileName().toString(), StandardCharsets.UTF_8).build().toString());
+        }
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        if (ranges == null) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        if (ranges.isEmpty()) {
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(length);
+            transfer(file, 0, length, request, response);
+            return;
+        }
+        if (!satisfiable(ranges, length)) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            transfer(file, start, end - start + 1, request, response);
+        } else {
+            sendMultipart(file, ranges, length, contentType, request, response);
+        }
+    }
+
+    /**
+     * The ranges to send; empty for the whole file, null when the Range header is malformed.
+     * A stale If-Range validator means the client's partial copy is outdated, so the whole
+     * file is sent instead.
+     */
+    private List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return List.of();
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag) && !matchesDate(request, lastModified)) {
+            return List.of();
+        }
+        try {
+            // Rejects more than 100 ranges
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean matchesDate(HttpServletRequest request, long lastModified) {
+        try {
+            long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return ifRangeDate != -1 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            // An ETag that did not match
+            return false;
+        }
+    }
+
+    // Overlapping ranges adding up to more than the file would let a client amplify the transfer
+    private boolean satisfiable(List<HttpRange> ranges, long length) {
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start >= length || end < start) {
+                return false;
+            }
+            total += end - start + 1;
+        }
+        return total <= length;
+    }
+
+    private void sendMultipart(Path file, List<HttpRange> ranges, long length, MediaType contentType,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (isHead(request)) {
+            return;
+        }
+        // Sendfile takes a single file region, so the parts are always copied through the servlet stream
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                out.write(("\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": " + contentRange(start, end, length) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                copy(channel, start, end - start + 1, target);
+            }
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            clientGone(response, e);
+        }
+    }
+
+    private void transfer(Path file, long start, long count, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (isHead(request)) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The container writes the bytes after the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        // Only reached without sendfile: the servlet stream is not a channel, so this copies
+        // through a heap buffer chunk by chunk
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            copy(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        } catch (IOException e) {
+            clientGone(response, e);
+        }
+    }
+
+    private static void copy(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long written = channel.transferTo(position, remaining, target);
+            if (written <= 0) {
+                break;
+            }
+            position += written;
+            remaining -= written;
+        }
+    }
+
+    // Players drop connections all the time while seeking; once bytes are out there is no error to report
+    private static void clientGone(HttpServletResponse response, IOException e) throws IOException {
+        if (!response.isCommitted()) {
+            throw e;
+        }
+        log.debug("Download aborted by client: {}", e.getMessage());
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+}
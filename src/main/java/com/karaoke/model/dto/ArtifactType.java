@@ -0,0 +1,8 @@
+package com.karaoke.model.dto;
+
+public enum ArtifactType {
+    DOWNLOAD,
+    STEMS,
+    LYRICS,
+    RENDER
+}
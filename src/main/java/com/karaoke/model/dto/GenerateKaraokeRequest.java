@@ -1,5 +1,7 @@
 package com.karaoke.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
@@ -18,4 +20,24 @@ public class GenerateKaraokeRequest {
 
     @NotNull(message = "vocalsVolume cannot be null")
     private Double vocalsVolume = 0.3; // Default to 30% volume for background vocals
+
+    @NotNull(message = "quality cannot be null")
+    private RenderQuality quality = RenderQuality.STANDARD;
+
+    // May be lowered under load; see AudioSeparationService#selectEngine
+    @NotNull(message = "separationQuality cannot be null")
+    private SeparationQuality separationQuality = SeparationQuality.BALANCED;
+
+    @NotNull(message = "outputMode cannot be null")
+    private OutputMode outputMode = OutputMode.BURNED;
+
+    // Also write an HLS playlist during the render so playback can start before it finishes
+    @NotNull(message = "streamHls cannot be null")
+    private Boolean streamHls = false;
+
+    @JsonIgnore
+    @AssertTrue(message = "streamHls is not supported with SOFT_SUBTITLES output")
+    public boolean isStreamHlsSupported() {
+        return !Boolean.TRUE.equals(streamHls) || outputMode != OutputMode.SOFT_SUBTITLES;
+    }
 }
@@ -0,0 +1,41 @@
+package com.karaoke.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.karaoke.model.entity.KaraokeJob;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A status or progress transition of a job, as pushed to event stream subscribers.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobEvent {
+    private Long jobId;
+    private JobStatus status;
+    private Integer progress;
+    private String errorMessage;
+    private String downloadUrl;
+    private LocalDateTime timestamp;
+
+    public static JobEvent of(KaraokeJob job) {
+        return JobEvent.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .progress(job.getProgress())
+                .errorMessage(job.getErrorMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    @JsonIgnore
+    public boolean isTerminal() {
+        return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+    }
+}
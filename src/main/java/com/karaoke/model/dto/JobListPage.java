@@ -0,0 +1,13 @@
+package com.karaoke.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class JobListPage {
+    private List<JobSummary> jobs;
+    private String nextCursor; // Null on the last page
+}
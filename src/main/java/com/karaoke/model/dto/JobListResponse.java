@@ -0,0 +1,19 @@
+package com.karaoke.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobListResponse {
+    private List<KaraokeJobResponse> content;
+    private int size;
+    private boolean hasMore;
+    private String nextCursor; // Pass as ?cursor= to fetch the next page; null on the last page
+}
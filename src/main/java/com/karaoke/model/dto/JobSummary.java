@@ -0,0 +1,24 @@
+package com.karaoke.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listing projection of a job: only the columns a job list shows, never the options
+ * JSON or the error message.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobSummary {
+    private Long id;
+    private JobStatus status;
+    private String youtubeUrl;
+    private Integer progress;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private String outputVideoPath;
+}
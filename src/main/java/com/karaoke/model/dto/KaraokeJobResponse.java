@@ -20,4 +20,5 @@ public class KaraokeJobResponse {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String downloadUrl; // URL to download the video when completed
+    private String hlsUrl; // Playlist URL once the first HLS segments of a streamHls render exist
 }
@@ -0,0 +1,14 @@
+package com.karaoke.model.dto;
+
+/**
+ * What the render produces. Only {@link #BURNED} encodes video; the other modes are a
+ * quick mux for clients that draw the lyrics themselves.
+ */
+public enum OutputMode {
+    /** MP4 with the lyrics burned into an encoded video track */
+    BURNED,
+    /** MP4 with the audio and the lyrics as a mov_text subtitle track, no video */
+    SOFT_SUBTITLES,
+    /** M4A with the karaoke audio only */
+    AUDIO_ONLY
+}
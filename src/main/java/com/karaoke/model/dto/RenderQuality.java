@@ -0,0 +1,23 @@
+package com.karaoke.model.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Encoder settings per quality tier. Faster presets trade compression efficiency and
+ * detail for render time; karaoke output is mostly a static background with text, so
+ * the {@code stillimage} tune keeps the higher tiers small.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum RenderQuality {
+    DRAFT("ultrafast", 28, null, 854, 480),
+    STANDARD("veryfast", 23, "stillimage", 1280, 720),
+    HIGH("medium", 20, "stillimage", 1920, 1080);
+
+    private final String preset;
+    private final int crf;
+    private final String tune;
+    private final int width;
+    private final int height;
+}
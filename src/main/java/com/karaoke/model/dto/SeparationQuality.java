@@ -0,0 +1,11 @@
+package com.karaoke.model.dto;
+
+/**
+ * Stem separation tiers, fastest first. Under load, jobs are moved to a faster tier than
+ * the one requested; see {@link com.karaoke.service.audio.AudioSeparationService}.
+ */
+public enum SeparationQuality {
+    FAST,
+    BALANCED,
+    HIGH
+}
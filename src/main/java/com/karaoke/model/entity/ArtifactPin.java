@@ -0,0 +1,45 @@
+package com.karaoke.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A running job's claim on a cached artifact, shared by every node that evicts from the
+ * cache. It only holds while the job is still processing on the node that pinned it.
+ */
+@Entity
+@Table(name = "artifact_pins", indexes = {
+        @Index(name = "idx_artifact_pins_artifact_key", columnList = "artifactKey")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArtifactPin {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 128)
+    private String artifactKey;
+
+    @Column(nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
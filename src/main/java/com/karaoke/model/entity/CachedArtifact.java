@@ -0,0 +1,58 @@
+package com.karaoke.model.entity;
+
+import com.karaoke.model.dto.ArtifactType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "cached_artifacts", indexes = {
+        @Index(name = "idx_cached_artifacts_last_accessed", columnList = "lastAccessedAt")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedArtifact {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 128)
+    private String artifactKey;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ArtifactType type;
+
+    @Column(nullable = false, length = 2048)
+    private String path;
+
+    @Column(nullable = false)
+    private Long sizeBytes;
+
+    @Column(nullable = false)
+    private Long hitCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lastAccessedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (lastAccessedAt == null) {
+            lastAccessedAt = createdAt;
+        }
+        if (hitCount == null) {
+            hitCount = 0L;
+        }
+    }
+}
@@ -10,9 +10,16 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "karaoke_jobs")
+@Table(name = "karaoke_jobs", indexes = {
+        @Index(name = "idx_karaoke_jobs_pipeline_key", columnList = "pipelineKey"),
+        @Index(name = "idx_karaoke_jobs_parent_job_id", columnList = "parentJobId"),
+        @Index(name = "idx_karaoke_jobs_status_lease", columnList = "status,leaseExpiresAt"),
+        // Keyset pagination of the job listing, unfiltered and filtered by status
+        @Index(name = "idx_karaoke_jobs_created_at_id", columnList = "createdAt,id"),
+        @Index(name = "idx_karaoke_jobs_status_created_at_id", columnList = "status,createdAt,id")
+})
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class KaraokeJob {
@@ -46,6 +53,18 @@ public class KaraokeJob {
     @Column(columnDefinition = "TEXT")
     private String options; // JSON string for job options
 
+    @Column(length = 64)
+    private String pipelineKey; // Content-addressed key of the render inputs
+
+    private Long parentJobId; // Set when coalesced onto an in-flight job with the same pipeline key
+
+    @Column(length = 255)
+    private String leaseOwner; // Node currently processing the job
+
+    private LocalDateTime leaseExpiresAt; // Job is reclaimable once this passes without a heartbeat
+
+    private Integer attempts; // Number of times the job has been claimed
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -56,6 +75,9 @@ public class KaraokeJob {
         if (progress == null) {
             progress = 0;
         }
+        if (attempts == null) {
+            attempts = 0;
+        }
     }
 
     @PreUpdate
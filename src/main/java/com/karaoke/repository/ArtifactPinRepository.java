@@ -0,0 +1,28 @@
+package com.karaoke.repository;
+
+import com.karaoke.model.entity.ArtifactPin;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArtifactPinRepository extends JpaRepository<ArtifactPin, Long> {
+
+    @Modifying
+    @Query("delete from ArtifactPin p where p.artifactKey = :artifactKey and p.jobId = :jobId and p.nodeId = :nodeId")
+    int deletePin(@Param("artifactKey") String artifactKey,
+                  @Param("jobId") Long jobId,
+                  @Param("nodeId") String nodeId);
+
+    // A pin only holds while its node still processes the job; a crashed or superseded node's pins do not
+    @Query("select count(p) > 0 from ArtifactPin p, KaraokeJob j where p.artifactKey = :artifactKey " +
+           "and j.id = p.jobId and j.leaseOwner = p.nodeId and j.status = com.karaoke.model.dto.JobStatus.PROCESSING")
+    boolean isPinned(@Param("artifactKey") String artifactKey);
+
+    @Modifying
+    @Query("delete from ArtifactPin p where not exists (select j.id from KaraokeJob j where j.id = p.jobId " +
+           "and j.leaseOwner = p.nodeId and j.status = com.karaoke.model.dto.JobStatus.PROCESSING)")
+    int deleteStale();
+}
@@ -0,0 +1,21 @@
+package com.karaoke.repository;
+
+import com.karaoke.model.entity.CachedArtifact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CachedArtifactRepository extends JpaRepository<CachedArtifact, Long> {
+    Optional<CachedArtifact> findByArtifactKey(String artifactKey);
+    List<CachedArtifact> findAllByOrderByLastAccessedAtAsc();
+
+    @Query("select coalesce(sum(a.sizeBytes), 0) from CachedArtifact a")
+    long sumSizeBytes();
+
+    @Query("select a.path from CachedArtifact a")
+    List<String> findAllPaths();
+}
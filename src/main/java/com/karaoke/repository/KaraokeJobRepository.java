@@ -2,15 +2,120 @@ package com.karaoke.repository;
 
 import com.karaoke.model.entity.KaraokeJob;
 import com.karaoke.model.dto.JobStatus;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface KaraokeJobRepository extends JpaRepository<KaraokeJob, Long> {
+public interface KaraokeJobRepository extends JpaRepository<KaraokeJob, Long>, KaraokeJobRepositoryCustom {
     List<KaraokeJob> findByStatus(JobStatus status);
-    Page<KaraokeJob> findAll(Pageable pageable);
+
+    Optional<KaraokeJob> findFirstByPipelineKeyAndParentJobIdIsNullAndStatusInOrderByIdAsc(
+            String pipelineKey, Collection<JobStatus> statuses);
+
+    // State updates target the job and every job coalesced onto it in one statement, and
+    // never touch the lease columns so they cannot race with heartbeats
+
+    @Modifying
+    @Query("update KaraokeJob j set j.status = :status, j.progress = :progress, " +
+           "j.outputVideoPath = :outputVideoPath, j.errorMessage = :errorMessage, j.updatedAt = :updatedAt " +
+           "where j.id = :id or j.parentJobId = :id")
+    int updateJobState(@Param("id") Long id,
+                       @Param("status") JobStatus status,
+                       @Param("progress") Integer progress,
+                       @Param("outputVideoPath") String outputVideoPath,
+                       @Param("errorMessage") String errorMessage,
+                       @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Terminal write of a leased job: only the node still holding the lease may finish it, so
+    // a node that lost the lease cannot overwrite the outcome of the node that took over
+    @Modifying
+    @Query("update KaraokeJob j set j.status = :status, j.progress = :progress, " +
+           "j.outputVideoPath = :outputVideoPath, j.errorMessage = :errorMessage, j.updatedAt = :updatedAt " +
+           "where j.id = :id and j.leaseOwner = :owner and j.status = com.karaoke.model.dto.JobStatus.PROCESSING")
+    int finishLeasedJob(@Param("id") Long id,
+                        @Param("owner") String owner,
+                        @Param("status") JobStatus status,
+                        @Param("progress") Integer progress,
+                        @Param("outputVideoPath") String outputVideoPath,
+                        @Param("errorMessage") String errorMessage,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    // Only moves progress forward on running jobs, so a late write-behind flush cannot undo a terminal state
+    @Query("update KaraokeJob j set j.progress = :progress, j.updatedAt = :updatedAt " +
+           "where (j.id = :id or j.parentJobId = :id) " +
+           "and j.status = com.karaoke.model.dto.JobStatus.PROCESSING and j.progress < :progress")
+    int updateJobProgress(@Param("id") Long id,
+                          @Param("progress") Integer progress,
+                          @Param("updatedAt") LocalDateTime updatedAt);
+
+    // The artifact cache evicted the file: the job stays COMPLETED but its output has expired
+    @Modifying
+    @Query("update KaraokeJob j set j.outputVideoPath = null, j.updatedAt = :updatedAt " +
+           "where j.outputVideoPath = :path and j.status = com.karaoke.model.dto.JobStatus.COMPLETED")
+    int expireOutput(@Param("path") String path, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Work queue: PENDING leader jobs are the queue, a lease marks a job as owned by a node
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2")) // SKIP LOCKED
+    @Query("select j from KaraokeJob j where j.status = com.karaoke.model.dto.JobStatus.PENDING " +
+           "and j.parentJobId is null order by j.id")
+    List<KaraokeJob> findClaimCandidates(Pageable pageable);
+
+    long countByStatusAndParentJobIdIsNull(JobStatus status);
+
+    @Modifying
+    @Query("update KaraokeJob j set j.status = com.karaoke.model.dto.JobStatus.PROCESSING, " +
+           "j.leaseOwner = :owner, j.leaseExpiresAt = :leaseExpiresAt, " +
+           "j.attempts = coalesce(j.attempts, 0) + 1, j.updatedAt = :now " +
+           "where j.id = :id and j.status = com.karaoke.model.dto.JobStatus.PENDING and j.parentJobId is null")
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+              @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update KaraokeJob j set j.leaseExpiresAt = :leaseExpiresAt " +
+           "where j.id in :ids and j.leaseOwner = :owner and j.status = com.karaoke.model.dto.JobStatus.PROCESSING")
+    int renewLeases(@Param("ids") Collection<Long> ids,
+                    @Param("owner") String owner,
+                    @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+
+    @Query("select j.id from KaraokeJob j where j.id in :ids and j.leaseOwner = :owner " +
+           "and j.status = com.karaoke.model.dto.JobStatus.PROCESSING")
+    List<Long> findLeasedIds(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query("update KaraokeJob j set j.leaseOwner = null, j.leaseExpiresAt = null " +
+           "where j.id = :id and j.leaseOwner = :owner")
+    int clearLease(@Param("id") Long id, @Param("owner") String owner);
+
+    @Query("select j from KaraokeJob j where j.status = com.karaoke.model.dto.JobStatus.PROCESSING " +
+           "and j.parentJobId is null and (j.leaseExpiresAt is null or j.leaseExpiresAt < :now)")
+    List<KaraokeJob> findExpiredLeases(@Param("now") LocalDateTime now);
+
+    @Query("select j from KaraokeJob j where j.status = com.karaoke.model.dto.JobStatus.PROCESSING " +
+           "and j.parentJobId is null and j.leaseOwner = :owner")
+    List<KaraokeJob> findLeasedBy(@Param("owner") String owner);
+
+    @Modifying
+    @Query("update KaraokeJob j set j.status = com.karaoke.model.dto.JobStatus.PENDING, j.progress = 0, " +
+           "j.leaseOwner = null, j.leaseExpiresAt = null, j.updatedAt = :now " +
+           "where j.id = :id and j.status = com.karaoke.model.dto.JobStatus.PROCESSING " +
+           "and (j.leaseExpiresAt is null or j.leaseExpiresAt < :now or j.leaseOwner = :owner)")
+    int requeue(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("owner") String owner);
 }
@@ -0,0 +1,22 @@
+package com.karaoke.repository;
+
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.JobSummary;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface KaraokeJobRepositoryCustom {
+
+    /**
+     * Keyset page of the job listing, newest first: rows strictly after the cursor, no offset
+     * and no count. Null filters and a null cursor are left out of the query.
+     */
+    List<JobSummary> findJobSummaries(JobStatus status,
+                                      LocalDateTime createdFrom,
+                                      LocalDateTime createdTo,
+                                      LocalDateTime afterCreatedAt,
+                                      Long afterId,
+                                      Pageable pageable);
+}
@@ -0,0 +1,67 @@
+package com.karaoke.repository;
+
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.JobSummary;
+import com.karaoke.model.entity.KaraokeJob;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the listing query from the filters actually given. Optional predicates of the form
+ * {@code (:status is null or j.status = :status)} make the planner pick one plan for every
+ * filter combination, which cannot use the composite listing indexes; a query without them
+ * can use {@code (createdAt, id)} or {@code (status, createdAt, id)} for both filter and order.
+ */
+class KaraokeJobRepositoryCustomImpl implements KaraokeJobRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<JobSummary> findJobSummaries(JobStatus status, LocalDateTime createdFrom, LocalDateTime createdTo,
+                                             LocalDateTime afterCreatedAt, Long afterId, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<JobSummary> query = cb.createQuery(JobSummary.class);
+        Root<KaraokeJob> job = query.from(KaraokeJob.class);
+        Path<LocalDateTime> createdAt = job.get("createdAt");
+        Path<Long> id = job.get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        if (status != null) {
+            where.add(cb.equal(job.get("status"), status));
+        }
+        if (createdFrom != null) {
+            where.add(cb.greaterThanOrEqualTo(createdAt, createdFrom));
+        }
+        if (createdTo != null) {
+            where.add(cb.lessThan(createdAt, createdTo));
+        }
+        if (afterCreatedAt != null) {
+            // The plain bound lets the index range scan start at the cursor; the OR breaks ties by id
+            where.add(cb.lessThanOrEqualTo(createdAt, afterCreatedAt));
+            where.add(afterId != null
+                    ? cb.or(cb.lessThan(createdAt, afterCreatedAt),
+                            cb.and(cb.equal(createdAt, afterCreatedAt), cb.lessThan(id, afterId)))
+                    : cb.lessThan(createdAt, afterCreatedAt));
+        }
+
+        query.select(cb.construct(JobSummary.class, id, job.get("status"), job.get("youtubeUrl"),
+                        job.get("progress"), createdAt, job.get("updatedAt"), job.get("outputVideoPath")))
+                .where(where.toArray(Predicate[]::new))
+                .orderBy(cb.desc(createdAt), cb.desc(id));
+        return entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+}
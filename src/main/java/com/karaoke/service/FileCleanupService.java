@@ -1,6 +1,7 @@
 package com.karaoke.service;
 
 import com.karaoke.config.FileStorageConfig;
+import com.karaoke.service.cache.ArtifactCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -12,6 +13,7 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -19,6 +21,7 @@ import java.time.temporal.ChronoUnit;
 public class FileCleanupService {
 
     private final FileStorageConfig fileStorageConfig;
+    private final ArtifactCacheService artifactCacheService;
 
     @Scheduled(fixedRate = 3600000) // Run every hour
     public void cleanupOldFiles() {
@@ -26,14 +29,17 @@ public class FileCleanupService {
         
         int retentionHours = fileStorageConfig.getRetentionHours();
         Instant cutoffTime = Instant.now().minus(retentionHours, ChronoUnit.HOURS);
+        // Cached artifacts are evicted by ArtifactCacheService, not by age
+        Set<Path> cachedPaths = artifactCacheService.getCachedPaths();
         
-        cleanupDirectory(fileStorageConfig.getTempDirPath(), cutoffTime);
-        cleanupDirectory(fileStorageConfig.getOutputDirPath(), cutoffTime);
+        cleanupDirectory(fileStorageConfig.getTempDirPath(), cutoffTime, cachedPaths);
+        cleanupDirectory(fileStorageConfig.getOutputDirPath(), cutoffTime, cachedPaths);
+        cleanupDirectory(fileStorageConfig.getCacheDirPath(), cutoffTime, cachedPaths);
         
         log.info("File cleanup task completed");
     }
 
-    private void cleanupDirectory(String directoryPath, Instant cutoffTime) {
+    private void cleanupDirectory(String directoryPath, Instant cutoffTime, Set<Path> cachedPaths) {
         try {
             Path dir = Paths.get(directoryPath);
             if (!Files.exists(dir)) {
@@ -42,6 +48,7 @@ public class FileCleanupService {
             
             Files.walk(dir)
                     .filter(Files::isRegularFile)
+                    .filter(path -> !isCached(path, cachedPaths))
                     .forEach(path -> {
                         try {
                             FileTime fileTime = Files.getLastModifiedTime(path);
@@ -74,4 +81,14 @@ public class FileCleanupService {
             log.error("Error during cleanup of directory {}: {}", directoryPath, e.getMessage());
         }
     }
+
+    private boolean isCached(Path path, Set<Path> cachedPaths) {
+        // A cached artifact may be a single file or a directory of stage outputs
+        for (Path current = path.toAbsolutePath().normalize(); current != null; current = current.getParent()) {
+            if (cachedPaths.contains(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -1,15 +1,24 @@
 package com.karaoke.service;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.karaoke.config.CacheConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Service
+@RequiredArgsConstructor
 public class HealthService {
 
-    @Cacheable(value = "health", key = "'status'")
+    private final CacheManager cacheManager;
+
+    @Cacheable(value = CacheConfig.HEALTH_CACHE, key = "'status'")
     public Map<String, Object> getHealthStatus() {
         return Map.of(
                 "status", "UP",
@@ -17,4 +26,25 @@ public class HealthService {
                 "service", "Karaoke Backend API"
         );
     }
+
+    /**
+     * Hit/miss/eviction counters of every Caffeine cache, keyed by cache name.
+     */
+    public Map<String, Map<String, Object>> getCacheStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache caffeineCache) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
+                CacheStats stats = nativeCache.stats();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("size", nativeCache.estimatedSize());
+                entry.put("hitCount", stats.hitCount());
+                entry.put("missCount", stats.missCount());
+                entry.put("hitRate", stats.hitRate());
+                entry.put("evictionCount", stats.evictionCount());
+                result.put(name, entry);
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,75 @@
+package com.karaoke.service;
+
+import com.karaoke.repository.KaraokeJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for job progress. The pipeline records progress as often as its
+ * tools report it; only the latest value per job is kept and all pending values are
+ * written in one short transaction per flush interval. Terminal states bypass the
+ * buffer and are written by {@link KaraokeService} directly, conditional on this node
+ * still holding the job's lease.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JobStateStore {
+
+    private final KaraokeJobRepository jobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Integer> pendingProgress = new ConcurrentHashMap<>();
+
+    public void recordProgress(Long jobId, int progress) {
+        pendingProgress.merge(jobId, progress, Math::max);
+    }
+
+    /**
+     * Drops unflushed progress, used when the job is about to be written in a terminal state.
+     */
+    public void discard(Long jobId) {
+        pendingProgress.remove(jobId);
+    }
+
+    public int getPendingCount() {
+        return pendingProgress.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.progress.flush-interval-ms:1000}")
+    public void flush() {
+        if (pendingProgress.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> batch = new HashMap<>();
+        for (Long jobId : pendingProgress.keySet()) {
+            Integer progress = pendingProgress.remove(jobId);
+            if (progress != null) {
+                batch.put(jobId, progress);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(tx ->
+                    batch.forEach((jobId, progress) -> jobRepository.updateJobProgress(jobId, progress, now)));
+            log.debug("Flushed progress of {} jobs", batch.size());
+        } catch (RuntimeException e) {
+            // Put the values back unless newer ones arrived meanwhile; the next flush retries
+            log.warn("Failed to flush job progress: {}", e.getMessage());
+            batch.forEach(this::recordProgress);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,45 @@
+package com.karaoke.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.karaoke.model.entity.KaraokeJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of job rows for status lookups. The pipeline writes every transition
+ * it makes, so local jobs are served from memory; entries hold detached copies so neither
+ * the pipeline nor readers can change a cached value in place.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobStatusCache {
+
+    private final Cache<Long, KaraokeJob> jobsNativeCache;
+
+    public Optional<KaraokeJob> get(Long id, Function<Long, Optional<KaraokeJob>> loader) {
+        KaraokeJob cached = jobsNativeCache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        Optional<KaraokeJob> loaded = loader.apply(id);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    public void put(KaraokeJob job) {
+        if (job.getId() != null) {
+            jobsNativeCache.put(job.getId(), copy(job));
+        }
+    }
+
+    public void evict(Long id) {
+        jobsNativeCache.invalidate(id);
+    }
+
+    private static KaraokeJob copy(KaraokeJob job) {
+        return job.toBuilder().build();
+    }
+}
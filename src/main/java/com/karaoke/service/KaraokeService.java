@@ -1,127 +1,497 @@
 package com.karaoke.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.NodeIdentity;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.ArtifactType;
 import com.karaoke.model.dto.GenerateKaraokeRequest;
+import com.karaoke.model.dto.JobCursor;
+import com.karaoke.model.dto.JobEvent;
+import com.karaoke.model.dto.JobListPage;
 import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.JobSummary;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.RenderQuality;
+import com.karaoke.model.dto.SeparationQuality;
+import com.karaoke.model.entity.CachedArtifact;
 import com.karaoke.model.entity.KaraokeJob;
 import com.karaoke.repository.KaraokeJobRepository;
+import com.karaoke.service.audio.AudioSeparationEngine;
 import com.karaoke.service.audio.AudioSeparationService;
+import com.karaoke.service.cache.ArtifactCacheService;
+import com.karaoke.service.cache.PipelineKeys;
+import com.karaoke.service.events.JobEventBus;
+import com.karaoke.service.lyrics.LyricAligner;
 import com.karaoke.service.lyrics.LyricsProvider;
 import com.karaoke.service.lyrics.LyricsService;
+import com.karaoke.service.process.ProcessExecutionException;
 import com.karaoke.service.video.KaraokeVideoGeneratorService;
 import com.karaoke.service.video.VideoDownloadService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KaraokeService {
 
+    private static final String LYRICS_FILE = "lyrics.json";
+    private static final List<JobStatus> IN_FLIGHT_STATUSES = List.of(JobStatus.PENDING, JobStatus.PROCESSING);
+    // Job progress at the end of each stage; lyrics overlap separation and have no share of their own
+    private static final int DOWNLOAD_DONE = 15;
+    private static final int SEPARATION_DONE = 55;
+    private static final int RENDER_DONE = 95;
+
+    private static final int MAX_LIST_PAGE_SIZE = 100;
+
+    // Only complete files: ffmpeg writes in-progress segments under a .tmp name
+    private static final Pattern HLS_FILE_NAME = Pattern.compile("playlist\\.m3u8|init\\.mp4|segment_\\d+\\.m4s");
+
+    // Pipeline key -> id of the job executing it on this node
+    private final Map<String, Long> inFlightLeaders = new ConcurrentHashMap<>();
+
+    // Job id -> cancellation token of the pipeline running it on this node. Once set, no
+    // further stage starts and the job's outcome is not written
+    private final Map<Long, AtomicBoolean> cancellations = new ConcurrentHashMap<>();
+
     private final KaraokeJobRepository jobRepository;
     private final VideoDownloadService videoDownloadService;
     private final AudioSeparationService audioSeparationService;
     private final LyricsService lyricsService;
+    private final LyricAligner lyricAligner;
     private final KaraokeVideoGeneratorService karaokeVideoGeneratorService;
     private final ObjectMapper objectMapper;
+    private final ArtifactCacheService artifactCacheService;
+    private final FileStorageConfig fileStorageConfig;
+    private final TransactionTemplate transactionTemplate;
+    private final PipelineExecutors pipelineExecutors;
+    private final JobStateStore jobStateStore;
+    private final JobEventBus jobEventBus;
+    private final JobStatusCache jobStatusCache;
+    private final NodeIdentity nodeIdentity;
 
     @Transactional
     public KaraokeJob createJob(GenerateKaraokeRequest request) {
+        String pipelineKey = PipelineKeys.renderKey(request, karaokeVideoGeneratorService.getAudioOnlyFormat());
         KaraokeJob job = KaraokeJob.builder()
                 .status(JobStatus.PENDING)
                 .youtubeUrl(request.getYoutubeUrl())
                 .progress(0)
                 .options(serializeOptions(request))
+                .pipelineKey(pipelineKey)
                 .build();
-        
-        return jobRepository.save(job);
+
+        // Identical inputs already rendered: complete immediately from the artifact cache
+        Optional<CachedArtifact> cached = artifactCacheService.lookup(pipelineKey);
+        if (cached.isPresent()) {
+            log.info("Render cache hit for {}, reusing {}", request.getYoutubeUrl(), cached.get().getPath());
+            job.setStatus(JobStatus.COMPLETED);
+            job.setProgress(100);
+            job.setOutputVideoPath(cached.get().getPath());
+            return saveNewJob(job);
+        }
+
+        // Identical inputs already being rendered: attach to that job instead of starting
+        // another download/separation/encode chain. The lock only spans the lookup and the
+        // insert, so the in-memory registry closes the window before the leader commits.
+        synchronized (inFlightLeaders) {
+            Optional<KaraokeJob> leader = findInFlightLeader(pipelineKey);
+            Long leaderId = leader.map(KaraokeJob::getId).orElse(inFlightLeaders.get(pipelineKey));
+
+            if (leaderId != null) {
+                log.info("Coalescing request for {} onto in-flight job {}", request.getYoutubeUrl(), leaderId);
+                job.setParentJobId(leaderId);
+                leader.ifPresent(l -> {
+                    job.setStatus(l.getStatus());
+                    job.setProgress(l.getProgress());
+                });
+                return saveNewJob(job);
+            }
+
+            KaraokeJob saved = saveNewJob(job);
+            inFlightLeaders.put(pipelineKey, saved.getId());
+            return saved;
+        }
     }
 
-    @Async("karaokeTaskExecutor")
-    @Transactional
-    public void processJob(Long jobId) {
+    private KaraokeJob saveNewJob(KaraokeJob job) {
+        KaraokeJob saved = jobRepository.save(job);
+        jobStatusCache.put(saved);
+        return saved;
+    }
+
+    private Optional<KaraokeJob> findInFlightLeader(String pipelineKey) {
+        Long leaderId = inFlightLeaders.get(pipelineKey);
+        if (leaderId != null) {
+            Optional<KaraokeJob> leader = jobRepository.findById(leaderId);
+            // Not yet visible means the leader's insert has not committed, it is still in flight
+            if (leader.isEmpty() || IN_FLIGHT_STATUSES.contains(leader.get().getStatus())) {
+                return leader;
+            }
+            inFlightLeaders.remove(pipelineKey, leaderId);
+        }
+        return jobRepository.findFirstByPipelineKeyAndParentJobIdIsNullAndStatusInOrderByIdAsc(
+                pipelineKey, IN_FLIGHT_STATUSES);
+    }
+
+    /**
+     * Runs the pipeline for a job claimed from the queue by
+     * {@link com.karaoke.service.queue.JobQueueWorker}. Each stage runs on the pool for its
+     * resource type, so stages of different jobs overlap. Not transactional: each state
+     * change is its own short write, so no connection is held across process executions.
+     * The returned future completes once the job has reached a terminal state.
+     */
+    public CompletableFuture<Void> processJob(Long jobId) {
         KaraokeJob job = jobRepository.findById(jobId)
                 .orElseThrow(() -> new RuntimeException("Job not found: " + jobId));
         
-        try {
-            updateJobStatus(job, JobStatus.PROCESSING, 0, null);
-            
-            GenerateKaraokeRequest request = deserializeOptions(job.getOptions());
-            String jobIdStr = job.getId().toString();
-            
-            // Step 1: Download video (10% progress)
+        if (job.getStatus() != JobStatus.PROCESSING || job.getParentJobId() != null) {
+            log.debug("Job {} is {}, nothing to process", jobId, job.getStatus());
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        GenerateKaraokeRequest request = deserializeOptions(job.getOptions());
+        String jobIdStr = job.getId().toString();
+        String youtubeUrl = job.getYoutubeUrl();
+        Path jobDir = Paths.get(fileStorageConfig.getTempDirPath(), jobIdStr);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        cancellations.put(jobId, cancelled);
+        // Cached stage outputs this job reads are pinned against eviction until it ends
+        List<String> pinnedKeys = new CopyOnWriteArrayList<>();
+        
+        // Stages 1-3 are cached by their inputs, so a re-render with different mix
+        // options only re-runs step 4
+        
+        // Step 1: Download video (0-15% progress)
+        CompletableFuture<VideoDownloadService.VideoDownloadResult> download = CompletableFuture.supplyAsync(stage(cancelled, () -> {
             log.info("Step 1: Downloading video for job {}", jobId);
-            VideoDownloadService.VideoDownloadResult downloadResult = 
-                    videoDownloadService.downloadVideo(job.getYoutubeUrl(), jobIdStr);
-            updateJobProgress(job, 10);
-            
-            // Step 2: Separate audio (30% progress)
-            log.info("Step 2: Separating audio for job {}", jobId);
-            AudioSeparationService.AudioSeparationResult separationResult = 
-                    audioSeparationService.separateAudio(downloadResult.getVideoPath(), downloadResult.getJobDir());
-            updateJobProgress(job, 30);
-            
-            // Step 3: Get lyrics (50% progress)
-            log.info("Step 3: Getting lyrics for job {}", jobId);
-            // Extract artist and title from YouTube URL (simplified - in production, use yt-dlp metadata)
-            String artist = "Unknown";
-            String title = "Unknown";
-            LyricsProvider.LyricsResult lyrics = lyricsService.getLyrics(
-                    artist, title, separationResult.getVocalsPath());
-            updateJobProgress(job, 50);
-            
-            // Step 4: Generate karaoke video (50-90% progress)
-            log.info("Step 4: Generating karaoke video for job {}", jobId);
-            String outputPath = karaokeVideoGeneratorService.generateKaraokeVideo(
-                    downloadResult.getVideoPath(),
-                    separationResult.getInstrumentalPath(),
-                    separationResult.getVocalsPath(),
-                    lyrics,
-                    request.getIncludeBackgroundVocals(),
-                    request.getVocalsVolume(),
-                    jobIdStr
-            );
-            updateJobProgress(job, 90);
-            
-            // Step 5: Complete (100% progress)
-            updateJobStatus(job, JobStatus.COMPLETED, 100, outputPath);
-            log.info("Job {} completed successfully", jobId);
-            
-        } catch (Exception e) {
-            log.error("Job {} failed: {}", jobId, e.getMessage(), e);
-            updateJobStatus(job, JobStatus.FAILED, job.getProgress(), null);
-            job.setErrorMessage(e.getMessage());
-            jobRepository.save(job);
+            String downloadKey = PipelineKeys.downloadKey(youtubeUrl);
+            pin(pinnedKeys, downloadKey, jobId);
+            Path downloadDir = artifactCacheService.resolveStage(ArtifactType.DOWNLOAD,
+                    downloadKey, jobDir.resolve("download"),
+                    dir -> videoDownloadService.downloadVideo(youtubeUrl, dir, jobIdStr,
+                            progressRange(job, 0, DOWNLOAD_DONE)));
+            VideoDownloadService.VideoDownloadResult result = videoDownloadService.locateDownload(downloadDir);
+            updateJobProgress(job, DOWNLOAD_DONE);
+            return result;
+        }), pipelineExecutors.getDownloadExecutor());
+        
+        // Step 2: Separate audio (15-55% progress). Under load the engine may be a faster tier
+        // than requested; such a render must not be cached under the requested tier's key
+        SeparationQuality separationQuality = request.getSeparationQuality() != null
+                ? request.getSeparationQuality() : SeparationQuality.BALANCED;
+        AtomicBoolean degraded = new AtomicBoolean();
+        OutputMode outputMode = request.getOutputMode() != null ? request.getOutputMode() : OutputMode.BURNED;
+        boolean streamHls = Boolean.TRUE.equals(request.getStreamHls());
+        boolean wavStems = karaokeVideoGeneratorService.mixesStemsInJvm(outputMode, streamHls);
+        CompletableFuture<AudioSeparationService.AudioSeparationResult> separation = download.thenApplyAsync(
+                downloadResult -> stage(cancelled, () -> {
+                    log.info("Step 2: Separating audio for job {}", jobId);
+                    AudioSeparationEngine engine = audioSeparationService.selectEngine(separationQuality, youtubeUrl);
+                    degraded.set(engine.getQuality() != separationQuality);
+                    String stemsKey = PipelineKeys.stemsKey(youtubeUrl, engine.getId());
+                    pin(pinnedKeys, stemsKey, jobId);
+                    Path stemsDir = artifactCacheService.resolveStage(ArtifactType.STEMS,
+                            stemsKey, jobDir.resolve("separated"),
+                            dir -> audioSeparationService.separateAudio(downloadResult.getVideoPath(), dir, jobIdStr,
+                                    engine, wavStems, progressRange(job, DOWNLOAD_DONE, SEPARATION_DONE)));
+                    AudioSeparationService.AudioSeparationResult result = audioSeparationService.locateStems(stemsDir);
+                    updateJobProgress(job, SEPARATION_DONE);
+                    return result;
+                }).get(), pipelineExecutors.getSeparationExecutor());
+        
+        // Step 3: Get lyrics. The online lookup only needs the download metadata,
+        // so it runs alongside separation; timing unsynced lines and the speech-to-text
+        // fallback wait for the vocals stem. Audio-only output shows no lyrics, so it skips the step
+        String lyricsKey = PipelineKeys.lyricsKey(youtubeUrl);
+        CompletableFuture<LyricsProvider.LyricsResult> lyrics;
+        if (outputMode == OutputMode.AUDIO_ONLY) {
+            lyrics = CompletableFuture.completedFuture(null);
+        } else {
+            CompletableFuture<LyricsProvider.LyricsResult> onlineLyrics = download.thenApplyAsync(
+                    downloadResult -> stage(cancelled, () -> {
+                        log.info("Step 3: Getting lyrics for job {}", jobId);
+                        return findLyrics(lyricsKey, jobDir, downloadResult);
+                    }).get(), pipelineExecutors.getLyricsExecutor());
+            lyrics = onlineLyrics.thenCompose(found ->
+                    separation.thenApplyAsync(separationResult -> stage(cancelled, () -> found != null
+                            ? lyricAligner.align(found, separationResult.getVocalsPath(), jobIdStr)
+                            : transcribeLyrics(lyricsKey, jobDir, separationResult.getVocalsPath())).get(),
+                            pipelineExecutors.getLyricsExecutor()));
         }
+        
+        // Step 4: Generate karaoke video (55-95% progress)
+        CompletableFuture<String> render = separation.thenCombineAsync(lyrics,
+                (separationResult, lyricsResult) -> stage(cancelled, () -> {
+                    log.info("Step 4: Generating karaoke video for job {}", jobId);
+                    String outputPath = karaokeVideoGeneratorService.generateKaraokeVideo(
+                            separationResult.getInstrumentalPath(),
+                            separationResult.getVocalsPath(),
+                            lyricsResult,
+                            request.getIncludeBackgroundVocals(),
+                            request.getVocalsVolume(),
+                            request.getQuality() != null ? request.getQuality() : RenderQuality.STANDARD,
+                            outputMode,
+                            streamHls,
+                            jobIdStr,
+                            progressRange(job, SEPARATION_DONE, RENDER_DONE)
+                    );
+                    updateJobProgress(job, RENDER_DONE);
+                    return outputPath;
+                }).get(), pipelineExecutors.getRenderExecutor());
+        
+        // Step 5: Complete (100% progress)
+        return render.handle((outputPath, error) -> {
+            pinnedKeys.forEach(artifactKey -> artifactCacheService.unpin(artifactKey, jobId));
+            cancellations.remove(jobId, cancelled);
+            if (cancelled.get()) {
+                log.info("Job {} was cancelled after losing its lease, discarding the outcome", jobId);
+                return null;
+            }
+            if (error == null) {
+                if (updateJobStatus(job, JobStatus.COMPLETED, 100, outputPath)) {
+                    if (job.getPipelineKey() != null && !degraded.get()) {
+                        artifactCacheService.register(job.getPipelineKey(), ArtifactType.RENDER, outputPath);
+                    }
+                    log.info("Job {} completed successfully", jobId);
+                }
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof ProcessExecutionException processError
+                        && processError.getReason() == ProcessExecutionException.Reason.CANCELLED) {
+                    // Cancelled after losing the lease: the job now belongs to another node
+                    log.info("Job {} was cancelled during {}", jobId, processError.getStage());
+                    return null;
+                }
+                log.error("Job {} failed: {}", jobId, cause.getMessage(), cause);
+                job.setErrorMessage(cause.getMessage());
+                updateJobStatus(job, JobStatus.FAILED, job.getProgress(), null);
+            }
+            return null;
+        });
     }
 
-    @Transactional
+    /**
+     * Called when this node lost the lease on a job it is running: stages not yet started
+     * are skipped and the job's outcome is no longer written. Stopping the tools of the
+     * running stage is up to the caller.
+     */
+    public void leaseLost(Long jobId) {
+        AtomicBoolean cancelled = cancellations.get(jobId);
+        if (cancelled != null) {
+            cancelled.set(true);
+        }
+    }
+
+    private void pin(List<String> pinnedKeys, String artifactKey, Long jobId) {
+        artifactCacheService.pin(artifactKey, jobId);
+        pinnedKeys.add(artifactKey);
+    }
+
+    // Fails the stage, and with it every stage chained after it, if the job was cancelled before it started
+    private static <T> Supplier<T> stage(AtomicBoolean cancelled, StageTask<T> task) {
+        return () -> {
+            if (cancelled.get()) {
+                throw new CancellationException("Job was cancelled");
+            }
+            try {
+                return task.run();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface StageTask<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Returns cached or online lyrics, or {@code null} when only transcription can provide them.
+     */
+    private LyricsProvider.LyricsResult findLyrics(String lyricsKey, Path jobDir,
+                                                   VideoDownloadService.VideoDownloadResult downloadResult) throws Exception {
+        Optional<CachedArtifact> cached = artifactCacheService.lookup(lyricsKey);
+        if (cached.isPresent()) {
+            log.info("Reusing cached lyrics {}", cached.get().getPath());
+            return objectMapper.readValue(Paths.get(cached.get().getPath(), LYRICS_FILE).toFile(),
+                    LyricsProvider.LyricsResult.class);
+        }
+        
+        LyricsProvider.LyricsResult lyrics = lyricsService.findOnlineLyrics(downloadResult.getArtist(), downloadResult.getTitle());
+        if (lyrics != null) {
+            cacheLyrics(lyricsKey, jobDir.resolve("lyrics"), lyrics);
+        }
+        return lyrics;
+    }
+
+    private LyricsProvider.LyricsResult transcribeLyrics(String lyricsKey, Path jobDir, String vocalsPath) throws Exception {
+        LyricsProvider.LyricsResult lyrics = lyricsService.transcribe(vocalsPath);
+        cacheLyrics(lyricsKey, jobDir.resolve("lyrics"), lyrics);
+        return lyrics;
+    }
+
+    private void cacheLyrics(String lyricsKey, Path fallbackDir, LyricsProvider.LyricsResult lyrics) throws Exception {
+        // Empty results are not cached so that a later job can retry the lookup
+        if (lyrics != null && !lyrics.getLines().isEmpty()) {
+            artifactCacheService.resolveStage(ArtifactType.LYRICS, lyricsKey, fallbackDir,
+                    dir -> objectMapper.writeValue(dir.resolve(LYRICS_FILE).toFile(), lyrics));
+        }
+    }
+
+    @Transactional(readOnly = true)
     public KaraokeJob getJob(Long id) {
-        return jobRepository.findById(id)
+        return jobStatusCache.get(id, jobRepository::findById)
                 .orElseThrow(() -> new RuntimeException("Job not found: " + id));
     }
 
+    /**
+     * Status and progress transitions of a job, starting with its current state and
+     * completing once it is COMPLETED or FAILED. Coalesced jobs follow their leader.
+     */
+    public Flux<JobEvent> streamJobEvents(Long id) {
+        KaraokeJob job = getJob(id);
+        JobEvent current = JobEvent.of(job);
+        if (current.isTerminal()) {
+            return Flux.just(current);
+        }
+        Long sourceId = job.getParentJobId() != null ? job.getParentJobId() : id;
+        return Flux.concat(Flux.just(current),
+                        jobEventBus.subscribe(sourceId).map(event -> event.toBuilder().jobId(id).build()))
+                .distinctUntilChanged(event -> event.getStatus() + ":" + event.getProgress())
+                .takeUntil(JobEvent::isTerminal);
+    }
+
+    /**
+     * A file of the job's HLS stream, if the render is writing or wrote one. Coalesced jobs
+     * share their leader's stream; jobs completed from the render cache have none.
+     */
+    public Optional<Path> resolveHlsFile(Long id, String fileName) {
+        checkHlsFileName(fileName);
+        return resolveHlsFile(getJob(id), fileName);
+    }
+
+    /**
+     * As {@link #resolveHlsFile(Long, String)}, for a job the caller already loaded.
+     */
+    public Optional<Path> resolveHlsFile(KaraokeJob job, String fileName) {
+        checkHlsFileName(fileName);
+        if (job.getStatus() != JobStatus.PROCESSING && job.getStatus() != JobStatus.COMPLETED) {
+            return Optional.empty();
+        }
+        Long renderJobId = job.getParentJobId() != null ? job.getParentJobId() : job.getId();
+        Path file = karaokeVideoGeneratorService.hlsDir(renderJobId.toString()).resolve(fileName);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private static void checkHlsFileName(String fileName) {
+        if (!HLS_FILE_NAME.matcher(fileName).matches()) {
+            throw new IllegalArgumentException("Invalid HLS file name: " + fileName);
+        }
+    }
+
+    /**
+     * One page of the job listing, newest first. Fetches one row more than requested to
+     * tell whether another page follows, instead of counting the table.
+     *
+     * @param cursor token from the previous page, or null for the first page
+     */
     @Transactional(readOnly = true)
-    public org.springframework.data.domain.Page<KaraokeJob> getAllJobs(org.springframework.data.domain.Pageable pageable) {
-        return jobRepository.findAll(pageable);
+    public JobListPage listJobs(JobStatus status, LocalDateTime createdFrom, LocalDateTime createdTo,
+                                String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_LIST_PAGE_SIZE);
+        JobCursor after = cursor != null && !cursor.isBlank() ? JobCursor.decode(cursor) : null;
+        List<JobSummary> rows = jobRepository.findJobSummaries(status, createdFrom, createdTo,
+                after != null ? after.getCreatedAt() : null,
+                after != null ? after.getId() : null,
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<JobSummary> jobs = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? JobCursor.after(jobs.get(jobs.size() - 1)).encode() : null;
+        return new JobListPage(jobs, nextCursor);
     }
 
-    private void updateJobStatus(KaraokeJob job, JobStatus status, int progress, String outputPath) {
+    // Updates go through targeted queries rather than save(job) so they never overwrite the
+    // lease columns maintained by heartbeats, and reach coalesced jobs as well
+
+    /**
+     * Writes the terminal state of a job this node holds the lease on. Returns false, leaving
+     * the job untouched, when the lease has passed to another node in the meantime.
+     */
+    private boolean updateJobStatus(KaraokeJob job, JobStatus status, int progress, String outputPath) {
+        String outputVideoPath = outputPath != null ? outputPath : job.getOutputVideoPath();
+        LocalDateTime now = LocalDateTime.now();
+        jobStateStore.discard(job.getId());
+        boolean owned = Boolean.TRUE.equals(transactionTemplate.execute(tx -> {
+            if (jobRepository.finishLeasedJob(job.getId(), nodeIdentity.getNodeId(), status, progress,
+                    outputVideoPath, job.getErrorMessage(), now) != 1) {
+                return false;
+            }
+            jobRepository.updateJobState(job.getId(), status, progress, outputVideoPath, job.getErrorMessage(), now);
+            return true;
+        }));
+        if (!owned) {
+            log.warn("Job {} is no longer leased to this node, not marking it {}", job.getId(), status);
+            return false;
+        }
         job.setStatus(status);
         job.setProgress(progress);
-        if (outputPath != null) {
-            job.setOutputVideoPath(outputPath);
+        job.setOutputVideoPath(outputVideoPath);
+        if (job.getPipelineKey() != null) {
+            inFlightLeaders.remove(job.getPipelineKey(), job.getId());
         }
-        jobRepository.save(job);
+        jobStatusCache.put(job);
+        jobEventBus.publish(JobEvent.of(job));
+        return true;
     }
 
+    // Progress only moves forward, so a late update from a parallel stage cannot rewind it.
+    // It is written behind by JobStateStore rather than once per reported percent
     private void updateJobProgress(KaraokeJob job, int progress) {
-        job.setProgress(progress);
-        jobRepository.save(job);
+        synchronized (job) {
+            if (job.getProgress() != null && progress <= job.getProgress()) {
+                return;
+            }
+            job.setProgress(progress);
+        }
+        jobStateStore.recordProgress(job.getId(), progress);
+        jobStatusCache.put(job);
+        jobEventBus.publish(JobEvent.of(job));
+    }
+
+    /**
+     * Maps a stage's own completion fraction onto its share of the job's progress.
+     */
+    private DoubleConsumer progressRange(KaraokeJob job, int from, int to) {
+        return fraction -> updateJobProgress(job, from + (int) ((to - from) * fraction));
     }
 
     private String serializeOptions(GenerateKaraokeRequest request) {
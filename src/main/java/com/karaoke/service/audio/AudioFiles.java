@@ -0,0 +1,59 @@
+package com.karaoke.service.audio;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the length of the intermediate audio files from their headers, without decoding.
+ * Java Sound only knows WAV, so FLAC lengths come from the STREAMINFO block.
+ */
+public final class AudioFiles {
+
+    private static final int FLAC_MAGIC = 0x664C6143; // "fLaC"
+    private static final int STREAMINFO = 0;
+
+    private AudioFiles() {
+    }
+
+    /**
+     * Duration in seconds, or 0 when the header does not say.
+     */
+    public static double durationSeconds(Path audioFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(audioFile))) {
+            if (in.readInt() == FLAC_MAGIC) {
+                return flacDurationSeconds(in);
+            }
+        }
+        try {
+            AudioFileFormat format = AudioSystem.getAudioFileFormat(audioFile.toFile());
+            if (format.getFrameLength() > 0 && format.getFormat().getFrameRate() > 0) {
+                return format.getFrameLength() / format.getFormat().getFrameRate();
+            }
+            return 0;
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio file: " + audioFile, e);
+        }
+    }
+
+    // STREAMINFO is always the first metadata block: 4 byte block header, then min/max block size
+    // (2+2 bytes), min/max frame size (3+3 bytes), and 64 bits holding sample rate (20),
+    // channels - 1 (3), bits per sample - 1 (5) and total samples (36, 0 if unknown)
+    private static double flacDurationSeconds(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        int blockType = in.readUnsignedByte() & 0x7F;
+        if (blockType != STREAMINFO) {
+            throw new IOException("FLAC stream does not start with STREAMINFO");
+        }
+        in.skipNBytes(3 + 10);
+        long packed = in.readLong();
+        long sampleRate = packed >>> 44;
+        long totalSamples = packed & 0xF_FFFF_FFFFL;
+        return sampleRate > 0 ? (double) totalSamples / sampleRate : 0;
+    }
+}
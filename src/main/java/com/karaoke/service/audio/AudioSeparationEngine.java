@@ -0,0 +1,29 @@
+package com.karaoke.service.audio;
+
+import com.karaoke.model.dto.SeparationQuality;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A way of splitting a song into vocals and instrumental stems. Implementations write
+ * {@code vocals} and {@code instrumental} stems, as WAV or FLAC, into the output directory.
+ */
+public interface AudioSeparationEngine {
+
+    /**
+     * Identifies the model and its settings. It is part of the stems cache key, so it must
+     * change whenever the engine would produce different stems.
+     */
+    String getId();
+
+    SeparationQuality getQuality();
+
+    /**
+     * @param wavStems write WAV stems whatever the configured intermediate format, for
+     *                 renders that mix the stems in the JVM
+     */
+    void separate(String inputPath, Path outputDir, String jobId, boolean wavStems, DoubleConsumer progressListener)
+            throws IOException, InterruptedException;
+}
@@ -1,66 +1,130 @@
 package com.karaoke.service.audio;
 
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.SeparationQuality;
+import com.karaoke.service.cache.ArtifactCacheService;
+import com.karaoke.service.cache.PipelineKeys;
+import com.karaoke.service.queue.JobQueueService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class AudioSeparationService {
 
-    @Value("${app.tools.python-path:python}")
-    private String pythonPath;
+    private static final List<String> STEM_EXTENSIONS = List.of("flac", "wav");
 
-    public AudioSeparationResult separateAudio(String videoPath, String jobDir) throws IOException, InterruptedException {
-        log.info("Separating audio from video: {}", videoPath);
-        
-        String scriptPath = Paths.get("src", "main", "resources", "scripts", "separate_audio.py").toString();
-        File scriptFile = new File(scriptPath);
-        
-        if (!scriptFile.exists()) {
-            // Try alternative path
-            scriptPath = Paths.get("scripts", "separate_audio.py").toString();
-            scriptFile = new File(scriptPath);
+    private final List<AudioSeparationEngine> engines;
+    private final ArtifactCacheService artifactCacheService;
+    private final JobQueueService jobQueueService;
+    private final PipelineExecutors pipelineExecutors;
+
+    private final Map<SeparationQuality, AudioSeparationEngine> enginesByQuality = new EnumMap<>(SeparationQuality.class);
+
+    @Value("${app.separation.load-shedding.enabled:true}")
+    private boolean loadSheddingEnabled;
+
+    @Value("${app.separation.load-shedding.balanced-above:8}")
+    private int balancedAbove;
+
+    @Value("${app.separation.load-shedding.fast-above:20}")
+    private int fastAbove;
+
+    @PostConstruct
+    public void init() {
+        for (AudioSeparationEngine engine : engines) {
+            AudioSeparationEngine previous = enginesByQuality.put(engine.getQuality(), engine);
+            if (previous != null) {
+                throw new IllegalStateException("Two separation engines for " + engine.getQuality()
+                        + ": " + previous + " and " + engine);
+            }
         }
-        
-        if (!scriptFile.exists()) {
-            throw new IOException("Audio separation script not found at: " + scriptPath);
+        for (SeparationQuality quality : SeparationQuality.values()) {
+            if (!enginesByQuality.containsKey(quality)) {
+                throw new IllegalStateException("No separation engine for " + quality);
+            }
         }
+    }
+
+    /**
+     * Picks the engine for a job. Normally that is the requested tier, but while the queue is
+     * deep a slower tier is traded for a faster one, so latency degrades in quality rather
+     * than in waiting time. Stems already cached for the requested tier are always used.
+     */
+    public AudioSeparationEngine selectEngine(SeparationQuality requested, String youtubeUrl) {
+        AudioSeparationEngine preferred = enginesByQuality.get(requested);
+        if (!loadSheddingEnabled || requested == SeparationQuality.FAST
+                || artifactCacheService.exists(PipelineKeys.stemsKey(youtubeUrl, preferred.getId()))) {
+            return preferred;
+        }
+        long depth = queueDepth();
+        SeparationQuality ceiling = depth > fastAbove ? SeparationQuality.FAST
+                : depth > balancedAbove ? SeparationQuality.BALANCED
+                : SeparationQuality.HIGH;
+        if (requested.compareTo(ceiling) <= 0) {
+            return preferred;
+        }
+        log.info("Queue depth {}: separating {} with {} instead of {}", depth, youtubeUrl, ceiling, requested);
+        return enginesByQuality.get(ceiling);
+    }
+
+    public AudioSeparationResult separateAudio(String videoPath, Path outputDir, String jobId,
+                                               AudioSeparationEngine engine, boolean wavStems,
+                                               DoubleConsumer progressListener)
+            throws IOException, InterruptedException {
+        log.info("Separating audio from video: {} with {}", videoPath, engine);
         
-        String outputDir = Paths.get(jobDir, "separated").toString();
-        Files.createDirectories(Paths.get(outputDir));
-        
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                pythonPath,
-                scriptFile.getAbsolutePath(),
-                "--input", videoPath,
-                "--output", outputDir
-        );
-        
-        processBuilder.redirectErrorStream(true);
-        Process process = processBuilder.start();
-        
-        int exitCode = process.waitFor();
+        Files.createDirectories(outputDir);
+        engine.separate(videoPath, outputDir, jobId, wavStems, progressListener);
         
-        if (exitCode != 0) {
-            throw new IOException("Audio separation failed with exit code: " + exitCode);
-        }
+        AudioSeparationResult result = locateStems(outputDir);
+        log.info("Audio separated successfully. Vocals: {}, Instrumental: {}",
+                result.getVocalsPath(), result.getInstrumentalPath());
         
-        String vocalsPath = Paths.get(outputDir, "vocals.wav").toString();
-        String instrumentalPath = Paths.get(outputDir, "instrumental.wav").toString();
+        return result;
+    }
+
+    // Jobs not yet claimed anywhere plus jobs on this node waiting for a separation slot
+    private long queueDepth() {
+        return jobQueueService.getQueueDepth()
+                + pipelineExecutors.getSeparationExecutor().getThreadPoolExecutor().getQueue().size();
+    }
+
+    /**
+     * Rebuilds the separation result from a directory previously filled by {@link #separateAudio}.
+     */
+    public AudioSeparationResult locateStems(Path stemsDir) throws IOException {
+        Path vocalsPath = findStem(stemsDir, "vocals");
+        Path instrumentalPath = findStem(stemsDir, "instrumental");
         
-        if (!Files.exists(Paths.get(vocalsPath)) || !Files.exists(Paths.get(instrumentalPath))) {
+        if (vocalsPath == null || instrumentalPath == null) {
             throw new IOException("Separated audio files not found");
         }
         
-        log.info("Audio separated successfully. Vocals: {}, Instrumental: {}", vocalsPath, instrumentalPath);
-        
-        return new AudioSeparationResult(vocalsPath, instrumentalPath);
+        return new AudioSeparationResult(vocalsPath.toString(), instrumentalPath.toString());
+    }
+
+    // Stems cached before app.intermediate.stems-format changed keep their old format
+    private static Path findStem(Path stemsDir, String name) {
+        for (String extension : STEM_EXTENSIONS) {
+            Path stem = stemsDir.resolve(name + "." + extension);
+            if (Files.exists(stem)) {
+                return stem;
+            }
+        }
+        return null;
     }
 
     public static class AudioSeparationResult {
@@ -0,0 +1,96 @@
+package com.karaoke.service.audio;
+
+import com.karaoke.model.dto.SeparationQuality;
+import com.karaoke.service.process.ProcessRequest;
+import com.karaoke.service.process.ProcessRunner;
+import com.karaoke.service.process.ProgressParsers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Runs {@code separate_audio.py} with fixed settings, on a pooled worker when the pool is
+ * enabled and as a one-shot process otherwise. One instance per tier is defined in
+ * {@link com.karaoke.config.SeparationEngineConfig}.
+ */
+public class ScriptSeparationEngine implements AudioSeparationEngine {
+
+    private final SeparationQuality quality;
+    private final SeparationSettings settings;
+    private final ProcessRunner processRunner;
+    private final SeparationWorkerPool workerPool;
+    private final String pythonPath;
+    private final Duration timeout;
+
+    public ScriptSeparationEngine(SeparationQuality quality, SeparationSettings settings, ProcessRunner processRunner,
+                                  SeparationWorkerPool workerPool, String pythonPath, Duration timeout) {
+        this.quality = quality;
+        this.settings = settings;
+        this.processRunner = processRunner;
+        this.workerPool = workerPool;
+        this.pythonPath = pythonPath;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String getId() {
+        return settings.id();
+    }
+
+    @Override
+    public SeparationQuality getQuality() {
+        return quality;
+    }
+
+    public SeparationSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public void separate(String inputPath, Path outputDir, String jobId, boolean wavStems,
+                         DoubleConsumer progressListener) throws IOException, InterruptedException {
+        File scriptFile = locateScript();
+        SeparationSettings settings = wavStems ? this.settings.withStemFormat("wav") : this.settings;
+        if (workerPool.isEnabled()) {
+            workerPool.separate(scriptFile.getAbsolutePath(), settings, inputPath, outputDir.toString(), jobId,
+                    timeout, progressListener);
+            return;
+        }
+        processRunner.run(ProcessRequest.builder()
+                .arg(pythonPath)
+                .arg(scriptFile.getAbsolutePath())
+                .arg("--input").arg(inputPath)
+                .arg("--output").arg(outputDir.toString())
+                .command(settings.toArgs())
+                .stage("Audio separation")
+                .jobId(jobId)
+                .lineListener(ProgressParsers.separation().reportingTo(progressListener))
+                .timeout(timeout)
+                .build());
+    }
+
+    private static File locateScript() throws IOException {
+        String scriptPath = Paths.get("src", "main", "resources", "scripts", "separate_audio.py").toString();
+        File scriptFile = new File(scriptPath);
+        
+        if (!scriptFile.exists()) {
+            // Try alternative path
+            scriptPath = Paths.get("scripts", "separate_audio.py").toString();
+            scriptFile = new File(scriptPath);
+        }
+        
+        if (!scriptFile.exists()) {
+            throw new IOException("Audio separation script not found at: " + scriptPath);
+        }
+        return scriptFile;
+    }
+
+    @Override
+    public String toString() {
+        return quality + " (" + getId() + ")";
+    }
+}
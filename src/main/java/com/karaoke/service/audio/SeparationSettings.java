@@ -0,0 +1,97 @@
+package com.karaoke.service.audio;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Options for {@code separate_audio.py}, parsed from a spec such as
+ * {@code method=demucs,model=htdemucs,shifts=2,overlap=0.25}. {@code method=auto} prefers
+ * Spleeter 2stems and falls back to Demucs with the given settings. The stem format is set
+ * separately, from {@code app.intermediate.stems-format}.
+ */
+@Getter
+public class SeparationSettings {
+
+    private static final Set<String> METHODS = Set.of("auto", "spleeter", "demucs");
+    private static final Set<String> STEM_FORMATS = Set.of("wav", "flac");
+
+    private final String method;
+    private final String model;
+    private final int shifts;
+    private final double overlap;
+    private final String stemFormat;
+
+    public SeparationSettings(String method, String model, int shifts, double overlap) {
+        this(method, model, shifts, overlap, "wav");
+    }
+
+    public SeparationSettings(String method, String model, int shifts, double overlap, String stemFormat) {
+        if (!METHODS.contains(method)) {
+            throw new IllegalArgumentException("Unknown separation method: " + method);
+        }
+        if (shifts < 0 || overlap < 0 || overlap >= 1) {
+            throw new IllegalArgumentException("Invalid Demucs shifts/overlap: " + shifts + "/" + overlap);
+        }
+        if (!STEM_FORMATS.contains(stemFormat)) {
+            throw new IllegalArgumentException("Unsupported stem format: " + stemFormat);
+        }
+        this.method = method;
+        this.model = model;
+        this.shifts = shifts;
+        this.overlap = overlap;
+        this.stemFormat = stemFormat;
+    }
+
+    public static SeparationSettings parse(String spec) {
+        String method = "auto";
+        String model = "htdemucs";
+        int shifts = 1;
+        double overlap = 0.25;
+        for (String option : spec.split(",")) {
+            String[] pair = option.trim().split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Malformed separation option '" + option + "' in: " + spec);
+            }
+            String value = pair[1].trim();
+            switch (pair[0].trim()) {
+                case "method" -> method = value;
+                case "model" -> model = value;
+                case "shifts" -> shifts = Integer.parseInt(value);
+                case "overlap" -> overlap = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown separation option '" + pair[0] + "' in: " + spec);
+            }
+        }
+        return new SeparationSettings(method, model, shifts, overlap);
+    }
+
+    public SeparationSettings withStemFormat(String format) {
+        return new SeparationSettings(method, model, shifts, overlap, format);
+    }
+
+    /**
+     * Stable identifier of these settings, for cache keys. The stem format is left out: it
+     * does not change the stems, and {@link AudioSeparationService#locateStems} reads either.
+     */
+    public String id() {
+        return String.format(Locale.ROOT, "%s:%s:s%d:o%.2f", method, model, shifts, overlap);
+    }
+
+    public List<String> toArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("--method");
+        args.add(method);
+        args.add("--model");
+        args.add(model);
+        args.add("--shifts");
+        args.add(Integer.toString(shifts));
+        args.add("--overlap");
+        args.add(String.format(Locale.ROOT, "%.2f", overlap));
+        args.add("--stem-format");
+        args.add(stemFormat);
+        return args;
+    }
+}
@@ -0,0 +1,217 @@
+package com.karaoke.service.audio;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.karaoke.service.process.OutputRingBuffer;
+import com.karaoke.service.process.ProcessExecutionException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * One long-lived {@code separate_audio.py --serve} process. Requests and events are JSON
+ * lines on its stdin and stdout; stderr carries the model libraries' logs and progress bars.
+ * A worker runs one separation at a time.
+ */
+@Slf4j
+class SeparationWorker {
+
+    private static final String STAGE = "Audio separation";
+    // Put on the event queue when stdout closes, i.e. the worker exited
+    private static final JsonNode EXITED = JsonNodeFactory.instance.objectNode().put("event", "exited");
+
+    private final Process process;
+    // Method and model loaded at startup; other ones still work but load on first use
+    private final String preloaded;
+    private final ObjectMapper objectMapper;
+    private final BufferedWriter requests;
+    private final BlockingQueue<JsonNode> events = new LinkedBlockingQueue<>();
+    private final OutputRingBuffer stderrTail;
+    private volatile Consumer<String> stderrListener;
+    private volatile boolean cancelled;
+    private int jobsRun;
+
+    SeparationWorker(Process process, String preloaded, ObjectMapper objectMapper, int tailLines) {
+        this.process = process;
+        this.preloaded = preloaded;
+        this.objectMapper = objectMapper;
+        this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.stderrTail = new OutputRingBuffer(tailLines);
+        startReader("separation-worker-" + process.pid() + "-out", this::readEvents);
+        startReader("separation-worker-" + process.pid() + "-err", this::readStderr);
+    }
+
+    Process getProcess() {
+        return process;
+    }
+
+    String getPreloaded() {
+        return preloaded;
+    }
+
+    int getJobsRun() {
+        return jobsRun;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Waits for the model to load; the worker announces itself once it can take requests.
+     */
+    void awaitReady(Duration timeout) throws IOException, InterruptedException {
+        JsonNode event = events.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (event == null) {
+            throw failure(ProcessExecutionException.Reason.TIMED_OUT,
+                    "Separation worker not ready after " + timeout.toSeconds() + "s");
+        }
+        if (!"ready".equals(type(event))) {
+            throw failure(ProcessExecutionException.Reason.FAILED, "Separation worker failed to start");
+        }
+        log.info("Separation worker {} ready ({})", process.pid(), event.path("method").asText("unknown"));
+    }
+
+    boolean ping(Duration timeout) throws InterruptedException {
+        try {
+            send(objectMapper.createObjectNode().put("cmd", "ping"));
+            JsonNode event = events.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return event != null && "pong".equals(type(event));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    void separate(SeparationSettings settings, String inputPath, String outputDir, Duration timeout,
+                  DoubleConsumer progressListener, Consumer<String> stderrLines) throws IOException, InterruptedException {
+        jobsRun++;
+        cancelled = false;
+        stderrListener = stderrLines;
+        try {
+            ObjectNode request = objectMapper.createObjectNode()
+                    .put("cmd", "separate")
+                    .put("input", inputPath)
+                    .put("output", outputDir)
+                    .put("method", settings.getMethod())
+                    .put("model", settings.getModel())
+                    .put("shifts", settings.getShifts())
+                    .put("overlap", settings.getOverlap())
+                    .put("format", settings.getStemFormat());
+            send(request);
+
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                JsonNode event = remaining > 0 ? events.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (event == null) {
+                    throw failure(ProcessExecutionException.Reason.TIMED_OUT,
+                            STAGE + " timed out after " + timeout.toSeconds() + "s");
+                }
+                switch (type(event)) {
+                    case "progress" -> progressListener.accept(event.path("percent").asDouble() / 100.0);
+                    case "done" -> {
+                        return;
+                    }
+                    case "error" -> throw failure(ProcessExecutionException.Reason.FAILED,
+                            STAGE + " failed: " + event.path("message").asText());
+                    case "exited" -> throw cancelled
+                            ? failure(ProcessExecutionException.Reason.CANCELLED, STAGE + " was cancelled")
+                            : failure(ProcessExecutionException.Reason.FAILED, STAGE + " worker exited unexpectedly");
+                    default -> log.debug("Ignoring separation worker event {}", event);
+                }
+            }
+        } finally {
+            stderrListener = null;
+        }
+    }
+
+    /**
+     * Marks the running separation as cancelled; the caller then stops the process.
+     */
+    void markCancelled() {
+        cancelled = true;
+    }
+
+    /**
+     * Asks the worker to exit; it is killed by the pool if it does not.
+     */
+    void requestShutdown() {
+        try {
+            send(objectMapper.createObjectNode().put("cmd", "shutdown"));
+            requests.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    private synchronized void send(JsonNode request) throws IOException {
+        requests.write(objectMapper.writeValueAsString(request));
+        requests.newLine();
+        requests.flush();
+    }
+
+    private void readEvents() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    events.add(objectMapper.readTree(line));
+                } catch (IOException e) {
+                    log.debug("Separation worker {} wrote a non-protocol line: {}", process.pid(), line);
+                }
+            }
+        } catch (IOException e) {
+            log.trace("Separation worker {} stdout closed: {}", process.pid(), e.getMessage());
+        }
+        events.add(EXITED);
+    }
+
+    private void readStderr() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                stderrTail.add(line);
+                Consumer<String> listener = stderrListener;
+                if (listener != null) {
+                    listener.accept(line);
+                }
+            }
+        } catch (IOException e) {
+            log.trace("Separation worker {} stderr closed: {}", process.pid(), e.getMessage());
+        }
+    }
+
+    private String type(JsonNode event) {
+        return event.path("event").asText();
+    }
+
+    private ProcessExecutionException failure(ProcessExecutionException.Reason reason, String message) {
+        List<String> tail = stderrTail.lines();
+        String lastLine = stderrTail.lastLine();
+        log.warn("{}; last {} lines of worker {} output:\n{}", message, tail.size(), process.pid(), String.join("\n", tail));
+        return new ProcessExecutionException(lastLine != null ? message + " (" + lastLine.trim() + ")" : message,
+                STAGE, reason, null, tail);
+    }
+
+    private void startReader(String name, Runnable reader) {
+        Thread thread = new Thread(reader, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,264 @@
+package com.karaoke.service.audio;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.service.process.ProcessExecutionException;
+import com.karaoke.service.process.ProcessRunner;
+import com.karaoke.service.process.ProgressParsers;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Persistent separation workers, so a job pays only for inference and not for importing
+ * the ML framework and loading the model. Each worker preloads the method and model of the
+ * tier that started it, and jobs prefer an idle worker that has their own loaded; when none
+ * is idle, the least recently used idle worker of another kind makes room for a new one.
+ * Workers start lazily up to {@code pool-size},
+ * idle workers are pinged periodically on a thread of their own, and a worker that crashes,
+ * times out, fails a health check or is cancelled mid-job is killed and replaced by a fresh
+ * one on next use.
+ * Workers are also recycled after {@code max-jobs-per-worker} jobs to bound leaked memory.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SeparationWorkerPool {
+
+    private final ProcessRunner processRunner;
+    private final ObjectMapper objectMapper;
+    private final PipelineExecutors pipelineExecutors;
+
+    @Value("${app.tools.python-path:python}")
+    private String pythonPath;
+
+    @Value("${app.separation.workers.enabled:false}")
+    private boolean enabled;
+
+    // 0 = one worker per separation thread, so a running job never waits for a worker
+    @Value("${app.separation.workers.pool-size:0}")
+    private int poolSize;
+
+    // Loading TensorFlow or PyTorch and the model can take a while on a cold node
+    @Value("${app.separation.workers.startup-timeout-ms:180000}")
+    private long startupTimeoutMs = 180000;
+
+    @Value("${app.separation.workers.health-check-timeout-ms:10000}")
+    private long healthCheckTimeoutMs = 10000;
+
+    @Value("${app.separation.workers.max-jobs-per-worker:50}")
+    private int maxJobsPerWorker = 50;
+
+    @Value("${app.process.output-tail-lines:200}")
+    private int outputTailLines = 200;
+
+    // Passed in by AudioSeparationService, which locates the script
+    private volatile String scriptPath;
+
+    // Least recently returned first
+    private final BlockingQueue<SeparationWorker> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger startedWorkers = new AtomicInteger();
+    private volatile Semaphore slots;
+    private volatile boolean shutdown;
+    private final ExecutorService healthChecker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "separation-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean healthCheckRunning = new AtomicBoolean();
+
+    /**
+     * Runs one separation on a pooled worker, waiting for a free worker if all are busy.
+     * The wait counts against the timeout.
+     */
+    public void separate(String scriptPath, SeparationSettings settings, String inputPath, String outputDir,
+                         String jobId, Duration timeout, DoubleConsumer progressListener) throws IOException, InterruptedException {
+        this.scriptPath = scriptPath;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Semaphore permits = slots();
+        if (!permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new ProcessExecutionException("No separation worker free after " + timeout.toSeconds() + "s",
+                    "Audio separation", ProcessExecutionException.Reason.TIMED_OUT, null, List.of());
+        }
+        SeparationWorker worker = null;
+        boolean healthy = false;
+        try {
+            worker = borrow(settings, permits);
+            SeparationWorker running = worker;
+            try (AutoCloseable cancelHook = processRunner.onCancel(jobId, () -> {
+                running.markCancelled();
+                processRunner.terminate(running.getProcess());
+            })) {
+                worker.separate(settings, inputPath, outputDir, Duration.ofNanos(Math.max(0, deadline - System.nanoTime())),
+                        progressListener, ProgressParsers.separation().reportingTo(progressListener));
+            }
+            healthy = true;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // Only the cancel hook's close() declares Exception, and it does not throw
+            throw new IllegalStateException(e);
+        } finally {
+            if (worker != null) {
+                giveBack(worker, healthy);
+            }
+            permits.release();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getIdleWorkerCount() {
+        return idle.size();
+    }
+
+    public int getStartedWorkerCount() {
+        return startedWorkers.get();
+    }
+
+    /**
+     * Hands the health checks to their own thread: pings block for up to the health-check
+     * timeout per worker, and the shared scheduler thread also runs the queue heartbeat.
+     */
+    @Scheduled(fixedDelayString = "${app.separation.workers.health-check-interval-ms:30000}")
+    public void scheduleHealthCheck() {
+        if (!shutdown && healthCheckRunning.compareAndSet(false, true)) {
+            healthChecker.execute(() -> {
+                try {
+                    checkIdleWorkers();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    healthCheckRunning.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Pings every idle worker once. Unhealthy workers are killed and not replaced here: the
+     * next job starts a fresh one when no idle worker is left, so no model load runs on this thread.
+     */
+    void checkIdleWorkers() throws InterruptedException {
+        Semaphore permits = slots;
+        if (permits == null) {
+            return;
+        }
+        // Holding a slot keeps a checked worker from being counted twice against the pool size
+        for (int i = idle.size(); i > 0 && permits.tryAcquire(); i--) {
+            try {
+                SeparationWorker worker = idle.poll();
+                if (worker == null) {
+                    return;
+                }
+                if (worker.isAlive() && worker.ping(Duration.ofMillis(healthCheckTimeoutMs))) {
+                    idle.add(worker);
+                } else {
+                    log.warn("Separation worker {} failed its health check, dropping it", worker.getProcess().pid());
+                    processRunner.terminate(worker.getProcess());
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+        healthChecker.shutdownNow();
+        List<SeparationWorker> workers = new ArrayList<>();
+        idle.drainTo(workers);
+        workers.forEach(SeparationWorker::requestShutdown);
+        workers.forEach(worker -> processRunner.terminate(worker.getProcess()));
+    }
+
+    private SeparationWorker borrow(SeparationSettings settings, Semaphore permits) throws IOException, InterruptedException {
+        String kind = kind(settings);
+        for (SeparationWorker worker : idle) {
+            if (!worker.getPreloaded().equals(kind) || !idle.remove(worker)) {
+                continue;
+            }
+            if (worker.isAlive()) {
+                return worker;
+            }
+            log.warn("Separation worker {} exited while idle, replacing it", worker.getProcess().pid());
+        }
+        // Busy plus idle workers must stay within the pool size once the new one is up
+        SeparationWorker retired;
+        while (idle.size() > permits.availablePermits() && (retired = idle.poll()) != null) {
+            log.info("Retiring idle {} separation worker {} to start a {} one", retired.getPreloaded(),
+                    retired.getProcess().pid(), kind);
+            retired.requestShutdown();
+            processRunner.terminate(retired.getProcess());
+        }
+        return startWorker(settings);
+    }
+
+    private static String kind(SeparationSettings settings) {
+        return settings.getMethod() + ":" + settings.getModel();
+    }
+
+    private void giveBack(SeparationWorker worker, boolean healthy) {
+        if (healthy && !shutdown && worker.isAlive() && worker.getJobsRun() < maxJobsPerWorker) {
+            idle.add(worker);
+            return;
+        }
+        // A failed, timed out or cancelled job may have left the worker mid-inference
+        if (healthy) {
+            log.info("Recycling separation worker {} after {} jobs", worker.getProcess().pid(), worker.getJobsRun());
+            worker.requestShutdown();
+        }
+        processRunner.terminate(worker.getProcess());
+    }
+
+    private SeparationWorker startWorker(SeparationSettings settings) throws IOException, InterruptedException {
+        if (scriptPath == null) {
+            throw new IOException("Separation worker script is not known yet");
+        }
+        Process process = new ProcessBuilder(pythonPath, scriptPath, "--serve",
+                "--method", settings.getMethod(), "--model", settings.getModel()).start();
+        startedWorkers.incrementAndGet();
+        SeparationWorker worker = new SeparationWorker(process, kind(settings), objectMapper, outputTailLines);
+        try {
+            worker.awaitReady(Duration.ofMillis(startupTimeoutMs));
+        } catch (IOException | InterruptedException e) {
+            processRunner.terminate(process);
+            throw e;
+        }
+        return worker;
+    }
+
+    private Semaphore slots() {
+        Semaphore permits = slots;
+        if (permits == null) {
+            synchronized (this) {
+                if (slots == null) {
+                    int size = poolSize > 0 ? poolSize : pipelineExecutors.getSeparationExecutor().getMaxPoolSize();
+                    slots = new Semaphore(Math.max(1, size), true);
+                }
+                permits = slots;
+            }
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,71 @@
+package com.karaoke.service.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * RMS loudness of a WAV stem over fixed hops, all channels folded to mono. The file is
+ * streamed through one fixed-size buffer, so memory use does not grow with the song.
+ */
+public final class VocalEnvelope {
+
+    private static final int BUFFER_BYTES = 64 << 10;
+
+    private VocalEnvelope() {
+    }
+
+    /**
+     * One RMS value in [0, 1] per {@code hopSeconds} of audio; a trailing partial hop is kept.
+     */
+    public static float[] rms(Path wav, double hopSeconds) throws IOException {
+        if (hopSeconds <= 0) {
+            throw new IllegalArgumentException("Hop must be positive: " + hopSeconds);
+        }
+        StemMixer.WavFormat format = StemMixer.WavFormat.read(wav);
+        int hopFrames = Math.max(1, (int) Math.round(format.sampleRate * hopSeconds));
+        long frames = format.frames();
+        float[] envelope = new float[(int) ((frames + hopFrames - 1) / hopFrames)];
+        int frameBytes = format.bytesPerSample * format.channels;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES - BUFFER_BYTES % frameBytes).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(wav, StandardOpenOption.READ)) {
+            long position = format.dataOffset;
+            long end = format.dataOffset + format.dataLength;
+            double sumSquares = 0;
+            int inHop = 0;
+            int hop = 0;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+                buffer.flip();
+                while (buffer.remaining() >= frameBytes) {
+                    float sample = 0;
+                    for (int c = 0; c < format.channels; c++) {
+                        sample += format.floating ? buffer.getFloat() : buffer.getShort() * (1f / 32768f);
+                    }
+                    sample /= format.channels;
+                    sumSquares += sample * sample;
+                    if (++inHop == hopFrames) {
+                        envelope[hop++] = (float) Math.sqrt(sumSquares / inHop);
+                        sumSquares = 0;
+                        inHop = 0;
+                    }
+                }
+                // A read can end mid-frame; step back so the next read starts on a frame boundary
+                position -= buffer.remaining();
+            }
+            if (inHop > 0 && hop < envelope.length) {
+                envelope[hop] = (float) Math.sqrt(sumSquares / inHop);
+            }
+        }
+        return envelope;
+    }
+}
@@ -0,0 +1,281 @@
+package com.karaoke.service.cache;
+
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.NodeIdentity;
+import com.karaoke.model.dto.ArtifactType;
+import com.karaoke.model.entity.ArtifactPin;
+import com.karaoke.model.entity.CachedArtifact;
+import com.karaoke.repository.ArtifactPinRepository;
+import com.karaoke.repository.CachedArtifactRepository;
+import com.karaoke.repository.KaraokeJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArtifactCacheService {
+
+    private final CachedArtifactRepository artifactRepository;
+    private final FileStorageConfig fileStorageConfig;
+    private final KaraokeJobRepository jobRepository;
+    private final ArtifactPinRepository pinRepository;
+    private final NodeIdentity nodeIdentity;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.artifact-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.artifact-cache.max-size-mb:10240}")
+    private long maxSizeMb;
+
+    @Value("${app.artifact-cache.max-entries:1000}")
+    private int maxEntries;
+
+    /**
+     * Returns the cached artifact for the key if its backing file still exists,
+     * marking it as recently used. Stale entries whose file has disappeared are dropped.
+     */
+    @Transactional
+    public Optional<CachedArtifact> lookup(String artifactKey) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<CachedArtifact> found = artifactRepository.findByArtifactKey(artifactKey);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        CachedArtifact artifact = found.get();
+        if (!Files.exists(Paths.get(artifact.getPath()))) {
+            log.info("Cached artifact {} is missing on disk, dropping entry", artifact.getPath());
+            artifactRepository.delete(artifact);
+            return Optional.empty();
+        }
+        artifact.setLastAccessedAt(LocalDateTime.now());
+        artifact.setHitCount(artifact.getHitCount() + 1);
+        return Optional.of(artifactRepository.save(artifact));
+    }
+
+    /**
+     * Whether a usable artifact is cached under the key. Unlike {@link #lookup} this is a
+     * probe: it neither counts as a use nor drops a stale entry.
+     */
+    @Transactional(readOnly = true)
+    public boolean exists(String artifactKey) {
+        return enabled && artifactRepository.findByArtifactKey(artifactKey)
+                .filter(artifact -> Files.exists(Paths.get(artifact.getPath())))
+                .isPresent();
+    }
+
+    public void register(String artifactKey, ArtifactType type, String path) {
+        if (!enabled) {
+            return;
+        }
+        Path file = normalize(path);
+        long size;
+        try {
+            size = Files.isDirectory(file) ? directorySize(file) : Files.size(file);
+        } catch (IOException e) {
+            log.warn("Not caching artifact {}: {}", path, e.getMessage());
+            return;
+        }
+        CachedArtifact artifact = artifactRepository.findByArtifactKey(artifactKey)
+                .orElseGet(() -> CachedArtifact.builder().artifactKey(artifactKey).build());
+        artifact.setType(type);
+        artifact.setPath(file.toString());
+        artifact.setSizeBytes(size);
+        artifact.setLastAccessedAt(LocalDateTime.now());
+        try {
+            artifactRepository.saveAndFlush(artifact);
+            log.debug("Registered {} artifact {} ({} bytes)", type, file, size);
+        } catch (DataIntegrityViolationException e) {
+            // Another job registered the same key concurrently; either copy is valid
+            log.debug("Artifact key {} already registered", artifactKey);
+        }
+    }
+
+    /**
+     * Returns the directory holding the outputs of a pipeline stage, running the stage
+     * only when no cached copy exists. The stage writes into a private work directory
+     * that is atomically published under the cache directory once it succeeds, so
+     * concurrent or crashed runs never expose partial outputs.
+     */
+    public Path resolveStage(ArtifactType type, String artifactKey, Path fallbackDir,
+                             StageComputation computation) throws Exception {
+        if (!enabled) {
+            Files.createDirectories(fallbackDir);
+            computation.compute(fallbackDir);
+            return fallbackDir;
+        }
+
+        // A call on this bypasses the proxy, so lookup gets its transaction here
+        Optional<CachedArtifact> cached = transactionTemplate.execute(status -> lookup(artifactKey));
+        if (cached.isPresent()) {
+            log.info("Reusing cached {} artifact {}", type, cached.get().getPath());
+            return Paths.get(cached.get().getPath());
+        }
+
+        Path stageRoot = Paths.get(fileStorageConfig.getCacheDirPath(), type.name().toLowerCase(Locale.ROOT));
+        Path finalDir = stageRoot.resolve(artifactKey);
+        Path workDir = stageRoot.resolve(artifactKey + ".tmp-" + UUID.randomUUID());
+        Files.createDirectories(workDir);
+        try {
+            computation.compute(workDir);
+            publish(workDir, finalDir);
+        } finally {
+            deleteQuietly(workDir);
+        }
+
+        register(artifactKey, type, finalDir.toString());
+        return finalDir;
+    }
+
+    /**
+     * Keeps {@link #evict()}, on every node sharing the cache, away from the artifact under
+     * the key until a matching {@link #unpin} or until the job stops processing on this node.
+     * Pin before looking the key up, so the artifact cannot be evicted between the lookup
+     * and its use.
+     */
+    public void pin(String artifactKey, Long jobId) {
+        if (!enabled) {
+            return;
+        }
+        pinRepository.save(ArtifactPin.builder()
+                .artifactKey(artifactKey)
+                .jobId(jobId)
+                .nodeId(nodeIdentity.getNodeId())
+                .build());
+    }
+
+    @Transactional
+    public void unpin(String artifactKey, Long jobId) {
+        if (!enabled) {
+            return;
+        }
+        pinRepository.deletePin(artifactKey, jobId, nodeIdentity.getNodeId());
+    }
+
+    /**
+     * Paths currently owned by the cache. {@link com.karaoke.service.FileCleanupService}
+     * must leave these alone; their lifetime is governed by {@link #evict()}.
+     */
+    @Transactional(readOnly = true)
+    public Set<Path> getCachedPaths() {
+        return artifactRepository.findAllPaths().stream()
+                .map(ArtifactCacheService::normalize)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Removes least recently used artifacts until the cache is within budget. Artifacts
+     * pinned by running jobs are skipped. Completed jobs whose output is evicted keep their
+     * status but lose the output path, so their download reports the output as expired.
+     */
+    @Scheduled(fixedDelayString = "${app.artifact-cache.eviction-interval-ms:300000}")
+    @Transactional
+    public void evict() {
+        int stalePins = pinRepository.deleteStale();
+        if (stalePins > 0) {
+            log.debug("Dropped {} artifact pins of jobs no longer running where they were pinned", stalePins);
+        }
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        long totalBytes = artifactRepository.sumSizeBytes();
+        long entries = artifactRepository.count();
+        if (totalBytes <= maxBytes && entries <= maxEntries) {
+            return;
+        }
+
+        log.info("Artifact cache over budget ({} bytes, {} entries), evicting least recently used",
+                totalBytes, entries);
+        List<CachedArtifact> lruOrder = artifactRepository.findAllByOrderByLastAccessedAtAsc();
+        for (CachedArtifact artifact : lruOrder) {
+            if (totalBytes <= maxBytes && entries <= maxEntries) {
+                break;
+            }
+            if (!deleteUnlessPinned(artifact)) {
+                log.debug("Not evicting cached artifact {}, a running job uses it", artifact.getPath());
+                continue;
+            }
+            artifactRepository.delete(artifact);
+            totalBytes -= artifact.getSizeBytes();
+            entries--;
+            int expired = jobRepository.expireOutput(artifact.getPath(), LocalDateTime.now());
+            log.debug("Evicted cached artifact {}, expiring the output of {} jobs", artifact.getPath(), expired);
+        }
+    }
+
+    // Checked right before the files go: a job pins before its lookup, so it either holds
+    // the artifact by now or looks it up after the entry is gone
+    private boolean deleteUnlessPinned(CachedArtifact artifact) {
+        if (pinRepository.isPinned(artifact.getArtifactKey())) {
+            return false;
+        }
+        deleteQuietly(normalize(artifact.getPath()));
+        return true;
+    }
+
+    private void publish(Path workDir, Path finalDir) throws IOException {
+        try {
+            Files.move(workDir, finalDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(workDir, finalDir);
+        } catch (IOException e) {
+            if (!Files.isDirectory(finalDir)) {
+                throw e;
+            }
+            // A concurrent run already published an equivalent artifact
+            log.debug("Stage artifact {} already published", finalDir);
+        }
+    }
+
+    private static Path normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            if (Files.isDirectory(path)) {
+                try (var files = Files.walk(path)) {
+                    files.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+                }
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    public interface StageComputation {
+        void compute(Path workDir) throws Exception;
+    }
+}
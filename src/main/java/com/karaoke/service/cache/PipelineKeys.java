@@ -0,0 +1,90 @@
+package com.karaoke.service.cache;
+
+import com.karaoke.model.dto.GenerateKaraokeRequest;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.RenderQuality;
+import com.karaoke.model.dto.SeparationQuality;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives stable, content-addressed keys for pipeline inputs so that equivalent
+ * requests (different URL shapes for the same video, same render options) map to
+ * the same cached artifacts.
+ */
+public final class PipelineKeys {
+
+    private static final Pattern VIDEO_ID_PATTERN = Pattern.compile(
+            "(?:[?&]v=|youtu\\.be/|/shorts/|/embed/|/live/)([A-Za-z0-9_-]{11})");
+
+    private PipelineKeys() {
+    }
+
+    public static String videoId(String youtubeUrl) {
+        Matcher matcher = VIDEO_ID_PATTERN.matcher(youtubeUrl);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        // Unknown URL shape: fall back to the normalized URL so the key is still deterministic
+        return youtubeUrl.trim().toLowerCase(Locale.ROOT)
+                .replaceFirst("^https?://", "")
+                .replaceFirst("^www\\.", "");
+    }
+
+    public static String downloadKey(String youtubeUrl) {
+        return sha256("download|" + videoId(youtubeUrl));
+    }
+
+    public static String stemsKey(String youtubeUrl, String engineId) {
+        return sha256("stems|" + videoId(youtubeUrl) + "|" + engineId);
+    }
+
+    public static String lyricsKey(String youtubeUrl) {
+        return sha256("lyrics|" + videoId(youtubeUrl));
+    }
+
+    /**
+     * @param audioOnlyFormat the configured {@code app.render.audio-only-format}; it decides the
+     *                        container of audio-only renders, so it is part of their key
+     */
+    public static String renderKey(GenerateKaraokeRequest request, String audioOnlyFormat) {
+        boolean includeBackgroundVocals = Boolean.TRUE.equals(request.getIncludeBackgroundVocals());
+        // Vocals volume only affects the output when background vocals are mixed in
+        double vocalsVolume = includeBackgroundVocals && request.getVocalsVolume() != null
+                ? request.getVocalsVolume() : 0.0;
+        OutputMode outputMode = request.getOutputMode() != null ? request.getOutputMode() : OutputMode.BURNED;
+        // The quality tier only drives the video encoder, which the other modes skip
+        String quality = "-";
+        if (outputMode == OutputMode.BURNED) {
+            quality = (request.getQuality() != null ? request.getQuality() : RenderQuality.STANDARD).name();
+        }
+        // Streamed audio-only renders are always M4A, HLS segments need AAC
+        String audioFormat = "-";
+        if (outputMode == OutputMode.AUDIO_ONLY) {
+            audioFormat = Boolean.TRUE.equals(request.getStreamHls()) || audioOnlyFormat == null
+                    ? "m4a" : audioOnlyFormat.toLowerCase(Locale.ROOT);
+        }
+        // Only a render that streams writes the HLS playlist its followers serve
+        boolean streamHls = Boolean.TRUE.equals(request.getStreamHls()) && outputMode != OutputMode.SOFT_SUBTITLES;
+        SeparationQuality separationQuality = request.getSeparationQuality() != null
+                ? request.getSeparationQuality() : SeparationQuality.BALANCED;
+        return sha256(String.format(Locale.ROOT, "render|%s|%b|%.2f|%s|%s|%s|%b|%s",
+                videoId(request.getYoutubeUrl()), includeBackgroundVocals, vocalsVolume, outputMode, quality,
+                audioFormat, streamHls, separationQuality));
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.karaoke.service.events;
+
+import com.karaoke.model.dto.JobEvent;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.repository.KaraokeJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process fan-out of job transitions to event stream subscribers. Each watched job has
+ * one sink shared by all of its subscribers, and a slow subscriber only ever sees the
+ * latest transition rather than buffering every progress tick.
+ * <p>
+ * Transitions published on this node arrive immediately. Jobs running on another node
+ * (e.g. with separate api and worker deployments) are picked up by {@link #refresh()},
+ * a single database read per interval for all watched jobs, however many clients watch them.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobEventBus {
+
+    private final KaraokeJobRepository jobRepository;
+    private final Map<Long, JobStream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Publishes a transition to the job's subscribers; a no-op when nobody watches the job.
+     */
+    public void publish(JobEvent event) {
+        JobStream stream = streams.get(event.getJobId());
+        if (stream != null) {
+            stream.emit(event);
+        }
+    }
+
+    /**
+     * Live transitions of the job, starting with the latest one seen on this node, if any.
+     * The flux completes after a terminal transition.
+     */
+    public Flux<JobEvent> subscribe(Long jobId) {
+        return Flux.defer(() -> {
+            JobStream stream = streams.compute(jobId, (id, existing) -> {
+                JobStream target = existing != null ? existing : new JobStream();
+                target.subscribers++;
+                return target;
+            });
+            return stream.sink.asFlux()
+                    .onBackpressureLatest()
+                    .doFinally(signal -> release(jobId));
+        });
+    }
+
+    public int getWatchedJobCount() {
+        return streams.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.events.refresh-interval-ms:2000}")
+    public void refresh() {
+        Set<Long> watched = Set.copyOf(streams.keySet());
+        if (watched.isEmpty()) {
+            return;
+        }
+        jobRepository.findAllById(watched).forEach(job -> {
+            JobStream stream = streams.get(job.getId());
+            if (stream != null && stream.isNewer(job.getStatus(), job.getProgress())) {
+                stream.emit(JobEvent.of(job));
+            }
+        });
+    }
+
+    private void release(Long jobId) {
+        streams.computeIfPresent(jobId, (id, stream) -> --stream.subscribers > 0 ? stream : null);
+    }
+
+    private static class JobStream {
+        private final Sinks.Many<JobEvent> sink = Sinks.many().replay().latest();
+        private JobEvent last;
+        // Guarded by the streams map's compute
+        private int subscribers;
+
+        // Emissions come from pipeline threads and the refresh; the sink needs them serialized
+        private synchronized void emit(JobEvent event) {
+            if (last != null && last.isTerminal()) {
+                return;
+            }
+            last = event;
+            sink.tryEmitNext(event);
+            if (event.isTerminal()) {
+                sink.tryEmitComplete();
+            }
+        }
+
+        private synchronized boolean isNewer(JobStatus status, Integer progress) {
+            if (last == null || last.getStatus() != status) {
+                return true;
+            }
+            return progress != null && (last.getProgress() == null || progress > last.getProgress());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.karaoke.service.lyrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LRCLIB: free, no API key, and often has line-synced lyrics in LRC format. Ranked first
+ * because synced lines need no alignment against the vocals.
+ */
+@Component
+@Order(10)
+@ConditionalOnProperty(name = "app.lyrics.lrclib.enabled", havingValue = "true", matchIfMissing = true)
+public class LrcLibLyricsProvider implements LyricsProvider {
+
+    private static final Pattern LRC_TAG = Pattern.compile("\\[(\\d+):(\\d+(?:\\.\\d+)?)]");
+
+    // How long the last synced line stays up when the track length is unknown
+    private static final double LAST_LINE_SECONDS = 5.0;
+
+    private final WebClient webClient;
+
+    public LrcLibLyricsProvider(WebClient.Builder webClientBuilder,
+                                @Value("${app.lyrics.lrclib.base-url:https://lrclib.net}") String baseUrl) {
+        this.webClient = webClientBuilder.clone().baseUrl(baseUrl).build();
+    }
+
+    @Override
+    public String getName() {
+        return "LRCLIB";
+    }
+
+    @Override
+    public boolean isSynced() {
+        return true;
+    }
+
+    @Override
+    public LyricsResult fetchLyrics(String artist, String title) {
+        JsonNode response;
+        try {
+            response = webClient.get()
+                    .uri(uri -> uri.path("/api/get")
+                            .queryParam("artist_name", "{artist}")
+                            .queryParam("track_name", "{title}")
+                            .build(artist, title))
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block();
+        } catch (WebClientResponseException.NotFound e) {
+            return null;
+        }
+        if (response == null) {
+            return null;
+        }
+        if (response.hasNonNull("syncedLyrics")) {
+            List<LyricLine> lines = parseLrc(response.get("syncedLyrics").asText(),
+                    response.path("duration").asDouble(0));
+            if (!lines.isEmpty()) {
+                return new LyricsResult(lines, true);
+            }
+        }
+        if (response.hasNonNull("plainLyrics")) {
+            List<LyricLine> lines = new ArrayList<>();
+            for (String line : response.get("plainLyrics").asText().split("\r?\n")) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    lines.add(new LyricLine(line, null, null));
+                }
+            }
+            return new LyricsResult(lines, false);
+        }
+        return null;
+    }
+
+    /**
+     * Each line lasts until the next timestamp; empty timestamped lines mark instrumental
+     * breaks and only end the line before them.
+     */
+    static List<LyricLine> parseLrc(String lrc, double durationSeconds) {
+        List<LyricLine> tagged = new ArrayList<>();
+        for (String raw : lrc.split("\r?\n")) {
+            Matcher matcher = LRC_TAG.matcher(raw);
+            int textStart = 0;
+            List<Double> lineTimes = new ArrayList<>();
+            while (matcher.find() && matcher.start() == textStart) {
+                lineTimes.add(Integer.parseInt(matcher.group(1)) * 60 + Double.parseDouble(matcher.group(2)));
+                textStart = matcher.end();
+            }
+            // The same text can carry several tags when a chorus repeats
+            String text = raw.substring(textStart).trim();
+            for (double time : lineTimes) {
+                tagged.add(new LyricLine(text, time, null));
+            }
+        }
+        tagged.sort(Comparator.comparingDouble(LyricLine::getStartTime));
+
+        List<LyricLine> lines = new ArrayList<>();
+        for (int i = 0; i < tagged.size(); i++) {
+            LyricLine line = tagged.get(i);
+            if (line.getText().isEmpty()) {
+                continue;
+            }
+            double start = line.getStartTime();
+            double end;
+            if (i + 1 < tagged.size()) {
+                end = tagged.get(i + 1).getStartTime();
+            } else {
+                end = durationSeconds > start ? Math.min(durationSeconds, start + LAST_LINE_SECONDS)
+                        : start + LAST_LINE_SECONDS;
+            }
+            lines.add(new LyricLine(line.getText(), start, end));
+        }
+        return lines;
+    }
+}
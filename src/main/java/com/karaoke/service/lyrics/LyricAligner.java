@@ -0,0 +1,240 @@
+package com.karaoke.service.lyrics;
+
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.service.audio.VocalEnvelope;
+import com.karaoke.service.process.ProcessExecutionException;
+import com.karaoke.service.process.ProcessRequest;
+import com.karaoke.service.process.ProcessRunner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times unsynced lyrics against the separated vocals, without a speech-to-text service.
+ * The RMS envelope of the vocals stem is gated into sung phrases (loud runs, with short
+ * breaths bridged and blips dropped), then phrases are merged across their smallest gaps
+ * or split at their quietest point until there is one phrase per lyric line. Words are
+ * spread over their line's phrase by length.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LyricAligner {
+
+    // The envelope only needs loudness, so FLAC stems are decoded small: mono at 16 kHz
+    private static final int DECODE_SAMPLE_RATE = 16000;
+
+    private final ProcessRunner processRunner;
+    private final FileStorageConfig fileStorageConfig;
+
+    @Value("${app.tools.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath = "ffmpeg";
+
+    @Value("${app.lyrics.alignment.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.lyrics.alignment.hop-ms:20}")
+    private int hopMs = 20;
+
+    // Gate level as a share of the range between the noise floor and the loud parts, in dB
+    @Value("${app.lyrics.alignment.threshold:0.35}")
+    private double threshold = 0.35;
+
+    @Value("${app.lyrics.alignment.min-gap-ms:300}")
+    private int minGapMs = 300;
+
+    @Value("${app.lyrics.alignment.min-phrase-ms:250}")
+    private int minPhraseMs = 250;
+
+    @Value("${app.lyrics.alignment.decode-timeout-ms:300000}")
+    private long decodeTimeoutMs = 300000;
+
+    /**
+     * Returns the lyrics with line times taken from the vocals stem. Lyrics that already carry
+     * times are returned as they are, and so are the lyrics when the stem cannot be analysed.
+     */
+    public LyricsProvider.LyricsResult align(LyricsProvider.LyricsResult lyrics, String vocalsPath, String jobId)
+            throws IOException, InterruptedException {
+        if (!enabled || lyrics == null || lyrics.hasTimestamps() || lyrics.getLines().isEmpty()) {
+            return lyrics;
+        }
+        try {
+            float[] envelope = envelope(Paths.get(vocalsPath), jobId);
+            List<LyricsProvider.LyricLine> timed = align(lyrics.getLines(), envelope);
+            if (timed == null) {
+                log.warn("No sung phrases found in {}, leaving lyrics untimed", vocalsPath);
+                return lyrics;
+            }
+            log.info("Aligned {} lyric lines to {}", timed.size(), vocalsPath);
+            return new LyricsProvider.LyricsResult(timed, true);
+        } catch (ProcessExecutionException e) {
+            if (e.getReason() == ProcessExecutionException.Reason.CANCELLED) {
+                throw e;
+            }
+            log.warn("Could not decode {} for lyric alignment: {}", vocalsPath, e.getMessage());
+            return lyrics;
+        } catch (IOException e) {
+            log.warn("Could not align lyrics to {}: {}", vocalsPath, e.getMessage());
+            return lyrics;
+        }
+    }
+
+    /**
+     * Assigns each line the span of one phrase, or returns {@code null} when the envelope
+     * holds no phrases or too few hops to give every line one.
+     */
+    List<LyricsProvider.LyricLine> align(List<LyricsProvider.LyricLine> lines, float[] envelope) {
+        List<int[]> phrases = detectPhrases(envelope);
+        if (phrases.isEmpty()) {
+            return null;
+        }
+        while (phrases.size() > lines.size()) {
+            mergeClosest(phrases);
+        }
+        while (phrases.size() < lines.size()) {
+            if (!splitLongest(phrases, envelope)) {
+                return null;
+            }
+        }
+
+        double hopSeconds = hopMs / 1000.0;
+        List<LyricsProvider.LyricLine> timed = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            int[] phrase = phrases.get(i);
+            String text = lines.get(i).getText();
+            double start = phrase[0] * hopSeconds;
+            double end = phrase[1] * hopSeconds;
+            timed.add(new LyricsProvider.LyricLine(text, start, end,
+                    LyricsProvider.LyricWord.spread(text, start, end)));
+        }
+        return timed;
+    }
+
+    /**
+     * Phrases as {@code [startHop, endHop)} pairs, in order.
+     */
+    List<int[]> detectPhrases(float[] envelope) {
+        List<int[]> phrases = new ArrayList<>();
+        if (envelope.length == 0) {
+            return phrases;
+        }
+        float[] db = new float[envelope.length];
+        for (int i = 0; i < envelope.length; i++) {
+            db[i] = (float) (20 * Math.log10(Math.max(envelope[i], 1e-6)));
+        }
+        float[] sorted = db.clone();
+        Arrays.sort(sorted);
+        float floor = sorted[(int) (sorted.length * 0.10)];
+        float loud = sorted[(int) (sorted.length * 0.95)];
+        // A flat envelope is silence or noise throughout, not singing
+        if (loud - floor < 6) {
+            return phrases;
+        }
+        float gate = (float) (floor + threshold * (loud - floor));
+
+        int minGap = Math.max(1, minGapMs / hopMs);
+        int minPhrase = Math.max(1, minPhraseMs / hopMs);
+        int start = -1;
+        for (int i = 0; i <= db.length; i++) {
+            boolean active = i < db.length && db[i] >= gate;
+            if (active && start < 0) {
+                start = i;
+            } else if (!active && start >= 0) {
+                int[] last = phrases.isEmpty() ? null : phrases.get(phrases.size() - 1);
+                if (last != null && start - last[1] < minGap) {
+                    last[1] = i;
+                } else {
+                    phrases.add(new int[]{start, i});
+                }
+                start = -1;
+            }
+        }
+        phrases.removeIf(phrase -> phrase[1] - phrase[0] < minPhrase);
+        return phrases;
+    }
+
+    private static void mergeClosest(List<int[]> phrases) {
+        int closest = 0;
+        for (int i = 1; i < phrases.size() - 1; i++) {
+            if (gapAfter(phrases, i) < gapAfter(phrases, closest)) {
+                closest = i;
+            }
+        }
+        phrases.get(closest)[1] = phrases.remove(closest + 1)[1];
+    }
+
+    private static int gapAfter(List<int[]> phrases, int index) {
+        return phrases.get(index + 1)[0] - phrases.get(index)[1];
+    }
+
+    // Splits the longest phrase at its quietest hop away from the edges, where a breath or a
+    // new onset is most likely; returns false once no phrase is long enough to split
+    private static boolean splitLongest(List<int[]> phrases, float[] envelope) {
+        int longest = 0;
+        for (int i = 1; i < phrases.size(); i++) {
+            if (length(phrases.get(i)) > length(phrases.get(longest))) {
+                longest = i;
+            }
+        }
+        int[] phrase = phrases.get(longest);
+        if (length(phrase) < 2) {
+            return false;
+        }
+        int from = phrase[0] + Math.max(1, length(phrase) / 4);
+        int to = phrase[1] - Math.max(1, length(phrase) / 4);
+        int split = phrase[0] + length(phrase) / 2;
+        for (int i = from; i <= to; i++) {
+            if (envelope[i] < envelope[split]) {
+                split = i;
+            }
+        }
+        phrases.add(longest + 1, new int[]{split, phrase[1]});
+        phrase[1] = split;
+        return true;
+    }
+
+    private static int length(int[] phrase) {
+        return phrase[1] - phrase[0];
+    }
+
+    private float[] envelope(Path vocals, String jobId) throws IOException, InterruptedException {
+        double hopSeconds = hopMs / 1000.0;
+        if (isWav(vocals)) {
+            return VocalEnvelope.rms(vocals, hopSeconds);
+        }
+        // In the job's own directory, so it is on the data volume and cleaned up with the job
+        Path jobDir = Files.createDirectories(Paths.get(fileStorageConfig.getTempDirPath(), jobId));
+        Path decoded = Files.createTempFile(jobDir, "vocals-envelope", ".wav");
+        try {
+            processRunner.run(ProcessRequest.builder()
+                    .arg(ffmpegPath).arg("-i").arg(vocals.toString())
+                    .arg("-ac").arg("1").arg("-ar").arg(String.valueOf(DECODE_SAMPLE_RATE))
+                    .arg("-c:a").arg("pcm_s16le").arg("-y").arg(decoded.toString())
+                    .stage("Lyric alignment")
+                    .jobId(jobId)
+                    .timeout(Duration.ofMillis(decodeTimeoutMs))
+                    .build());
+            return VocalEnvelope.rms(decoded, hopSeconds);
+        } finally {
+            Files.deleteIfExists(decoded);
+        }
+    }
+
+    private static boolean isWav(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return "RIFF".equals(new String(in.readNBytes(4), StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.karaoke.service.lyrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * lyrics.ovh: free, no API key, plain text only.
+ */
+@Component
+@Order(20)
+@ConditionalOnProperty(name = "app.lyrics.lyrics-ovh.enabled", havingValue = "true", matchIfMissing = true)
+public class LyricsOvhProvider implements LyricsProvider {
+
+    private final WebClient webClient;
+
+    public LyricsOvhProvider(WebClient.Builder webClientBuilder,
+                             @Value("${app.lyrics.lyrics-ovh.base-url:https://api.lyrics.ovh}") String baseUrl) {
+        this.webClient = webClientBuilder.clone().baseUrl(baseUrl).build();
+    }
+
+    @Override
+    public String getName() {
+        return "lyrics.ovh";
+    }
+
+    @Override
+    public LyricsResult fetchLyrics(String artist, String title) {
+        JsonNode response;
+        try {
+            response = webClient.get()
+                    .uri("/v1/{artist}/{title}", artist, title)
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block();
+        } catch (WebClientResponseException.NotFound e) {
+            return null;
+        }
+        if (response == null || !response.hasNonNull("lyrics")) {
+            return null;
+        }
+        List<LyricLine> lines = new ArrayList<>();
+        for (String line : response.get("lyrics").asText().split("\r?\n")) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                lines.add(new LyricLine(line, null, null));
+            }
+        }
+        return new LyricsResult(lines, false);
+    }
+}
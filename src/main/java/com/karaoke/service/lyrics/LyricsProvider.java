@@ -1,15 +1,33 @@
 package com.karaoke.service.lyrics;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * An online lyrics source. Providers are queried concurrently by {@link LyricsService} and
+ * ranked by their {@code @Order}; returning {@code null} means the source does not have the song.
+ */
 public interface LyricsProvider {
     LyricsResult fetchLyrics(String artist, String title) throws Exception;
     
+    /** Name used in logs */
+    String getName();
+    
+    /** Whether the source can return line timings, which beat any untimed result */
+    default boolean isSynced() {
+        return false;
+    }
+    
     class LyricsResult {
         private final List<LyricLine> lines;
         private final boolean hasTimestamps;
         
-        public LyricsResult(List<LyricLine> lines, boolean hasTimestamps) {
+        @JsonCreator
+        public LyricsResult(@JsonProperty("lines") List<LyricLine> lines,
+                            @JsonProperty("hasTimestamps") boolean hasTimestamps) {
             this.lines = lines;
             this.hasTimestamps = hasTimestamps;
         }
@@ -18,6 +36,7 @@ public interface LyricsProvider {
             return lines;
         }
         
+        @JsonProperty("hasTimestamps")
         public boolean hasTimestamps() {
             return hasTimestamps;
         }
@@ -27,11 +46,21 @@ public interface LyricsProvider {
         private final String text;
         private final Double startTime; // in seconds
         private final Double endTime; // in seconds
+        private final List<LyricWord> words; // null when only the line is timed
         
         public LyricLine(String text, Double startTime, Double endTime) {
+            this(text, startTime, endTime, null);
+        }
+        
+        @JsonCreator
+        public LyricLine(@JsonProperty("text") String text,
+                         @JsonProperty("startTime") Double startTime,
+                         @JsonProperty("endTime") Double endTime,
+                         @JsonProperty("words") List<LyricWord> words) {
             this.text = text;
             this.startTime = startTime;
             this.endTime = endTime;
+            this.words = words;
         }
         
         public String getText() {
@@ -45,5 +74,61 @@ public interface LyricsProvider {
         public Double getEndTime() {
             return endTime;
         }
+        
+        public List<LyricWord> getWords() {
+            return words;
+        }
+    }
+    
+    /**
+     * A word or syllable of a line, timed for karaoke highlighting.
+     */
+    class LyricWord {
+        private final String text;
+        private final double startTime; // in seconds
+        private final double endTime; // in seconds
+        
+        @JsonCreator
+        public LyricWord(@JsonProperty("text") String text,
+                         @JsonProperty("startTime") double startTime,
+                         @JsonProperty("endTime") double endTime) {
+            this.text = text;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+        
+        /**
+         * Splits a line into words spread over its span in proportion to their length, an
+         * estimate for when only the line itself is timed.
+         */
+        public static List<LyricWord> spread(String line, double startTime, double endTime) {
+            String[] texts = line.trim().split("\\s+");
+            int totalWeight = 0;
+            for (String text : texts) {
+                totalWeight += text.length() + 1;
+            }
+            List<LyricWord> words = new ArrayList<>(texts.length);
+            double secondsPerWeight = (endTime - startTime) / totalWeight;
+            int weight = 0;
+            for (String text : texts) {
+                double wordStart = startTime + weight * secondsPerWeight;
+                weight += text.length() + 1;
+                double wordEnd = weight == totalWeight ? endTime : startTime + weight * secondsPerWeight;
+                words.add(new LyricWord(text, wordStart, wordEnd));
+            }
+            return words;
+        }
+        
+        public String getText() {
+            return text;
+        }
+        
+        public double getStartTime() {
+            return startTime;
+        }
+        
+        public double getEndTime() {
+            return endTime;
+        }
     }
 }
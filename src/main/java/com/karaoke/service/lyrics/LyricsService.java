@@ -1,132 +1,157 @@
 package com.karaoke.service.lyrics;
 
+import com.karaoke.config.PipelineExecutors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class LyricsService {
 
-    @Value("${app.lyrics.genius-api-key:}")
-    private String geniusApiKey;
+    // Sorted by @Order, best source first
+    private final List<LyricsProvider> providers;
+    private final SpeechToTextService speechToTextService;
+    private final PipelineExecutors pipelineExecutors;
 
-    @Value("${app.lyrics.musixmatch-api-key:}")
-    private String musixmatchApiKey;
+    // Each provider's own budget, from when it starts; a provider still running then is cancelled
+    @Value("${app.lyrics.providers.timeout-ms:5000}")
+    private long providerTimeoutMs = 5000;
 
-    private final WebClient.Builder webClientBuilder;
-    private final SpeechToTextService speechToTextService;
+    // Covers the whole lookup, including time providers spend queued for a thread
+    @Value("${app.lyrics.providers.total-timeout-ms:8000}")
+    private long totalTimeoutMs = 8000;
+
+    // After the first usable result, how long a better-ranked provider may still answer
+    @Value("${app.lyrics.providers.hedge-ms:1500}")
+    private long hedgeMs = 1500;
+
+    public LyricsProvider.LyricsResult getLyrics(String artist, String title, String audioPath)
+            throws InterruptedException {
+        LyricsProvider.LyricsResult result = findOnlineLyrics(artist, title);
+        return result != null ? result : transcribe(audioPath);
+    }
 
-    public LyricsProvider.LyricsResult getLyrics(String artist, String title, String audioPath) {
+    /**
+     * Looks the song up in the online sources only. Needs nothing but metadata, so it can run
+     * while the audio is still being separated. Returns {@code null} when no source has it.
+     */
+    public LyricsProvider.LyricsResult findOnlineLyrics(String artist, String title) throws InterruptedException {
         log.info("Fetching lyrics for: {} - {}", artist, title);
-        
-        // Try online sources first
+
         LyricsProvider.LyricsResult result = tryOnlineSources(artist, title);
-        
+
         if (result != null && !result.getLines().isEmpty()) {
             log.info("Lyrics found from online source");
             return result;
         }
-        
-        // Fallback to speech-to-text
+        return null;
+    }
+
+    /**
+     * Speech-to-text fallback over the separated vocals stem.
+     */
+    public LyricsProvider.LyricsResult transcribe(String vocalsPath) {
         log.info("Online lyrics not found, falling back to speech-to-text");
-        return speechToTextService.transcribeAudio(audioPath);
+        return speechToTextService.transcribeAudio(vocalsPath);
     }
 
-    private LyricsProvider.LyricsResult tryOnlineSources(String artist, String title) {
-        // Try Lyrics.ovh (free, no API key required)
-        LyricsProvider.LyricsResult result = tryLyricsOvh(artist, title);
-        if (result != null && !result.getLines().isEmpty()) {
-            return result;
-        }
-        
-        // Try Genius if API key is available
-        if (!geniusApiKey.isEmpty()) {
-            result = tryGenius(artist, title);
-            if (result != null && !result.getLines().isEmpty()) {
-                return result;
-            }
-        }
-        
-        // Try Musixmatch if API key is available
-        if (!musixmatchApiKey.isEmpty()) {
-            result = tryMusixmatch(artist, title);
-            if (result != null && !result.getLines().isEmpty()) {
-                return result;
-            }
+    /**
+     * Queries all providers at once and keeps the best answer: synced beats untimed, then
+     * provider order decides. Returns as soon as no provider still running could beat the
+     * best answer so far, or once the hedge window after the first answer runs out, so one
+     * slow source never holds up a job that another source already served. A source that
+     * hangs is dropped at its own timeout, so the others still get their full share of the
+     * total timeout.
+     */
+    private LyricsProvider.LyricsResult tryOnlineSources(String artist, String title) throws InterruptedException {
+        BlockingQueue<CompletableFuture<LyricsProvider.LyricsResult>> completed = new LinkedBlockingQueue<>();
+        Map<CompletableFuture<LyricsProvider.LyricsResult>, Integer> pending = new HashMap<>();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < providers.size(); i++) {
+            LyricsProvider provider = providers.get(i);
+            CompletableFuture<LyricsProvider.LyricsResult> answer = new CompletableFuture<>();
+            pending.put(answer, i);
+            answer.whenComplete((result, error) -> completed.add(answer));
+            tasks.add(pipelineExecutors.getLyricsProviderExecutor().submit(() -> {
+                // The provider's budget starts when it does, not while it waits for a thread
+                answer.orTimeout(providerTimeoutMs, TimeUnit.MILLISECONDS);
+                try {
+                    answer.complete(provider.fetchLyrics(artist, title));
+                } catch (Exception e) {
+                    answer.completeExceptionally(e);
+                }
+            }));
         }
-        
-        return null;
-    }
 
-    private LyricsProvider.LyricsResult tryLyricsOvh(String artist, String title) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(totalTimeoutMs);
+        LyricsProvider.LyricsResult best = null;
+        int bestRank = Integer.MAX_VALUE;
         try {
-            WebClient webClient = webClientBuilder.build();
-            String url = String.format("https://api.lyrics.ovh/v1/%s/%s", 
-                    artist.replace(" ", "%20"), 
-                    title.replace(" ", "%20"));
-            
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
-            if (response != null && response.contains("\"lyrics\"")) {
-                // Parse JSON response (simple extraction)
-                String lyrics = extractLyricsFromJson(response);
-                if (lyrics != null && !lyrics.isEmpty()) {
-                    List<LyricsProvider.LyricLine> lines = parseLyricsToLines(lyrics);
-                    return new LyricsProvider.LyricsResult(lines, false);
+            while (!pending.isEmpty() && canImprove(pending, bestRank)) {
+                CompletableFuture<LyricsProvider.LyricsResult> done = completed.poll(deadline - System.nanoTime(),
+                        TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break;
+                }
+                int index = pending.remove(done);
+                LyricsProvider provider = providers.get(index);
+                LyricsProvider.LyricsResult result;
+                try {
+                    result = done.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof TimeoutException) {
+                        log.warn("Lyrics provider {} timed out after {} ms", provider.getName(), providerTimeoutMs);
+                        tasks.get(index).cancel(true);
+                    } else {
+                        log.warn("Lyrics provider {} failed: {}", provider.getName(), e.getCause().getMessage());
+                    }
+                    continue;
+                }
+                if (result == null || result.getLines() == null || result.getLines().isEmpty()) {
+                    log.debug("Lyrics provider {} has no lyrics for {} - {}", provider.getName(), artist, title);
+                    continue;
+                }
+                int rank = rank(result.hasTimestamps(), index);
+                if (rank < bestRank) {
+                    if (best == null) {
+                        deadline = Math.min(deadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgeMs));
+                    }
+                    log.info("Lyrics from {} ({})", provider.getName(), result.hasTimestamps() ? "synced" : "untimed");
+                    best = result;
+                    bestRank = rank;
                 }
             }
-        } catch (Exception e) {
-            log.warn("Failed to fetch lyrics from Lyrics.ovh: {}", e.getMessage());
+        } finally {
+            pending.values().forEach(index -> {
+                if (tasks.get(index).cancel(true)) {
+                    log.debug("Cancelled lyrics provider {}", providers.get(index).getName());
+                }
+            });
         }
-        return null;
+        return best;
     }
 
-    private LyricsProvider.LyricsResult tryGenius(String artist, String title) {
-        // Genius API implementation would go here
-        // For now, return null as it requires more complex implementation
-        log.debug("Genius API not fully implemented yet");
-        return null;
+    private boolean canImprove(Map<CompletableFuture<LyricsProvider.LyricsResult>, Integer> pending, int bestRank) {
+        return pending.values().stream().anyMatch(index -> rank(providers.get(index).isSynced(), index) < bestRank);
     }
 
-    private LyricsProvider.LyricsResult tryMusixmatch(String artist, String title) {
-        // Musixmatch API implementation would go here
-        // For now, return null as it requires more complex implementation
-        log.debug("Musixmatch API not fully implemented yet");
-        return null;
-    }
-
-    private String extractLyricsFromJson(String json) {
-        // Simple JSON parsing for lyrics.ovh format
-        Pattern pattern = Pattern.compile("\"lyrics\"\\s*:\\s*\"([^\"]+)\"");
-        Matcher matcher = pattern.matcher(json);
-        if (matcher.find()) {
-            return matcher.group(1).replace("\\n", "\n").replace("\\r", "");
-        }
-        return null;
-    }
-
-    private List<LyricsProvider.LyricLine> parseLyricsToLines(String lyrics) {
-        List<LyricsProvider.LyricLine> lines = new ArrayList<>();
-        String[] lyricLines = lyrics.split("\n");
-        for (String line : lyricLines) {
-            line = line.trim();
-            if (!line.isEmpty()) {
-                lines.add(new LyricsProvider.LyricLine(line, null, null));
-            }
-        }
-        return lines;
+    // Lower is better: every synced result outranks every untimed one
+    private int rank(boolean synced, int providerIndex) {
+        return (synced ? 0 : providers.size()) + providerIndex;
     }
 }
@@ -0,0 +1,48 @@
+package com.karaoke.service.process;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last {@code capacity} lines of a process's output, so a chatty tool can
+ * run for hours without the drained output growing unbounded.
+ */
+public class OutputRingBuffer {
+
+    private final int capacity;
+    private final Deque<String> lines;
+    private long droppedLines;
+
+    public OutputRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.lines = new ArrayDeque<>(this.capacity);
+    }
+
+    public synchronized void add(String line) {
+        if (lines.size() == capacity) {
+            lines.removeFirst();
+            droppedLines++;
+        }
+        lines.addLast(line);
+    }
+
+    public synchronized List<String> lines() {
+        return new ArrayList<>(lines);
+    }
+
+    public synchronized long getDroppedLines() {
+        return droppedLines;
+    }
+
+    public synchronized String lastLine() {
+        for (var it = lines.descendingIterator(); it.hasNext(); ) {
+            String line = it.next();
+            if (!line.isBlank()) {
+                return line;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.karaoke.service.process;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An external tool exited non-zero, timed out or was cancelled. Carries the tail of
+ * its output so the cause is visible without re-running the tool.
+ */
+public class ProcessExecutionException extends IOException {
+
+    public enum Reason {
+        FAILED,
+        TIMED_OUT,
+        CANCELLED
+    }
+
+    private final String stage;
+    private final Reason reason;
+    private final Integer exitCode;
+    private final List<String> outputTail;
+
+    public ProcessExecutionException(String message, String stage, Reason reason, Integer exitCode,
+                                     List<String> outputTail) {
+        super(message);
+        this.stage = stage;
+        this.reason = reason;
+        this.exitCode = exitCode;
+        this.outputTail = outputTail;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    public List<String> getOutputTail() {
+        return outputTail;
+    }
+}
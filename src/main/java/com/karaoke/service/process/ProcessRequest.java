@@ -0,0 +1,33 @@
+package com.karaoke.service.process;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * One external tool invocation. {@code stage} names the tool in logs and errors,
+ * {@code jobId} groups processes so a job's tools can be cancelled together.
+ */
+@Getter
+@Builder
+public class ProcessRequest {
+
+    @Singular("arg")
+    private final List<String> command;
+
+    private final String stage;
+
+    private final String jobId;
+
+    private final Duration timeout;
+
+    private final Path workingDir;
+
+    /** Called on the drain thread for every output line, e.g. to parse progress */
+    private final Consumer<String> lineListener;
+}
@@ -0,0 +1,28 @@
+package com.karaoke.service.process;
+
+import java.time.Duration;
+import java.util.List;
+
+public class ProcessResult {
+    private final int exitCode;
+    private final Duration elapsed;
+    private final List<String> outputTail;
+
+    public ProcessResult(int exitCode, Duration elapsed, List<String> outputTail) {
+        this.exitCode = exitCode;
+        this.elapsed = elapsed;
+        this.outputTail = outputTail;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public List<String> getOutputTail() {
+        return outputTail;
+    }
+}
@@ -0,0 +1,277 @@
+package com.karaoke.service.process;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs external tools (yt-dlp, ffmpeg, the separation script). Output is drained on a
+ * separate thread into a bounded {@link OutputRingBuffer} so a full pipe can never block
+ * the tool, every run has a timeout, and a job's processes can be cancelled together.
+ * Timeouts and cancellation kill the whole process tree, not just the direct child.
+ */
+@Service
+@Slf4j
+public class ProcessRunner {
+
+    @Value("${app.process.output-tail-lines:200}")
+    private int outputTailLines = 200;
+
+    // Time between SIGTERM and SIGKILL when a process tree is stopped
+    @Value("${app.process.kill-grace-ms:5000}")
+    private long killGraceMs = 5000;
+
+    private final Map<String, Set<RunningProcess>> runningByJob = new ConcurrentHashMap<>();
+    private final Map<String, Set<Runnable>> cancelHooksByJob = new ConcurrentHashMap<>();
+    // Jobs cancelled since their run started; a process or hook registered for them afterwards
+    // is stopped at once instead of outliving the cancel
+    private final Set<String> cancelledJobs = ConcurrentHashMap.newKeySet();
+    private final ExecutorService drainExecutor = Executors.newCachedThreadPool(daemonThreads());
+
+    public ProcessResult run(ProcessRequest request) throws IOException, InterruptedException {
+        String stage = request.getStage() != null ? request.getStage() : request.getCommand().get(0);
+        ProcessBuilder processBuilder = new ProcessBuilder(request.getCommand());
+        processBuilder.redirectErrorStream(true);
+        if (request.getWorkingDir() != null) {
+            processBuilder.directory(request.getWorkingDir().toFile());
+        }
+
+        long startedAt = System.nanoTime();
+        RunningProcess running = new RunningProcess(processBuilder.start());
+        Process process = running.process;
+        register(request.getJobId(), running);
+        OutputRingBuffer output = new OutputRingBuffer(outputTailLines);
+        Future<?> drain = drainExecutor.submit(() -> drain(process, output, request.getLineListener()));
+
+        try {
+            boolean exited;
+            if (request.getTimeout() != null) {
+                exited = process.waitFor(request.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                process.waitFor();
+                exited = true;
+            }
+
+            if (!exited) {
+                log.warn("{} timed out after {}, killing process tree {}", stage, request.getTimeout(), process.pid());
+                destroyTree(process);
+                awaitDrain(process, drain);
+                throw failure(stage, ProcessExecutionException.Reason.TIMED_OUT, null, output,
+                        stage + " timed out after " + request.getTimeout().toSeconds() + "s");
+            }
+
+            awaitDrain(process, drain);
+            int exitCode = process.exitValue();
+            if (running.cancelled) {
+                throw failure(stage, ProcessExecutionException.Reason.CANCELLED, exitCode, output, stage + " was cancelled");
+            }
+            if (exitCode != 0) {
+                throw failure(stage, ProcessExecutionException.Reason.FAILED, exitCode, output,
+                        stage + " failed with exit code: " + exitCode);
+            }
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+            log.debug("{} finished in {} ms", stage, elapsed.toMillis());
+            return new ProcessResult(exitCode, elapsed, output.lines());
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            throw e;
+        } finally {
+            unregister(request.getJobId(), running);
+        }
+    }
+
+    /**
+     * Kills every process currently running for the job, and any it starts until
+     * {@link #resetCancellation} is called for it.
+     *
+     * @return the number of process trees that were stopped
+     */
+    public int cancel(String jobId) {
+        cancelledJobs.add(jobId);
+        int cancelled = 0;
+        Set<Runnable> hooks = cancelHooksByJob.remove(jobId);
+        if (hooks != null) {
+            hooks.forEach(Runnable::run);
+            cancelled += hooks.size();
+        }
+        Set<RunningProcess> processes = runningByJob.remove(jobId);
+        if (processes == null) {
+            return cancelled;
+        }
+        for (RunningProcess running : processes) {
+            running.cancelled = true;
+            log.info("Cancelling process {} of job {}", running.process.pid(), jobId);
+            destroyTree(running.process);
+        }
+        return cancelled + processes.size();
+    }
+
+    /**
+     * Forgets an earlier {@link #cancel} of the job, so a new run of it can start processes.
+     */
+    public void resetCancellation(String jobId) {
+        cancelledJobs.remove(jobId);
+    }
+
+    /**
+     * Makes {@link #cancel} also stop work this runner did not start, such as a job running on
+     * a long-lived worker process. Closing the returned handle removes the hook.
+     */
+    public AutoCloseable onCancel(String jobId, Runnable hook) {
+        cancelHooksByJob.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(hook);
+        // Added before the check, so a concurrent cancel either runs the hook or is seen here
+        if (cancelledJobs.contains(jobId) && removeHook(jobId, hook)) {
+            hook.run();
+        }
+        return () -> removeHook(jobId, hook);
+    }
+
+    private boolean removeHook(String jobId, Runnable hook) {
+        boolean[] removed = new boolean[1];
+        cancelHooksByJob.computeIfPresent(jobId, (id, hooks) -> {
+            removed[0] = hooks.remove(hook);
+            return hooks.isEmpty() ? null : hooks;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Stops a process tree started elsewhere: SIGTERM, then SIGKILL after the grace period.
+     */
+    public void terminate(Process process) {
+        destroyTree(process);
+    }
+
+    public int getRunningProcessCount() {
+        return runningByJob.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runningByJob.keySet().forEach(this::cancel);
+        drainExecutor.shutdownNow();
+    }
+
+    private void drain(Process process, OutputRingBuffer output, Consumer<String> lineListener) {
+        // readLine also splits on the bare \r that progress bars use to redraw a line
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(line);
+                if (lineListener != null) {
+                    try {
+                        lineListener.accept(line);
+                    } catch (RuntimeException e) {
+                        log.debug("Output listener failed on line '{}': {}", line, e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed after the process was killed
+            log.trace("Output drain of process {} ended: {}", process.pid(), e.getMessage());
+        }
+    }
+
+    private void awaitDrain(Process process, Future<?> drain) throws InterruptedException {
+        try {
+            drain.get(killGraceMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A detached grandchild still holds the pipe open; closing our end ends the drain
+            try {
+                process.getInputStream().close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        } catch (ExecutionException e) {
+            log.debug("Output drain of process {} failed: {}", process.pid(), e.getMessage());
+        }
+    }
+
+    private void destroyTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroy();
+        descendants.forEach(ProcessHandle::destroy);
+        try {
+            process.onExit().get(killGraceMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Still running after the grace period
+        }
+        if (process.isAlive()) {
+            process.destroyForcibly();
+        }
+        descendants.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private ProcessExecutionException failure(String stage, ProcessExecutionException.Reason reason, Integer exitCode,
+                                              OutputRingBuffer output, String message) {
+        String lastLine = output.lastLine();
+        String fullMessage = lastLine != null ? message + " (" + lastLine.trim() + ")" : message;
+        log.warn("{}; last {} lines of output:\n{}", message, output.lines().size(), String.join("\n", output.lines()));
+        return new ProcessExecutionException(fullMessage, stage, reason, exitCode, output.lines());
+    }
+
+    private void register(String jobId, RunningProcess running) {
+        if (jobId == null) {
+            return;
+        }
+        runningByJob.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(running);
+        // Registered before the check, so a concurrent cancel either finds the process or is seen here
+        if (cancelledJobs.contains(jobId)) {
+            running.cancelled = true;
+            log.info("Job {} was cancelled before process {} started, stopping it", jobId, running.process.pid());
+            destroyTree(running.process);
+        }
+    }
+
+    private void unregister(String jobId, RunningProcess running) {
+        if (jobId != null) {
+            runningByJob.computeIfPresent(jobId, (id, processes) -> {
+                processes.remove(running);
+                return processes.isEmpty() ? null : processes;
+            });
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "process-drain-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class RunningProcess {
+        private final Process process;
+        private volatile boolean cancelled;
+
+        private RunningProcess(Process process) {
+            this.process = process;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.karaoke.service.process;
+
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Extracts completion from one line of a tool's output.
+ */
+@FunctionalInterface
+public interface ProgressParser {
+
+    /**
+     * @return the completed fraction in [0, 1], or {@code null} when the line carries no progress
+     */
+    Double parse(String line);
+
+    /**
+     * Adapts the parser to a {@link ProcessRequest} line listener.
+     */
+    default Consumer<String> reportingTo(DoubleConsumer listener) {
+        return line -> {
+            Double fraction = parse(line);
+            if (fraction != null) {
+                listener.accept(Math.max(0.0, Math.min(1.0, fraction)));
+            }
+        };
+    }
+}
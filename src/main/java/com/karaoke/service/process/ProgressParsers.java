@@ -0,0 +1,80 @@
+package com.karaoke.service.process;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Progress formats of the tools the pipeline runs.
+ */
+public final class ProgressParsers {
+
+    // yt-dlp --newline: "[download]  42.3% of 3.50MiB at 1.2MiB/s ETA 00:02"
+    private static final Pattern YT_DLP = Pattern.compile("^\\[download]\\s+(\\d+(?:\\.\\d+)?)%");
+    // separate_audio.py milestones ("PROGRESS 40") and the tqdm bars of the models (" 40%|####")
+    private static final Pattern SEPARATION = Pattern.compile("^(?:PROGRESS\\s+(\\d+(?:\\.\\d+)?)|\\s*(\\d+(?:\\.\\d+)?)%\\|)");
+    // ffmpeg banner line for each input: "  Duration: 00:03:25.05, start: ..."
+    private static final Pattern FFMPEG_DURATION = Pattern.compile("Duration:\\s*(\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+
+    private ProgressParsers() {
+    }
+
+    public static ProgressParser ytDlp() {
+        return line -> {
+            Matcher matcher = YT_DLP.matcher(line);
+            return matcher.find() ? Double.parseDouble(matcher.group(1)) / 100.0 : null;
+        };
+    }
+
+    public static ProgressParser separation() {
+        return line -> {
+            Matcher matcher = SEPARATION.matcher(line);
+            if (!matcher.find()) {
+                return null;
+            }
+            String percent = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            return Double.parseDouble(percent) / 100.0;
+        };
+    }
+
+    /**
+     * Parses {@code -progress pipe:1} key=value output against the output duration. When
+     * {@code durationSeconds} is not known up front, the longest input duration ffmpeg
+     * prints in its banner is used.
+     */
+    public static ProgressParser ffmpeg(double durationSeconds) {
+        return new FfmpegProgress(durationSeconds);
+    }
+
+    private static class FfmpegProgress implements ProgressParser {
+        private final boolean durationKnown;
+        private double durationSeconds;
+
+        private FfmpegProgress(double durationSeconds) {
+            this.durationKnown = durationSeconds > 0;
+            this.durationSeconds = durationSeconds;
+        }
+
+        @Override
+        public Double parse(String line) {
+            if (line.startsWith("progress=end")) {
+                return 1.0;
+            }
+            // out_time_ms is in microseconds as well, a long-standing ffmpeg quirk
+            if (line.startsWith("out_time_us=") || line.startsWith("out_time_ms=")) {
+                String value = line.substring(line.indexOf('=') + 1).trim();
+                if (durationSeconds <= 0 || !value.matches("\\d+")) {
+                    return null;
+                }
+                return Long.parseLong(value) / 1_000_000.0 / durationSeconds;
+            }
+            Matcher matcher = FFMPEG_DURATION.matcher(line);
+            if (!durationKnown && matcher.find()) {
+                double seconds = Integer.parseInt(matcher.group(1)) * 3600
+                        + Integer.parseInt(matcher.group(2)) * 60
+                        + Double.parseDouble(matcher.group(3));
+                durationSeconds = Math.max(durationSeconds, seconds);
+            }
+            return null;
+        }
+    }
+}
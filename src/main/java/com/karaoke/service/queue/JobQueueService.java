@@ -0,0 +1,144 @@
+package com.karaoke.service.queue;
+
+import com.karaoke.config.NodeIdentity;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.KaraokeJob;
+import com.karaoke.repository.KaraokeJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database-backed work queue over {@code karaoke_jobs}. PENDING leader jobs form the queue;
+ * a node claims a job by atomically moving it to PROCESSING under a time-limited lease that
+ * it keeps alive with heartbeats. Jobs whose lease lapses (crash, deploy, lost node) are put
+ * back in the queue by any node.
+ *
+ * <p>Transactions are demarcated with a {@link TransactionTemplate} rather than annotations so
+ * that several independently identified instances can share one context, as in the
+ * multi-node tests.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobQueueService {
+
+    private final KaraokeJobRepository jobRepository;
+    private final NodeIdentity nodeIdentity;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.queue.lease-duration-ms:60000}")
+    private long leaseDurationMs;
+
+    @Value("${app.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    public String getNodeId() {
+        return nodeIdentity.getNodeId();
+    }
+
+    /**
+     * Jobs waiting to be claimed by any node.
+     */
+    public long getQueueDepth() {
+        return jobRepository.countByStatusAndParentJobIdIsNull(JobStatus.PENDING);
+    }
+
+    /**
+     * Claims up to {@code limit} pending jobs for this node. Candidates are read with
+     * {@code FOR UPDATE SKIP LOCKED} where the database supports it, and each claim is a
+     * conditional update, so two nodes can never claim the same job.
+     */
+    public List<Long> claimJobs(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        return transactionTemplate.execute(tx -> claimJobsInTransaction(limit));
+    }
+
+    private List<Long> claimJobsInTransaction(int limit) {
+        String nodeId = getNodeId();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseExpiresAt = now.plus(leaseDurationMs, ChronoUnit.MILLIS);
+
+        List<Long> claimed = new ArrayList<>();
+        for (KaraokeJob candidate : jobRepository.findClaimCandidates(PageRequest.of(0, limit))) {
+            if (jobRepository.claim(candidate.getId(), nodeId, leaseExpiresAt, now) == 1) {
+                claimed.add(candidate.getId());
+            }
+        }
+        if (!claimed.isEmpty()) {
+            // Coalesced jobs follow their leader into PROCESSING
+            claimed.forEach(id -> jobRepository.updateJobState(id, JobStatus.PROCESSING, 0, null, null, now));
+            log.debug("Node {} claimed jobs {}", nodeId, claimed);
+        }
+        return claimed;
+    }
+
+    /**
+     * Extends the leases of the given jobs. Returns the ids this node still owns; any job
+     * missing from the result has been reclaimed elsewhere and must not be completed here.
+     */
+    public List<Long> heartbeat(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime leaseExpiresAt = LocalDateTime.now().plus(leaseDurationMs, ChronoUnit.MILLIS);
+        return transactionTemplate.execute(tx -> {
+            jobRepository.renewLeases(jobIds, getNodeId(), leaseExpiresAt);
+            return jobRepository.findLeasedIds(jobIds, getNodeId());
+        });
+    }
+
+    public void release(Long jobId) {
+        transactionTemplate.executeWithoutResult(tx -> jobRepository.clearLease(jobId, getNodeId()));
+    }
+
+    /**
+     * Returns jobs with lapsed leases to the queue, failing those that used up their attempts.
+     */
+    public int requeueExpiredJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(tx -> requeue(jobRepository.findExpiredLeases(now), now, null));
+    }
+
+    /**
+     * Returns jobs still leased to this node id from a previous run to the queue. Only
+     * meaningful when the node id is stable across restarts; otherwise lease expiry
+     * recovers them.
+     */
+    public int recoverOwnJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        String nodeId = getNodeId();
+        return transactionTemplate.execute(tx -> requeue(jobRepository.findLeasedBy(nodeId), now, nodeId));
+    }
+
+    private int requeue(List<KaraokeJob> jobs, LocalDateTime now, String owner) {
+        int recovered = 0;
+        for (KaraokeJob job : jobs) {
+            if (jobRepository.requeue(job.getId(), now, owner) != 1) {
+                continue; // Heartbeat won the race, the lease is alive
+            }
+            recovered++;
+            int attempts = job.getAttempts() != null ? job.getAttempts() : 0;
+            if (attempts >= maxAttempts) {
+                log.warn("Job {} abandoned after {} attempts", job.getId(), attempts);
+                jobRepository.updateJobState(job.getId(), JobStatus.FAILED, job.getProgress(), null,
+                        "Job abandoned after " + attempts + " attempts", now);
+            } else {
+                log.info("Requeued job {} after lease held by {} lapsed", job.getId(), job.getLeaseOwner());
+                jobRepository.updateJobState(job.getId(), JobStatus.PENDING, 0, null, null, now);
+            }
+        }
+        return recovered;
+    }
+}
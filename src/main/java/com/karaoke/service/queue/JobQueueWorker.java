@@ -0,0 +1,91 @@
+package com.karaoke.service.queue;
+
+import com.karaoke.service.KaraokeService;
+import com.karaoke.service.process.ProcessRunner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drains the job queue on this node: admits only as many jobs as it may have in flight,
+ * keeps their leases alive and recovers orphaned work at startup. Admitted jobs run on
+ * the per-stage pools of {@link com.karaoke.config.PipelineExecutors}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.queue.worker-enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class JobQueueWorker {
+
+    private final JobQueueService jobQueueService;
+    private final KaraokeService karaokeService;
+    private final ProcessRunner processRunner;
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.queue.max-concurrent-jobs:4}")
+    private int maxConcurrentJobs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        int own = jobQueueService.recoverOwnJobs();
+        int expired = jobQueueService.requeueExpiredJobs();
+        if (own + expired > 0) {
+            log.info("Recovered {} jobs left over from a previous run", own + expired);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.queue.poll-interval-ms:2000}")
+    public void poll() {
+        int freeSlots = maxConcurrentJobs - runningJobs.size();
+        if (freeSlots <= 0) {
+            return;
+        }
+        for (Long jobId : jobQueueService.claimJobs(freeSlots)) {
+            runningJobs.add(jobId);
+            // A cancel left over from an earlier run of the job here must not stop this one
+            processRunner.resetCancellation(jobId.toString());
+            try {
+                karaokeService.processJob(jobId).whenComplete((result, error) -> finish(jobId, error));
+            } catch (RuntimeException e) {
+                finish(jobId, e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.queue.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        List<Long> stillOwned = jobQueueService.heartbeat(Set.copyOf(runningJobs));
+        runningJobs.stream()
+                .filter(jobId -> !stillOwned.contains(jobId))
+                .forEach(jobId -> {
+                    // Another node may already be redoing the job, so stop burning CPU on it here
+                    log.warn("Lease on job {} was lost, cancelling its local processes", jobId);
+                    karaokeService.leaseLost(jobId);
+                    processRunner.cancel(jobId.toString());
+                });
+        jobQueueService.requeueExpiredJobs();
+    }
+
+    public int getRunningJobCount() {
+        return runningJobs.size();
+    }
+
+    private void finish(Long jobId, Throwable error) {
+        if (error != null) {
+            // The job stays PROCESSING without a lease, so the requeue sweep retries it
+            log.error("Job {} aborted: {}", jobId, error.getMessage(), error);
+        }
+        runningJobs.remove(jobId);
+        processRunner.resetCancellation(jobId.toString());
+        jobQueueService.release(jobId);
+    }
+}
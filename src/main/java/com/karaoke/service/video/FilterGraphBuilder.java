@@ -0,0 +1,150 @@
+package com.karaoke.service.video;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds a single {@code -filter_complex} graph for the render: the video chain (optional
+ * scaling and subtitle burn-in) ends in {@link #VIDEO_OUT} and the audio chain (per-input
+ * volume and mixing) ends in {@link #AUDIO_OUT}, so both are mapped from the same graph.
+ */
+public class FilterGraphBuilder {
+
+    public static final String VIDEO_OUT = "[v]";
+    public static final String AUDIO_OUT = "[a]";
+
+    private final String videoInput;
+    private final List<String> audioInputs = new ArrayList<>();
+    private final List<Double> audioVolumes = new ArrayList<>();
+    private String subtitlesPath;
+    private String subtitlesStyle;
+    private int scaleWidth;
+    private int scaleHeight;
+    private double timeOffset;
+
+    /**
+     * Audio-only graph: no video chain and no {@link #VIDEO_OUT} label.
+     */
+    public FilterGraphBuilder() {
+        this(null);
+    }
+
+    public FilterGraphBuilder(String videoInput) {
+        this.videoInput = videoInput;
+    }
+
+    public FilterGraphBuilder audio(String input, double volume) {
+        audioInputs.add(input);
+        audioVolumes.add(volume);
+        return this;
+    }
+
+    public FilterGraphBuilder subtitles(String path, String style) {
+        this.subtitlesPath = path;
+        this.subtitlesStyle = style;
+        return this;
+    }
+
+    public FilterGraphBuilder scale(int width, int height) {
+        this.scaleWidth = width;
+        this.scaleHeight = height;
+        return this;
+    }
+
+    /**
+     * Renders the subtitles as if the video started {@code seconds} into the song, for a
+     * chunk of the timeline; the chunk's own timestamps still start at zero.
+     */
+    public FilterGraphBuilder timeOffset(double seconds) {
+        this.timeOffset = seconds;
+        return this;
+    }
+
+    /**
+     * Graph of the video chain alone, for renders that mux the audio separately.
+     */
+    public String buildVideo() {
+        if (videoInput == null) {
+            throw new IllegalStateException("A video input is required");
+        }
+        return videoChain();
+    }
+
+    public String build() {
+        if (audioInputs.isEmpty()) {
+            throw new IllegalStateException("At least one audio input is required");
+        }
+
+        List<String> chains = new ArrayList<>();
+        if (videoInput != null) {
+            chains.add(videoChain());
+        } else if (subtitlesPath != null || scaleWidth > 0) {
+            throw new IllegalStateException("Video filters need a video input");
+        }
+
+        if (audioInputs.size() == 1) {
+            chains.add(label(audioInputs.get(0)) + volume(audioVolumes.get(0)) + AUDIO_OUT);
+        } else {
+            StringBuilder mixInputs = new StringBuilder();
+            for (int i = 0; i < audioInputs.size(); i++) {
+                String mixLabel = "[a" + i + "]";
+                chains.add(label(audioInputs.get(i)) + volume(audioVolumes.get(i)) + mixLabel);
+                mixInputs.append(mixLabel);
+            }
+            chains.add(mixInputs + "amix=inputs=" + audioInputs.size() + ":duration=first:dropout_transition=2" + AUDIO_OUT);
+        }
+        return String.join(";", chains);
+    }
+
+    private String videoChain() {
+        List<String> videoFilters = new ArrayList<>();
+        if (scaleWidth > 0 && scaleHeight > 0) {
+            videoFilters.add("scale=" + scaleWidth + ":" + scaleHeight);
+        }
+        if (subtitlesPath != null) {
+            String args = "filename=" + escapeOption(subtitlesPath.replace("\\", "/"));
+            if (subtitlesStyle != null) {
+                args += ":force_style=" + escapeOption(subtitlesStyle);
+            }
+            boolean shifted = timeOffset > 0;
+            if (shifted) {
+                videoFilters.add(String.format(Locale.ROOT, "setpts=PTS+%.3f/TB", timeOffset));
+            }
+            videoFilters.add("subtitles=" + escapeGraph(args));
+            if (shifted) {
+                videoFilters.add("setpts=PTS-STARTPTS");
+            }
+        }
+        return label(videoInput) + (videoFilters.isEmpty() ? "null" : String.join(",", videoFilters)) + VIDEO_OUT;
+    }
+
+    private static String label(String input) {
+        return input.startsWith("[") ? input : "[" + input + "]";
+    }
+
+    private static String volume(double volume) {
+        return volume == 1.0 ? "anull" : String.format(Locale.ROOT, "volume=%.2f", volume);
+    }
+
+    // First escaping level: characters special inside a filter option value
+    private static String escapeOption(String value) {
+        return escape(value, "\\':");
+    }
+
+    // Second escaping level: characters special in the filtergraph description itself
+    private static String escapeGraph(String value) {
+        return escape(value, "\\'[],;");
+    }
+
+    private static String escape(String value, String specials) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (char c : value.toCharArray()) {
+            if (specials.indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -1,139 +1,499 @@
 package com.karaoke.service.video;
 
 import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.RenderQuality;
+import com.karaoke.service.audio.AudioFiles;
+import com.karaoke.service.audio.StemMixer;
 import com.karaoke.service.lyrics.LyricsProvider;
+import com.karaoke.service.process.ProcessRequest;
+import com.karaoke.service.process.ProcessRunner;
+import com.karaoke.service.process.ProgressParsers;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleConsumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KaraokeVideoGeneratorService {
 
+    private static final String SUBTITLE_STYLE =
+            "FontSize=24,PrimaryColour=&Hffffff,OutlineColour=&H000000,BorderStyle=1";
+
+    // Frame rate of the generated background
+    private static final int FRAME_RATE = 25;
+
+    public static final String HLS_PLAYLIST = "playlist.m3u8";
+    private static final String HLS_SEGMENT_PATTERN = "segment_%05d.m4s";
+
     private final FileStorageConfig fileStorageConfig;
+    private final ProcessRunner processRunner;
+    private final PipelineExecutors pipelineExecutors;
 
     @Value("${app.tools.ffmpeg-path:ffmpeg}")
     private String ffmpegPath;
 
+    // 0 lets libx264 pick its own thread count
+    @Value("${app.render.threads:0}")
+    private int renderThreads;
+
+    @Value("${app.render.background-color:black}")
+    private String backgroundColor;
+
+    @Value("${app.process.render-timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.render.hls-segment-seconds:4}")
+    private int hlsSegmentSeconds = 4;
+
+    // wav or m4a (AAC). WAV output is mixed in the JVM by StemMixer, m4a by ffmpeg
+    @Getter
+    @Value("${app.render.audio-only-format:wav}")
+    private String audioOnlyFormat = "wav";
+
+    // ass burns in word-by-word karaoke highlighting, srt plain lines
+    @Value("${app.render.burned-subtitle-format:ass}")
+    private String burnedSubtitleFormat = "ass";
+
+    @Value("${app.render.chunked.enabled:false}")
+    private boolean chunkedEnabled;
+
+    @Value("${app.render.chunked.min-duration-seconds:240}")
+    private double chunkedMinDurationSeconds = 240;
+
+    @Value("${app.render.chunked.chunk-seconds:60}")
+    private int chunkSeconds = 60;
+
+    @Value("${app.render.chunked.threads-per-chunk:4}")
+    private int threadsPerChunk = 4;
+
     public String generateKaraokeVideo(
-            String originalVideoPath,
             String instrumentalPath,
             String vocalsPath,
             LyricsProvider.LyricsResult lyrics,
             boolean includeBackgroundVocals,
             double vocalsVolume,
-            String jobId) throws IOException, InterruptedException {
+            RenderQuality quality,
+            OutputMode outputMode,
+            boolean streamHls,
+            String jobId,
+            DoubleConsumer progressListener) throws IOException, InterruptedException {
         
-        log.info("Generating karaoke video for job: {}", jobId);
+        log.info("Generating karaoke output for job: {} ({}, {})", jobId, outputMode, quality);
         
         String outputDir = fileStorageConfig.getOutputDirPath();
-        String outputPath = Paths.get(outputDir, jobId + "_karaoke.mp4").toString();
+        boolean wavAudio = mixesStemsInJvm(outputMode, streamHls);
+        String extension = wavAudio ? "wav" : outputMode == OutputMode.AUDIO_ONLY ? "m4a" : "mp4";
+        String outputPath = Paths.get(outputDir, jobId + "_karaoke." + extension).toString();
         
-        // Create filter complex for audio mixing
-        List<String> ffmpegArgs = new ArrayList<>();
-        ffmpegArgs.add(ffmpegPath);
-        ffmpegArgs.add("-i");
-        ffmpegArgs.add(originalVideoPath);
-        ffmpegArgs.add("-i");
-        ffmpegArgs.add(instrumentalPath);
-        
-        if (includeBackgroundVocals) {
-            ffmpegArgs.add("-i");
-            ffmpegArgs.add(vocalsPath);
+        String subtitleFile = null;
+        if (outputMode != OutputMode.AUDIO_ONLY && lyrics != null && !lyrics.getLines().isEmpty()) {
+            subtitleFile = createSubtitleFile(lyrics, outputMode, jobId);
         }
         
-        // Video filter: extract video stream
-        ffmpegArgs.add("-map");
-        ffmpegArgs.add("0:v");
+        Path hlsDir = null;
+        if (streamHls && outputMode != OutputMode.SOFT_SUBTITLES) {
+            hlsDir = hlsDir(jobId);
+            FileSystemUtils.deleteRecursively(hlsDir);
+            Files.createDirectories(hlsDir);
+        }
         
-        // Audio filter: mix instrumental and optionally vocals
-        if (includeBackgroundVocals) {
-            // Mix instrumental and vocals with volume control
-            String audioFilter = String.format(
-                    "[1:a]volume=1.0[a1];[2:a]volume=%.2f[a2];[a1][a2]amix=inputs=2:duration=first:dropout_transition=2",
-                    vocalsVolume);
-            ffmpegArgs.add("-filter_complex");
-            ffmpegArgs.add(audioFilter);
-            ffmpegArgs.add("-map");
-            ffmpegArgs.add("[a1]");
+        String mixedVocalsPath = includeBackgroundVocals ? vocalsPath : null;
+        double durationSeconds = durationSeconds(instrumentalPath);
+        Path mixerVocals = mixedVocalsPath != null ? Paths.get(mixedVocalsPath) : null;
+        // The tee'd HLS stream needs a single encoder, so streamed renders always run in one pass.
+        // Stems cached as FLAC by an earlier video job cannot be mixed in the JVM and go to ffmpeg
+        if (wavAudio && StemMixer.canMix(Paths.get(instrumentalPath), mixerVocals)) {
+            // Nothing to encode: mixing in the JVM saves starting ffmpeg
+            StemMixer.mix(Paths.get(instrumentalPath), mixerVocals, (float) vocalsVolume, Paths.get(outputPath),
+                    progressListener);
+        } else if (chunkedEnabled && outputMode == OutputMode.BURNED && hlsDir == null
+                && durationSeconds >= chunkedMinDurationSeconds) {
+            renderChunked(instrumentalPath, mixedVocalsPath, vocalsVolume, subtitleFile, quality, durationSeconds,
+                    outputPath, jobId, progressListener);
         } else {
-            // Use only instrumental
-            ffmpegArgs.add("-map");
-            ffmpegArgs.add("1:a");
+            List<String> ffmpegArgs = buildArgs(instrumentalPath, mixedVocalsPath, vocalsVolume, subtitleFile,
+                    quality, outputMode, outputPath, hlsDir);
+            runFfmpeg(ffmpegArgs, "FFmpeg", jobId, durationSeconds, progressListener);
         }
         
-        // Add lyrics as subtitles (simplified - bouncing ball would need more complex filter)
-        if (lyrics != null && !lyrics.getLines().isEmpty()) {
-            String subtitleFile = createSubtitleFile(lyrics, jobId);
-            ffmpegArgs.add("-vf");
-            ffmpegArgs.add(String.format("subtitles=%s:force_style='FontSize=24,PrimaryColour=&Hffffff,OutlineColour=&H000000,BorderStyle=1'", 
-                    subtitleFile.replace("\\", "/").replace(":", "\\:")));
+        log.info("Karaoke output generated successfully: {}", outputPath);
+        return outputPath;
+    }
+
+    /**
+     * Whether a render of this kind mixes WAV stems in the JVM rather than with ffmpeg, so
+     * separation should write WAV stems for it whatever the configured intermediate format.
+     * HLS segments need AAC, so a streamed audio-only render stays M4A and goes to ffmpeg.
+     */
+    public boolean mixesStemsInJvm(OutputMode outputMode, boolean streamHls) {
+        return outputMode == OutputMode.AUDIO_ONLY && !streamHls && "wav".equals(audioOnlyFormat);
+    }
+
+    /**
+     * Encodes the timeline in chunks on the render-chunk pool, then concatenates the chunks
+     * without re-encoding and mixes the audio over the whole song in the same pass. Each chunk
+     * starts on a keyframe by construction. Audio is not chunked: AAC frames do not line up with
+     * chunk boundaries, so joining separately encoded audio would click at every seam.
+     */
+    private void renderChunked(String instrumentalPath, String vocalsPath, double vocalsVolume, String subtitleFile,
+                               RenderQuality quality, double durationSeconds, String outputPath, String jobId,
+                               DoubleConsumer progressListener) throws IOException, InterruptedException {
+        List<RenderChunk> chunks = planChunks(durationSeconds, chunkSeconds);
+        Path chunkDir = Paths.get(fileStorageConfig.getTempDirPath(), jobId, "chunks");
+        FileSystemUtils.deleteRecursively(chunkDir);
+        Files.createDirectories(chunkDir);
+        log.info("Rendering job {} in {} chunks of up to {}s", jobId, chunks.size(), chunkSeconds);
+
+        // Encoding is the bulk of the work; the concat and audio pass gets the last 10%
+        double[] chunkProgress = new double[chunks.size()];
+        DoubleConsumer encodeProgress = fraction -> progressListener.accept(0.9 * fraction);
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        List<CompletableFuture<Void>> encodes = new ArrayList<>();
+        try {
+            for (RenderChunk chunk : chunks) {
+                Path chunkPath = chunkDir.resolve(String.format("chunk_%04d.mp4", chunk.getIndex()));
+                DoubleConsumer listener = fraction -> {
+                    synchronized (chunkProgress) {
+                        chunkProgress[chunk.getIndex()] = fraction * chunk.getLength();
+                        encodeProgress.accept(Arrays.stream(chunkProgress).sum() / durationSeconds);
+                    }
+                };
+                encodes.add(CompletableFuture.runAsync(() -> {
+                    if (firstFailure.get() != null) {
+                        return;
+                    }
+                    try {
+                        runFfmpeg(buildChunkArgs(subtitleFile, quality, chunk, chunkPath.toString()),
+                                "FFmpeg chunk " + chunk.getIndex(), jobId, chunk.getLength(), listener);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failChunks(firstFailure, e, jobId);
+                    } catch (Exception e) {
+                        failChunks(firstFailure, e, jobId);
+                    }
+                }, pipelineExecutors.getRenderChunkExecutor()));
+            }
+            for (CompletableFuture<Void> encode : encodes) {
+                encode.get();
+            }
+            rethrow(firstFailure.get());
+
+            Path concatList = chunkDir.resolve("chunks.txt");
+            List<String> entries = new ArrayList<>();
+            for (RenderChunk chunk : chunks) {
+                String path = chunkDir.resolve(String.format("chunk_%04d.mp4", chunk.getIndex())).toAbsolutePath().toString();
+                entries.add("file '" + path.replace("'", "'\\''") + "'");
+            }
+            Files.write(concatList, entries);
+
+            runFfmpeg(buildConcatArgs(concatList.toString(), instrumentalPath, vocalsPath, vocalsVolume, outputPath),
+                    "FFmpeg concat", jobId, durationSeconds, fraction -> progressListener.accept(0.9 + 0.1 * fraction));
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            processRunner.cancel(jobId);
+            throw e;
+        } finally {
+            encodes.forEach(encode -> encode.cancel(false));
+            FileSystemUtils.deleteRecursively(chunkDir);
         }
-        
-        ffmpegArgs.add("-c:v");
-        ffmpegArgs.add("libx264");
-        ffmpegArgs.add("-c:a");
-        ffmpegArgs.add("aac");
-        ffmpegArgs.add("-shortest");
-        ffmpegArgs.add("-y");
-        ffmpegArgs.add(outputPath);
-        
-        ProcessBuilder processBuilder = new ProcessBuilder(ffmpegArgs);
-        processBuilder.redirectErrorStream(true);
-        Process process = processBuilder.start();
-        
-        int exitCode = process.waitFor();
-        
-        if (exitCode != 0) {
-            throw new IOException("FFmpeg failed with exit code: " + exitCode);
+    }
+
+    // One failed chunk fails the render, so stop the ones still encoding
+    private void failChunks(AtomicReference<Throwable> firstFailure, Exception failure, String jobId) {
+        if (firstFailure.compareAndSet(null, failure)) {
+            processRunner.cancel(jobId);
         }
-        
-        log.info("Karaoke video generated successfully: {}", outputPath);
-        return outputPath;
     }
 
-    private String createSubtitleFile(LyricsProvider.LyricsResult lyrics, String jobId) throws IOException {
-        String tempDir = fileStorageConfig.getTempDirPath();
-        String subtitlePath = Paths.get(tempDir, jobId, "subtitles.srt").toString();
+    List<String> buildChunkArgs(String subtitleFile, RenderQuality quality, RenderChunk chunk, String chunkPath) {
+        List<String> args = new ArrayList<>();
+        args.add(ffmpegPath);
+        args.addAll(List.of("-f", "lavfi", "-i", String.format(Locale.ROOT, "color=c=%s:s=%dx%d:r=%d:d=%.3f",
+                backgroundColor, quality.getWidth(), quality.getHeight(), FRAME_RATE, chunk.getLength())));
+        FilterGraphBuilder graph = new FilterGraphBuilder("0:v");
+        if (subtitleFile != null) {
+            graph.subtitles(subtitleFile, subtitleStyle(subtitleFile)).timeOffset(chunk.getStart());
+        }
+        args.addAll(List.of("-filter_complex", graph.buildVideo(), "-map", FilterGraphBuilder.VIDEO_OUT));
+        args.addAll(videoEncoderArgs(quality, threadsPerChunk));
+        args.add("-an");
+        args.addAll(List.of("-progress", "pipe:1", "-nostats", "-y", chunkPath));
+        return args;
+    }
+
+    List<String> buildConcatArgs(String concatList, String instrumentalPath, String vocalsPath, double vocalsVolume,
+                                 String outputPath) {
+        List<String> args = new ArrayList<>();
+        args.add(ffmpegPath);
+        args.addAll(List.of("-f", "concat", "-safe", "0", "-i", concatList, "-i", instrumentalPath));
+        FilterGraphBuilder graph = new FilterGraphBuilder().audio("1:a", 1.0);
+        if (vocalsPath != null) {
+            args.addAll(List.of("-i", vocalsPath));
+            graph.audio("2:a", vocalsVolume);
+        }
+        args.addAll(List.of("-filter_complex", graph.build(), "-map", "0:v", "-map", FilterGraphBuilder.AUDIO_OUT,
+                "-c:v", "copy"));
+        args.addAll(audioEncoderArgs());
+        args.addAll(List.of("-shortest", "-progress", "pipe:1", "-nostats", "-y",
+                "-movflags", "+faststart", outputPath));
+        return args;
+    }
+
+    /**
+     * Splits the timeline into chunks of {@code chunkSeconds}; a short remainder is folded
+     * into the last chunk rather than encoded as a chunk of its own. Chunks are whole frames
+     * long, the last one rounded up, so no chunk ends on a partial frame and the seams stay
+     * on the timeline the subtitles are shifted by.
+     */
+    static List<RenderChunk> planChunks(double durationSeconds, int chunkSeconds) {
+        long totalFrames = (long) Math.ceil(durationSeconds * FRAME_RATE);
+        long chunkFrames = (long) chunkSeconds * FRAME_RATE;
+        List<RenderChunk> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < totalFrames) {
+            long length = Math.min(chunkFrames, totalFrames - start);
+            long remainder = totalFrames - start - length;
+            if (remainder > 0 && remainder < chunkFrames / 4) {
+                length += remainder;
+            }
+            chunks.add(new RenderChunk(chunks.size(), (double) start / FRAME_RATE, (double) length / FRAME_RATE));
+            start += length;
+        }
+        return chunks;
+    }
+
+    private void runFfmpeg(List<String> args, String stage, String jobId, double durationSeconds,
+                           DoubleConsumer progressListener) throws IOException, InterruptedException {
+        processRunner.run(ProcessRequest.builder()
+                .command(args)
+                .stage(stage)
+                .jobId(jobId)
+                .lineListener(ProgressParsers.ffmpeg(durationSeconds).reportingTo(progressListener))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .build());
+    }
+
+    private static void rethrow(Throwable failure) throws IOException, InterruptedException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (failure instanceof InterruptedException interruptedException) {
+            throw interruptedException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        throw new IOException(failure);
+    }
+
+    /**
+     * Where an HLS render of the job writes its playlist and segments while encoding.
+     */
+    public Path hlsDir(String jobId) {
+        return Paths.get(fileStorageConfig.getOutputDirPath(), jobId + "_hls");
+    }
+
+    List<String> buildArgs(String instrumentalPath, String vocalsPath, double vocalsVolume, String subtitleFile,
+                           RenderQuality quality, OutputMode outputMode, String outputPath, Path hlsDir) {
+        boolean burned = outputMode == OutputMode.BURNED;
+        List<String> ffmpegArgs = new ArrayList<>();
+        ffmpegArgs.add(ffmpegPath);
+        
+        // The download is audio-only, so a burned render draws on a generated background at the tier's size
+        int nextInput = 0;
+        if (burned) {
+            ffmpegArgs.addAll(List.of("-f", "lavfi", "-i", String.format("color=c=%s:s=%dx%d:r=%d",
+                    backgroundColor, quality.getWidth(), quality.getHeight(), FRAME_RATE)));
+            nextInput++;
+        }
         
-        List<String> srtLines = new ArrayList<>();
-        int index = 1;
+        // One graph for both chains: subtitles burned into the video, instrumental optionally mixed with vocals
+        FilterGraphBuilder graph = burned ? new FilterGraphBuilder("0:v") : new FilterGraphBuilder();
+        ffmpegArgs.addAll(List.of("-i", instrumentalPath));
+        graph.audio(nextInput++ + ":a", 1.0);
+        if (vocalsPath != null) {
+            ffmpegArgs.addAll(List.of("-i", vocalsPath));
+            graph.audio(nextInput++ + ":a", vocalsVolume);
+        }
         
-        for (LyricsProvider.LyricLine line : lyrics.getLines()) {
-            srtLines.add(String.valueOf(index++));
-            
-            if (line.getStartTime() != null && line.getEndTime() != null) {
-                String startTime = formatSrtTime(line.getStartTime());
-                String endTime = formatSrtTime(line.getEndTime());
-                srtLines.add(startTime + " --> " + endTime);
+        int subtitleInput = -1;
+        if (subtitleFile != null) {
+            if (burned) {
+                graph.subtitles(subtitleFile, subtitleStyle(subtitleFile));
             } else {
-                // Estimate timing if not available (rough estimate: 3 seconds per line)
-                double estimatedStart = (index - 2) * 3.0;
-                double estimatedEnd = estimatedStart + 3.0;
-                srtLines.add(formatSrtTime(estimatedStart) + " --> " + formatSrtTime(estimatedEnd));
+                ffmpegArgs.addAll(List.of("-i", subtitleFile));
+                subtitleInput = nextInput;
             }
-            
-            srtLines.add(line.getText());
-            srtLines.add(""); // Empty line between entries
         }
         
-        Files.write(Paths.get(subtitlePath), srtLines);
-        return subtitlePath;
+        ffmpegArgs.addAll(List.of("-filter_complex", graph.build()));
+        if (burned) {
+            ffmpegArgs.addAll(List.of("-map", FilterGraphBuilder.VIDEO_OUT));
+        }
+        ffmpegArgs.addAll(List.of("-map", FilterGraphBuilder.AUDIO_OUT));
+        if (subtitleInput >= 0) {
+            // Soft subtitles are muxed as a text track; no video stream is encoded at all
+            ffmpegArgs.addAll(List.of("-map", subtitleInput + ":s", "-c:s", "mov_text"));
+        }
+        boolean wavOutput = outputPath.endsWith(".wav");
+        ffmpegArgs.addAll(burned ? encoderArgs(quality) : wavOutput ? List.of("-c:a", "pcm_s16le") : audioEncoderArgs());
+        ffmpegArgs.add("-shortest");
+        // Machine-readable out_time updates on stdout instead of the \r status line
+        ffmpegArgs.addAll(List.of("-progress", "pipe:1", "-nostats"));
+        ffmpegArgs.add("-y");
+        if (hlsDir != null) {
+            ffmpegArgs.addAll(teeArgs(outputPath, hlsDir, burned));
+        } else if (wavOutput) {
+            ffmpegArgs.add(outputPath);
+        } else {
+            ffmpegArgs.addAll(List.of("-movflags", "+faststart", outputPath));
+        }
+        return ffmpegArgs;
     }
 
-    private String formatSrtTime(double seconds) {
-        int hours = (int) (seconds / 3600);
-        int minutes = (int) ((seconds % 3600) / 60);
-        int secs = (int) (seconds % 60);
-        int millis = (int) ((seconds % 1) * 1000);
-        return String.format("%02d:%02d:%02d,%03d", hours, minutes, secs, millis);
+    /**
+     * One encode written twice through the tee muxer: the regular file, and an event HLS
+     * playlist of fMP4 segments that grows as the encode goes, so playback can start after
+     * the first segment. Keyframes are forced on segment boundaries so segments are cut on time.
+     */
+    private List<String> teeArgs(String outputPath, Path hlsDir, boolean video) {
+        List<String> args = new ArrayList<>();
+        if (video) {
+            args.addAll(List.of("-force_key_frames", "expr:gte(t,n_forced*" + hlsSegmentSeconds + ")"));
+        }
+        String hls = String.join(":",
+                "f=hls",
+                "hls_time=" + hlsSegmentSeconds,
+                "hls_playlist_type=event",
+                "hls_segment_type=fmp4",
+                "hls_segment_filename=" + escapeTeeOption(teePath(hlsDir.resolve(HLS_SEGMENT_PATTERN))),
+                // Segments appear under their final name only once complete
+                "hls_flags=independent_segments+temp_file");
+        args.addAll(List.of("-flags", "+global_header", "-f", "tee",
+                "[f=mp4:movflags=+faststart]" + escapeTeeTarget(teePath(Paths.get(outputPath)))
+                        + "|[" + hls + "]" + escapeTeeTarget(teePath(hlsDir.resolve(HLS_PLAYLIST)))));
+        return args;
+    }
+
+    private static String teePath(Path path) {
+        return path.toAbsolutePath().toString().replace('\\', '/');
+    }
+
+    // Option values inside [...] are ':'-separated
+    private static String escapeTeeOption(String value) {
+        return value.replace("\\", "\\\\").replace(":", "\\:").replace("]", "\\]");
+    }
+
+    // Slave outputs are '|'-separated and may start with an [options] block
+    private static String escapeTeeTarget(String value) {
+        return value.replace("\\", "\\\\").replace("|", "\\|").replace("[", "\\[");
+    }
+
+    List<String> encoderArgs(RenderQuality quality) {
+        List<String> args = videoEncoderArgs(quality, renderThreads);
+        args.addAll(audioEncoderArgs());
+        return args;
+    }
+
+    private List<String> videoEncoderArgs(RenderQuality quality, int threads) {
+        List<String> args = new ArrayList<>(List.of(
+                "-c:v", "libx264",
+                "-preset", quality.getPreset(),
+                "-crf", String.valueOf(quality.getCrf()),
+                "-pix_fmt", "yuv420p"));
+        if (quality.getTune() != null) {
+            args.add("-tune");
+            args.add(quality.getTune());
+        }
+        if (threads > 0) {
+            args.add("-threads");
+            args.add(String.valueOf(threads));
+        }
+        return args;
+    }
+
+    private List<String> audioEncoderArgs() {
+        return List.of("-c:a", "aac", "-b:a", "192k");
+    }
+
+    /**
+     * Length of the audio, which bounds the output through -shortest. Returns 0 when unknown,
+     * in which case progress falls back to the durations ffmpeg prints for its inputs.
+     */
+    private double durationSeconds(String audioPath) {
+        try {
+            return AudioFiles.durationSeconds(Path.of(audioPath));
+        } catch (IOException e) {
+            log.debug("Could not read duration of {}: {}", audioPath, e.getMessage());
+        }
+        return 0;
+    }
+
+    static class RenderChunk {
+        private final int index;
+        private final double start;
+        private final double length;
+
+        RenderChunk(int index, double start, double length) {
+            this.index = index;
+            this.start = start;
+            this.length = length;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        double getStart() {
+            return start;
+        }
+
+        double getLength() {
+            return length;
+        }
+    }
+
+    // An ASS file carries its own karaoke style; forcing the SRT style would override its colours
+    private static String subtitleStyle(String subtitleFile) {
+        return subtitleFile.endsWith(".ass") ? null : SUBTITLE_STYLE;
+    }
+
+    private String createSubtitleFile(LyricsProvider.LyricsResult lyrics, OutputMode outputMode, String jobId)
+            throws IOException {
+        Path dir = Paths.get(fileStorageConfig.getTempDirPath(), jobId);
+        Files.createDirectories(dir);
+        // mov_text keeps only plain text, so the karaoke tags are only worth writing for burn-in
+        if (outputMode == OutputMode.BURNED && "ass".equals(burnedSubtitleFormat)) {
+            Path subtitles = dir.resolve("subtitles.ass");
+            SubtitleWriter.writeAss(lyrics.getLines(), subtitles);
+            return subtitles.toString();
+        }
+        Path subtitles = dir.resolve("subtitles.srt");
+        SubtitleWriter.writeSrt(lyrics.getLines(), subtitles);
+        return subtitles.toString();
     }
 }
@@ -0,0 +1,138 @@
+package com.karaoke.service.video;
+
+import com.karaoke.service.lyrics.LyricsProvider;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes lyrics as subtitle files, one cue at a time straight to the file, so a long
+ * transcript is never held as text in memory. SRT carries whole lines; ASS adds a
+ * {@code \k} tag per word, which libass renders as karaoke highlighting: each word turns
+ * from the secondary to the primary colour as it is sung.
+ */
+public final class SubtitleWriter {
+
+    // Lines without times get consecutive slots of this length
+    private static final double FALLBACK_LINE_SECONDS = 3.0;
+
+    // Matches the look of the SRT style forced on burned subtitles (libass scales to 384x288)
+    private static final String ASS_HEADER = """
+            [Script Info]
+            ScriptType: v4.00+
+            PlayResX: 384
+            PlayResY: 288
+            WrapStyle: 0
+
+            [V4+ Styles]
+            Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, BackColour, \
+            Bold, Italic, Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, BorderStyle, Outline, Shadow, \
+            Alignment, MarginL, MarginR, MarginV, Encoding
+            Style: Karaoke,Arial,24,&H0000FFFF,&H00FFFFFF,&H00000000,&H80000000,\
+            0,0,0,0,100,100,0,0,1,1,0,2,10,10,10,1
+
+            [Events]
+            Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text
+            """;
+
+    private SubtitleWriter() {
+    }
+
+    public static void writeSrt(List<LyricsProvider.LyricLine> lines, Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            int index = 0;
+            for (LyricsProvider.LyricLine line : lines) {
+                out.write(String.valueOf(index + 1));
+                out.write('\n');
+                out.write(srtTime(start(line, index)));
+                out.write(" --> ");
+                out.write(srtTime(end(line, index)));
+                out.write('\n');
+                out.write(line.getText());
+                out.write("\n\n");
+                index++;
+            }
+        }
+    }
+
+    /**
+     * One dialogue event per line. Words come from the line's word timings, or are spread
+     * over the line by length when it has none; silences between words become empty
+     * {@code \k} pauses so every word lights up on time.
+     */
+    public static void writeAss(List<LyricsProvider.LyricLine> lines, Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(ASS_HEADER);
+            StringBuilder text = new StringBuilder();
+            int index = 0;
+            for (LyricsProvider.LyricLine line : lines) {
+                double start = start(line, index);
+                double end = end(line, index);
+                List<LyricsProvider.LyricWord> words = line.getWords() != null && !line.getWords().isEmpty()
+                        ? line.getWords() : LyricsProvider.LyricWord.spread(line.getText(), start, end);
+
+                // \k durations are centiseconds; rounding against the running total keeps drift under 1 cs
+                text.setLength(0);
+                long elapsed = 0;
+                for (LyricsProvider.LyricWord word : words) {
+                    if (text.length() > 0) {
+                        text.append(' ');
+                    }
+                    long wordStart = centiseconds(word.getStartTime() - start);
+                    if (wordStart > elapsed) {
+                        text.append("{\\k").append(wordStart - elapsed).append('}');
+                        elapsed = wordStart;
+                    }
+                    long wordEnd = Math.max(elapsed, centiseconds(word.getEndTime() - start));
+                    text.append("{\\k").append(wordEnd - elapsed).append('}').append(escapeAss(word.getText()));
+                    elapsed = wordEnd;
+                }
+
+                out.write("Dialogue: 0,");
+                out.write(assTime(start));
+                out.write(',');
+                out.write(assTime(end));
+                out.write(",Karaoke,,0,0,0,,");
+                out.append(text);
+                out.write('\n');
+                index++;
+            }
+        }
+    }
+
+    private static double start(LyricsProvider.LyricLine line, int index) {
+        return line.getStartTime() != null && line.getEndTime() != null
+                ? line.getStartTime() : index * FALLBACK_LINE_SECONDS;
+    }
+
+    private static double end(LyricsProvider.LyricLine line, int index) {
+        return line.getStartTime() != null && line.getEndTime() != null
+                ? line.getEndTime() : (index + 1) * FALLBACK_LINE_SECONDS;
+    }
+
+    private static long centiseconds(double seconds) {
+        return Math.max(0, Math.round(seconds * 100));
+    }
+
+    // Braces open override blocks and a backslash starts an escape like \N, so neither may reach libass raw
+    static String escapeAss(String text) {
+        return text.replace('{', '(').replace('}', ')').replace('\\', '/').replace('\n', ' ');
+    }
+
+    static String srtTime(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format(Locale.ROOT, "%02d:%02d:%02d,%03d",
+                millis / 3_600_000, millis / 60_000 % 60, millis / 1000 % 60, millis % 1000);
+    }
+
+    static String assTime(double seconds) {
+        long centis = Math.round(seconds * 100);
+        return String.format(Locale.ROOT, "%d:%02d:%02d.%02d",
+                centis / 360_000, centis / 6000 % 60, centis / 100 % 60, centis % 100);
+    }
+}
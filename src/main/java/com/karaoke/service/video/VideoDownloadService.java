@@ -1,6 +1,10 @@
 package com.karaoke.service.video;
 
-import com.karaoke.config.FileStorageConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karaoke.service.process.ProcessRequest;
+import com.karaoke.service.process.ProcessRunner;
+import com.karaoke.service.process.ProgressParsers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,70 +13,132 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class VideoDownloadService {
 
-    private final FileStorageConfig fileStorageConfig;
+    private static final String INFO_FILE = "video.info.json";
+    // "(Official Video)", "[Lyrics]", "(HD)" and similar decorations that break lyrics lookups
+    private static final Pattern TITLE_NOISE = Pattern.compile(
+            "\\s*[(\\[][^)\\]]*(official|lyric|video|audio|visuali[sz]er|hd|4k|remaster)[^)\\]]*[)\\]]",
+            Pattern.CASE_INSENSITIVE);
+
+    private final ObjectMapper objectMapper;
+    private final ProcessRunner processRunner;
 
     @Value("${app.tools.yt-dlp-path:yt-dlp}")
     private String ytDlpPath;
 
-    public VideoDownloadResult downloadVideo(String youtubeUrl, String jobId) throws IOException, InterruptedException {
+    @Value("${app.process.download-timeout-ms:600000}")
+    private long timeoutMs;
+
+    // "best" keeps the source codec: nothing is transcoded and the file stays a few MB
+    @Value("${app.intermediate.download-format:best}")
+    private String downloadFormat;
+
+    public VideoDownloadResult downloadVideo(String youtubeUrl, Path targetDir, String jobId,
+                                             DoubleConsumer progressListener) throws IOException, InterruptedException {
         log.info("Downloading video from URL: {}", youtubeUrl);
         
-        String tempDir = fileStorageConfig.getTempDirPath();
-        String jobDir = Paths.get(tempDir, jobId).toString();
-        Files.createDirectories(Paths.get(jobDir));
+        String jobDir = targetDir.toString();
+        Files.createDirectories(targetDir);
         
         String outputPath = Paths.get(jobDir, "video.%(ext)s").toString();
         
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                ytDlpPath,
-                "-x", // Extract audio only
-                "--audio-format", "wav",
-                "--audio-quality", "0", // Best quality
-                "-o", outputPath,
-                youtubeUrl
-        );
-        
-        processBuilder.redirectErrorStream(true);
-        Process process = processBuilder.start();
-        
-        int exitCode = process.waitFor();
-        
-        if (exitCode != 0) {
-            throw new IOException("yt-dlp failed with exit code: " + exitCode);
-        }
+        processRunner.run(ProcessRequest.builder()
+                .arg(ytDlpPath)
+                .arg("--newline") // One progress line per update instead of \r redraws
+                .arg("-x") // Extract audio only
+                .arg("--audio-format").arg(downloadFormat)
+                .arg("--audio-quality").arg("0") // Best quality
+                .arg("--write-info-json") // Artist/title metadata for the lyrics lookup
+                .arg("-o").arg(outputPath)
+                .arg(youtubeUrl)
+                .stage("yt-dlp")
+                .jobId(jobId)
+                .lineListener(ProgressParsers.ytDlp().reportingTo(progressListener))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .build());
         
-        // Find the downloaded file
-        File jobDirFile = new File(jobDir);
-        File[] files = jobDirFile.listFiles((dir, name) -> name.startsWith("video."));
+        VideoDownloadResult result = locateDownload(targetDir);
+        log.info("Video downloaded successfully to: {}", result.getVideoPath());
+        return result;
+    }
+
+    /**
+     * Rebuilds the download result from a directory previously filled by {@link #downloadVideo}.
+     */
+    public VideoDownloadResult locateDownload(Path downloadDir) throws IOException {
+        File[] files = downloadDir.toFile().listFiles((dir, name) -> name.startsWith("video.") && !name.equals(INFO_FILE));
         
         if (files == null || files.length == 0) {
             throw new IOException("Downloaded video file not found");
         }
         
-        File videoFile = files[0];
-        String videoPath = videoFile.getAbsolutePath();
-        
-        log.info("Video downloaded successfully to: {}", videoPath);
-        
-        return new VideoDownloadResult(videoPath, jobDir);
+        VideoDownloadResult result = new VideoDownloadResult(files[0].getAbsolutePath(), downloadDir.toString());
+        readMetadata(downloadDir.resolve(INFO_FILE), result);
+        return result;
+    }
+
+    private void readMetadata(Path infoFile, VideoDownloadResult result) {
+        if (!Files.isRegularFile(infoFile)) {
+            return;
+        }
+        try {
+            JsonNode info = objectMapper.readTree(infoFile.toFile());
+            String artist = text(info, "artist");
+            String title = text(info, "track");
+            if (artist == null || title == null) {
+                // Music uploads usually follow "Artist - Title"; otherwise fall back to the channel name
+                String rawTitle = text(info, "title");
+                title = rawTitle != null ? TITLE_NOISE.matcher(rawTitle).replaceAll("").trim() : "";
+                int separator = title.indexOf(" - ");
+                if (separator > 0) {
+                    artist = title.substring(0, separator).trim();
+                    title = title.substring(separator + 3).trim();
+                } else if (artist == null) {
+                    String channel = text(info, "uploader") != null ? text(info, "uploader") : text(info, "channel");
+                    artist = channel != null ? channel.replace(" - Topic", "").trim() : null;
+                }
+            }
+            if (artist != null && !artist.isEmpty() && !title.isEmpty()) {
+                result.artist = artist;
+                result.title = title;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read video metadata from {}: {}", infoFile, e.getMessage());
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isTextual() && !value.asText().isBlank() ? value.asText() : null;
     }
 
     public static class VideoDownloadResult {
         private final String videoPath;
         private final String jobDir;
+        private String artist = "Unknown";
+        private String title = "Unknown";
 
         public VideoDownloadResult(String videoPath, String jobDir) {
             this.videoPath = videoPath;
             this.jobDir = jobDir;
         }
 
+        public VideoDownloadResult(String videoPath, String jobDir, String artist, String title) {
+            this(videoPath, jobDir);
+            this.artist = artist;
+            this.title = title;
+        }
+
         public String getVideoPath() {
             return videoPath;
         }
@@ -80,5 +146,13 @@ public class VideoDownloadService {
         public String getJobDir() {
             return jobDir;
         }
+
+        public String getArtist() {
+            return artist;
+        }
+
+        public String getTitle() {
+            return title;
+        }
     }
 }
@@ -2,13 +2,35 @@
 """
 Audio separation script using Spleeter or Demucs.
 This script separates vocals from instrumental in an audio file.
+
+With --serve it stays running as a pooled worker: the model is loaded once and requests
+arrive as JSON lines on stdin, e.g. {"cmd": "separate", "input": ..., "output": ...}.
+Replies are JSON lines on stdout (ready, pong, progress, done, error); anything the
+libraries print goes to stderr so it cannot corrupt the protocol.
 """
 
 import argparse
+import json
 import sys
 import os
 import subprocess
 
+# Set in --serve mode: the real stdout, reserved for protocol events
+_protocol = None
+
+def emit(event, **fields):
+    """Write one protocol event to the backend."""
+    fields['event'] = event
+    _protocol.write(json.dumps(fields) + "\n")
+    _protocol.flush()
+
+def report_progress(percent):
+    """Emit a progress milestone; the backend parses these lines into job progress."""
+    if _protocol is not None:
+        emit('progress', percent=percent)
+    else:
+        print(f"PROGRESS {percent}", flush=True)
+
 def check_dependency(package_name, import_name=None):
     """Check if a Python package is installed."""
     if import_name is None:
@@ -19,93 +41,195 @@ def check_dependency(package_name, import_name=None):
     except ImportError:
         return False
 
-def separate_with_spleeter(input_path, output_dir):
+_spleeter_separator = None
+
+def spleeter_separator():
+    """The Spleeter model, built on first use and kept for later requests."""
+    global _spleeter_separator
+    if _spleeter_separator is None:
+        from spleeter.separator import Separator
+        _spleeter_separator = Separator('spleeter:2stems')
+    return _spleeter_separator
+
+def separate_with_spleeter(input_path, output_dir, stem_format='wav'):
     """Separate audio using Spleeter (2stems model)."""
     try:
-        from spleeter.separator import Separator
+        separator = spleeter_separator()
+        report_progress(10)
+        separator.separate_to_file(input_path, output_dir, codec=stem_format)
+        report_progress(90)
         
-        separator = Separator('spleeter:2stems')
-        separator.separate_to_file(input_path, output_dir)
-        
-        # Spleeter outputs: vocals.wav and accompaniment.wav
-        vocals_path = os.path.join(output_dir, os.path.splitext(os.path.basename(input_path))[0], 'vocals.wav')
-        instrumental_path = os.path.join(output_dir, os.path.splitext(os.path.basename(input_path))[0], 'accompaniment.wav')
-        
-        # Rename/move files to expected locations
-        final_vocals = os.path.join(output_dir, 'vocals.wav')
-        final_instrumental = os.path.join(output_dir, 'instrumental.wav')
-        
-        if os.path.exists(vocals_path):
-            os.rename(vocals_path, final_vocals)
-        if os.path.exists(instrumental_path):
-            os.rename(instrumental_path, final_instrumental)
-            
+        # Spleeter outputs: vocals.<format> and accompaniment.<format>
+        spleeter_output = os.path.join(output_dir, os.path.splitext(os.path.basename(input_path))[0])
+        publish_stems(os.path.join(spleeter_output, f"vocals.{stem_format}"),
+                      os.path.join(spleeter_output, f"accompaniment.{stem_format}"), output_dir, stem_format)
         return True
     except Exception as e:
         print(f"Spleeter separation failed: {e}", file=sys.stderr)
         return False
 
-def separate_with_demucs(input_path, output_dir):
-    """Separate audio using Demucs."""
+def publish_stems(vocals_path, instrumental_path, output_dir, stem_format):
+    """Moves the stems to the names the backend expects; a rename, not a copy, to spare the disk."""
+    if os.path.exists(vocals_path):
+        os.replace(vocals_path, os.path.join(output_dir, f"vocals.{stem_format}"))
+    if os.path.exists(instrumental_path):
+        os.replace(instrumental_path, os.path.join(output_dir, f"instrumental.{stem_format}"))
+    import shutil
+    shutil.rmtree(os.path.dirname(vocals_path), ignore_errors=True)
+
+_demucs_separators = {}
+
+def demucs_separator(model):
+    """The Demucs model when demucs.api is available (demucs 4.1+), kept for later requests.
+    Older releases only offer the CLI entry point, which loads the model on every call."""
+    if model not in _demucs_separators:
+        try:
+            from demucs.api import Separator
+        except ImportError:
+            return None
+        _demucs_separators[model] = Separator(model=model, progress=True)
+    return _demucs_separators[model]
+
+def separate_with_demucs(input_path, output_dir, model='htdemucs', shifts=1, overlap=0.25, stem_format='wav'):
+    """Separate audio using Demucs. More shifts average more passes over time-shifted input
+    and more overlap blends more of each segment: both raise quality and cost time."""
     try:
-        import demucs.separate
-        
-        # Run demucs separation
-        demucs.separate.main([input_path, '-o', output_dir, '-n', 'htdemucs'])
-        
-        # Demucs outputs in a subdirectory structure
         base_name = os.path.splitext(os.path.basename(input_path))[0]
-        demucs_output = os.path.join(output_dir, 'htdemucs', base_name)
-        
-        vocals_path = os.path.join(demucs_output, 'vocals.wav')
-        instrumental_path = os.path.join(demucs_output, 'other.wav')
+        demucs_output = os.path.join(output_dir, model, base_name)
+
+        # Run demucs separation (its tqdm bar on stderr reports progress while it runs)
+        report_progress(5)
+        separator = demucs_separator(model)
+        if separator is not None:
+            from demucs.api import save_audio
+            separator.update_parameter(shifts=shifts, overlap=overlap)
+            _, stems = separator.separate_audio_file(input_path)
+            os.makedirs(demucs_output, exist_ok=True)
+            # Everything but the vocals (drums, bass, other...) is the instrumental
+            accompaniment = sum(source for stem, source in stems.items() if stem != 'vocals')
+            save_audio(stems['vocals'], os.path.join(demucs_output, f"vocals.{stem_format}"),
+                       samplerate=separator.samplerate)
+            save_audio(accompaniment, os.path.join(demucs_output, f"no_vocals.{stem_format}"),
+                       samplerate=separator.samplerate)
+        else:
+            import demucs.separate
+            args = [input_path, '-o', output_dir, '-n', model, '--two-stems', 'vocals',
+                    '--shifts', str(shifts), '--overlap', str(overlap)]
+            if stem_format == 'flac':
+                args.append('--flac')
+            demucs.separate.main(args)
+        report_progress(90)
         
-        # Combine other stems as instrumental (drums, bass, other)
-        if os.path.exists(vocals_path) and os.path.exists(instrumental_path):
-            final_vocals = os.path.join(output_dir, 'vocals.wav')
-            final_instrumental = os.path.join(output_dir, 'instrumental.wav')
-            
-            # Copy/move files
-            import shutil
-            shutil.copy2(vocals_path, final_vocals)
-            
-            # For instrumental, we might want to mix drums, bass, and other
-            # For simplicity, just use 'other' as instrumental
-            shutil.copy2(instrumental_path, final_instrumental)
-            
+        publish_stems(os.path.join(demucs_output, f"vocals.{stem_format}"),
+                      os.path.join(demucs_output, f"no_vocals.{stem_format}"), output_dir, stem_format)
         return True
+    except SystemExit as e:
+        # The demucs CLI exits rather than raising on bad input; a --serve worker must outlive that
+        print(f"Demucs separation failed: exit status {e.code}", file=sys.stderr)
+        return False
     except Exception as e:
         print(f"Demucs separation failed: {e}", file=sys.stderr)
         return False
 
+def separate(input_path, output_dir, method='auto', model='htdemucs', shifts=1, overlap=0.25, stem_format='wav'):
+    """Runs the first available separation method; returns the one that succeeded or None.
+    The Demucs settings also apply when 'auto' falls back to Demucs."""
+    if method == 'spleeter' or method == 'auto':
+        if check_dependency('spleeter') and separate_with_spleeter(input_path, output_dir, stem_format):
+            return 'spleeter'
+
+    if method == 'demucs' or method == 'auto':
+        if check_dependency('demucs') and separate_with_demucs(input_path, output_dir, model, shifts, overlap, stem_format):
+            return 'demucs'
+
+    return None
+
+def serve(method, model):
+    """Worker loop: load the model once, then handle requests until shutdown or stdin closes.
+    Each request may name its own method and Demucs settings; other models load on first use."""
+    global _protocol
+    _protocol = sys.stdout
+    sys.stdout = sys.stderr
+
+    if method in ('spleeter', 'auto') and check_dependency('spleeter'):
+        spleeter_separator()
+        loaded = 'spleeter'
+    elif method in ('demucs', 'auto') and check_dependency('demucs'):
+        demucs_separator(model)
+        loaded = 'demucs'
+    else:
+        emit('error', message='Please install spleeter or demucs')
+        sys.exit(1)
+    emit('ready', method=loaded)
+
+    for line in sys.stdin:
+        if not line.strip():
+            continue
+        try:
+            request = json.loads(line)
+        except ValueError:
+            emit('error', message=f"Malformed request: {line.strip()}")
+            continue
+
+        cmd = request.get('cmd')
+        if cmd == 'ping':
+            emit('pong')
+        elif cmd == 'shutdown':
+            break
+        elif cmd == 'separate':
+            input_path, output_dir = request.get('input'), request.get('output')
+            if not input_path or not os.path.exists(input_path):
+                emit('error', message=f"Input file not found: {input_path}")
+                continue
+            os.makedirs(output_dir, exist_ok=True)
+            report_progress(0)
+            used = separate(input_path, output_dir, request.get('method', 'auto'),
+                            request.get('model', model), int(request.get('shifts', 1)),
+                            float(request.get('overlap', 0.25)), request.get('format', 'wav'))
+            if used:
+                report_progress(100)
+                emit('done', method=used)
+            else:
+                emit('error', message='Audio separation failed')
+        else:
+            emit('error', message=f"Unknown command: {cmd}")
+
 def main():
     parser = argparse.ArgumentParser(description='Separate vocals from instrumental audio')
-    parser.add_argument('--input', required=True, help='Input audio file path')
-    parser.add_argument('--output', required=True, help='Output directory path')
+    parser.add_argument('--input', help='Input audio file path')
+    parser.add_argument('--output', help='Output directory path')
     parser.add_argument('--method', choices=['spleeter', 'demucs', 'auto'], 
                        default='auto', help='Separation method to use')
+    parser.add_argument('--model', default='htdemucs', help='Demucs model name')
+    parser.add_argument('--shifts', type=int, default=1, help='Demucs random shifts (0 = single pass)')
+    parser.add_argument('--overlap', type=float, default=0.25, help='Demucs overlap between segments')
+    parser.add_argument('--stem-format', choices=['wav', 'flac'], default='wav',
+                       help='Container of the written stems; FLAC is lossless at about half the size')
+    parser.add_argument('--serve', action='store_true',
+                       help='Run as a persistent worker reading JSON requests from stdin')
     
     args = parser.parse_args()
+
+    if args.serve:
+        serve(args.method, args.model)
+        return
+
+    if not args.input or not args.output:
+        parser.error('--input and --output are required unless --serve is given')
     
     if not os.path.exists(args.input):
         print(f"Error: Input file not found: {args.input}", file=sys.stderr)
         sys.exit(1)
     
     os.makedirs(args.output, exist_ok=True)
+    report_progress(0)
     
-    success = False
-    
-    if args.method == 'spleeter' or args.method == 'auto':
-        if check_dependency('spleeter'):
-            success = separate_with_spleeter(args.input, args.output)
-            if success:
-                print("Audio separated successfully using Spleeter", file=sys.stderr)
-    
-    if not success and (args.method == 'demucs' or args.method == 'auto'):
-        if check_dependency('demucs'):
-            success = separate_with_demucs(args.input, args.output)
-            if success:
-                print("Audio separated successfully using Demucs", file=sys.stderr)
+    method = separate(args.input, args.output, args.method, args.model, args.shifts, args.overlap,
+                      args.stem_format)
+    success = method is not None
+    if success:
+        print(f"Audio separated successfully using {method.capitalize()}", file=sys.stderr)
+        report_progress(100)
     
     if not success:
         print("Error: Audio separation failed. Please install spleeter or demucs:", file=sys.stderr)
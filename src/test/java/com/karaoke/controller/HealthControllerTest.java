@@ -39,4 +39,14 @@ class HealthControllerTest {
                 .andExpect(jsonPath("$.status").value("UP"))
                 .andExpect(jsonPath("$.service").value("Karaoke Backend API"));
     }
+
+    @Test
+    void testCacheStats() throws Exception {
+        when(healthService.getCacheStats()).thenReturn(Map.of("jobs", Map.of("size", 3L, "hitCount", 10L)));
+
+        mockMvc.perform(get("/health/caches"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.jobs.size").value(3))
+                .andExpect(jsonPath("$.jobs.hitCount").value(10));
+    }
 }
@@ -2,30 +2,40 @@ package com.karaoke.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.karaoke.model.dto.GenerateKaraokeRequest;
+import com.karaoke.model.dto.JobEvent;
+import com.karaoke.model.dto.JobListPage;
 import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.JobSummary;
 import com.karaoke.model.entity.KaraokeJob;
 import com.karaoke.service.KaraokeService;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
-import static org.mockito.Mockito.doNothing;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(KaraokeController.class)
+@Import(RangeFileSender.class)
 class KaraokeControllerTest {
 
     @Autowired
@@ -54,7 +64,6 @@ class KaraokeControllerTest {
                 .build();
 
         when(karaokeService.createJob(any(GenerateKaraokeRequest.class))).thenReturn(job);
-        doNothing().when(karaokeService).processJob(any(Long.class));
 
         mockMvc.perform(post("/karaoke/generate")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -98,24 +107,103 @@ class KaraokeControllerTest {
     }
 
     @Test
-    void listJobs_ShouldReturnPaginatedJobs() throws Exception {
+    void listJobs_ShouldReturnKeysetPage() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        JobSummary job = new JobSummary(1L, JobStatus.COMPLETED, "https://www.youtube.com/watch?v=test123", 100,
+                now, now, "path/to/video.mp4");
+        when(karaokeService.listJobs(eq(JobStatus.COMPLETED), any(), any(), isNull(), eq(1)))
+                .thenReturn(new JobListPage(List.of(job), "next-token"));
+
+        mockMvc.perform(get("/karaoke/jobs").param("status", "COMPLETED").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1L))
+                .andExpect(jsonPath("$.content[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$.content[0].downloadUrl").value("/karaoke/jobs/1/download"))
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"));
+    }
+
+    @Test
+    void listJobs_ShouldRejectInvalidCursor() throws Exception {
+        when(karaokeService.listJobs(any(), any(), any(), eq("bogus"), anyInt()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor: bogus"));
+
+        mockMvc.perform(get("/karaoke/jobs").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamJobEvents_ShouldPushTransitionsUntilJobCompletes() throws Exception {
+        when(karaokeService.streamJobEvents(1L)).thenReturn(Flux.just(
+                JobEvent.builder().jobId(1L).status(JobStatus.PROCESSING).progress(40).build(),
+                JobEvent.builder().jobId(1L).status(JobStatus.COMPLETED).progress(100).build()));
+
+        MvcResult result = mockMvc.perform(get("/karaoke/jobs/1/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:progress")))
+                .andExpect(content().string(containsString("\"progress\":40")))
+                .andExpect(content().string(containsString("event:done")))
+                .andExpect(content().string(containsString("\"downloadUrl\":\"/karaoke/jobs/1/download\"")));
+    }
+
+    @Test
+    void downloadVideo_ShouldServeRequestedRange(@TempDir Path tempDir) throws Exception {
+        Path video = Files.writeString(tempDir.resolve("karaoke.mp4"), "0123456789");
         KaraokeJob job = KaraokeJob.builder()
                 .id(1L)
                 .status(JobStatus.COMPLETED)
-                .youtubeUrl("https://www.youtube.com/watch?v=test123")
-                .progress(100)
-                .errorMessage(null)
-                .outputVideoPath("path/to/video.mp4")
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
+                .outputVideoPath(video.toString())
                 .build();
+        when(karaokeService.getJob(1L)).thenReturn(job);
 
-        Page<KaraokeJob> page = new PageImpl<>(Collections.singletonList(job), PageRequest.of(0, 1), 1L);
-        when(karaokeService.getAllJobs(any(Pageable.class))).thenReturn(page);
+        mockMvc.perform(get("/karaoke/jobs/1/download").header("Range", "bytes=2-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-4/10"))
+                .andExpect(content().contentType("video/mp4"))
+                .andExpect(content().string("234"));
+    }
+
+    @Test
+    void downloadVideo_ShouldReportEvictedOutputAsGone() throws Exception {
+        KaraokeJob job = KaraokeJob.builder().id(1L).status(JobStatus.COMPLETED).build();
+        when(karaokeService.getJob(1L)).thenReturn(job);
+
+        mockMvc.perform(get("/karaoke/jobs/1/download"))
+                .andExpect(status().isGone());
+    }
 
-        mockMvc.perform(get("/karaoke/jobs"))
+    @Test
+    void downloadVideo_ShouldRejectUnfinishedJob() throws Exception {
+        KaraokeJob job = KaraokeJob.builder().id(1L).status(JobStatus.PROCESSING).build();
+        when(karaokeService.getJob(1L)).thenReturn(job);
+
+        mockMvc.perform(get("/karaoke/jobs/1/download"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamHls_ShouldServeLivePlaylist(@TempDir Path tempDir) throws Exception {
+        Path playlist = Files.writeString(tempDir.resolve("playlist.m3u8"), "#EXTM3U\n#EXT-X-PLAYLIST-TYPE:EVENT\n");
+        when(karaokeService.resolveHlsFile(1L, "playlist.m3u8")).thenReturn(Optional.of(playlist));
+
+        mockMvc.perform(get("/karaoke/jobs/1/hls/playlist.m3u8"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.content[0].id").value(1L))
-                .andExpect(jsonPath("$.content[0].status").value("COMPLETED"));
+                .andExpect(content().contentType("application/vnd.apple.mpegurl"))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(header().doesNotExist("Content-Disposition"))
+                .andExpect(content().string(containsString("#EXT-X-PLAYLIST-TYPE:EVENT")));
+    }
+
+    @Test
+    void streamHls_ShouldReturnNotFoundBeforeFirstSegment() throws Exception {
+        when(karaokeService.resolveHlsFile(1L, "segment_00000.m4s")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/karaoke/jobs/1/hls/segment_00000.m4s"))
+                .andExpect(status().isNotFound());
     }
 }
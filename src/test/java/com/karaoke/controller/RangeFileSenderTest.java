@@ -0,0 +1,120 @@
+package com.karaoke.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeFileSenderTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path tempDir;
+
+    private final RangeFileSender sender = new RangeFileSender();
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.writeString(tempDir.resolve("karaoke.mp4"), CONTENT);
+    }
+
+    @Test
+    void send_ShouldReturnWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/download"));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).isEqualTo("video/mp4");
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length());
+        assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(response.getHeader("ETag")).isNotBlank();
+        assertThat(response.getHeader("Last-Modified")).isNotBlank();
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void send_ShouldAnswerMatchingEtagWithNotModified() throws Exception {
+        String etag = send(new MockHttpServletRequest("GET", "/download")).getHeader("ETag");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("If-None-Match", etag);
+        MockHttpServletResponse response = send(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void send_ShouldReturnPartialContentForSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=5-9");
+        MockHttpServletResponse response = send(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 5-9/20");
+        assertThat(response.getContentLengthLong()).isEqualTo(5);
+        assertThat(response.getContentAsString()).isEqualTo("56789");
+    }
+
+    @Test
+    void send_ShouldReturnMultipartForSeveralRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=0-1,-3");
+        MockHttpServletResponse response = send(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+        String body = response.getContentAsString(StandardCharsets.US_ASCII);
+        assertThat(body).contains("Content-Range: bytes 0-1/20\r\n\r\n01");
+        assertThat(body).contains("Content-Range: bytes 17-19/20\r\n\r\nhij");
+    }
+
+    @Test
+    void send_ShouldRejectUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=50-60");
+        MockHttpServletResponse response = send(request);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */20");
+    }
+
+    @Test
+    void send_ShouldIgnoreRangeWhenIfRangeIsStale() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=5-9");
+        request.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse response = send(request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void send_ShouldHandRangeToContainerSendfileWhenSupported() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.setAttribute(RangeFileSender.SENDFILE_SUPPORTED, Boolean.TRUE);
+        request.addHeader("Range", "bytes=5-");
+        MockHttpServletResponse response = send(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(request.getAttribute(RangeFileSender.SENDFILE_FILENAME)).isEqualTo(file.toAbsolutePath().toString());
+        assertThat(request.getAttribute(RangeFileSender.SENDFILE_START)).isEqualTo(5L);
+        assertThat(request.getAttribute(RangeFileSender.SENDFILE_END)).isEqualTo(20L);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(file, request, response);
+        return response;
+    }
+}
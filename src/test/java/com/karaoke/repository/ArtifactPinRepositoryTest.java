@@ -0,0 +1,77 @@
+package com.karaoke.repository;
+
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.ArtifactPin;
+import com.karaoke.model.entity.KaraokeJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ArtifactPinRepositoryTest {
+
+    @Autowired
+    private ArtifactPinRepository pinRepository;
+
+    @Autowired
+    private KaraokeJobRepository jobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        pinRepository.deleteAll();
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void isPinned_ShouldOnlyHonourPinsOfJobsStillProcessingOnTheirNode() {
+        KaraokeJob running = save(JobStatus.PROCESSING, "node-a");
+        KaraokeJob taken = save(JobStatus.PROCESSING, "node-b");
+        KaraokeJob done = save(JobStatus.COMPLETED, "node-a");
+        pin("running", running, "node-a");
+        pin("taken", taken, "node-a");
+        pin("done", done, "node-a");
+
+        assertThat(pinRepository.isPinned("running")).isTrue();
+        assertThat(pinRepository.isPinned("taken")).isFalse();
+        assertThat(pinRepository.isPinned("done")).isFalse();
+        assertThat(pinRepository.isPinned("unknown")).isFalse();
+
+        Integer deleted = transactionTemplate.execute(status -> pinRepository.deleteStale());
+        assertThat(deleted).isEqualTo(2);
+        assertThat(pinRepository.findAll()).extracting(ArtifactPin::getArtifactKey).containsExactly("running");
+    }
+
+    @Test
+    void deletePin_ShouldLeaveTheSamePinOfAnotherNodeAlone() {
+        KaraokeJob job = save(JobStatus.PROCESSING, "node-b");
+        pin("stems", job, "node-a");
+        pin("stems", job, "node-b");
+
+        transactionTemplate.execute(status -> pinRepository.deletePin("stems", job.getId(), "node-a"));
+
+        assertThat(pinRepository.findAll()).extracting(ArtifactPin::getNodeId).containsExactly("node-b");
+        assertThat(pinRepository.isPinned("stems")).isTrue();
+    }
+
+    private KaraokeJob save(JobStatus status, String leaseOwner) {
+        return jobRepository.save(KaraokeJob.builder()
+                .status(status)
+                .youtubeUrl("https://www.youtube.com/watch?v=test")
+                .options("{}")
+                .leaseOwner(leaseOwner)
+                .build());
+    }
+
+    private void pin(String artifactKey, KaraokeJob job, String nodeId) {
+        pinRepository.save(ArtifactPin.builder().artifactKey(artifactKey).jobId(job.getId()).nodeId(nodeId).build());
+    }
+}
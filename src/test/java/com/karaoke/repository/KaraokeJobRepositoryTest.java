@@ -0,0 +1,94 @@
+package com.karaoke.repository;
+
+import com.karaoke.model.dto.JobCursor;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.JobSummary;
+import com.karaoke.model.entity.KaraokeJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class KaraokeJobRepositoryTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Autowired
+    private KaraokeJobRepository jobRepository;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void findJobSummaries_ShouldWalkAllJobsNewestFirstWithoutGapsOrDuplicates() {
+        // Pairs of jobs share a creation time, so the id has to break ties; later jobs come first
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add(0, save(JobStatus.COMPLETED, BASE.plusMinutes(i / 2)).getId());
+        }
+
+        List<Long> seen = new ArrayList<>();
+        JobCursor cursor = null;
+        List<JobSummary> page;
+        do {
+            page = jobRepository.findJobSummaries(null, null, null,
+                    cursor != null ? cursor.getCreatedAt() : null,
+                    cursor != null ? cursor.getId() : null,
+                    PageRequest.of(0, 3));
+            page.forEach(job -> seen.add(job.getId()));
+            cursor = page.isEmpty() ? null : JobCursor.decode(JobCursor.after(page.get(page.size() - 1)).encode());
+        } while (page.size() == 3);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void findJobSummaries_ShouldApplyStatusAndDateFilters() {
+        save(JobStatus.FAILED, BASE.minusDays(1));
+        KaraokeJob inRange = save(JobStatus.FAILED, BASE.plusHours(1));
+        save(JobStatus.COMPLETED, BASE.plusHours(2));
+        save(JobStatus.FAILED, BASE.plusDays(1));
+
+        List<JobSummary> jobs = jobRepository.findJobSummaries(JobStatus.FAILED, BASE, BASE.plusDays(1),
+                null, null, PageRequest.of(0, 10));
+
+        assertThat(jobs).extracting(JobSummary::getId).containsExactly(inRange.getId());
+        assertThat(jobs.get(0).getYoutubeUrl()).isEqualTo("https://www.youtube.com/watch?v=test");
+    }
+
+    @Test
+    void findJobSummaries_ShouldContinueFilteredListingAfterCursor() {
+        KaraokeJob older = save(JobStatus.FAILED, BASE);
+        save(JobStatus.COMPLETED, BASE.plusMinutes(1));
+        KaraokeJob tied = save(JobStatus.FAILED, BASE.plusMinutes(2));
+        KaraokeJob cursor = save(JobStatus.FAILED, BASE.plusMinutes(2));
+
+        List<JobSummary> jobs = jobRepository.findJobSummaries(JobStatus.FAILED, null, null,
+                cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, 10));
+
+        assertThat(jobs).extracting(JobSummary::getId).containsExactly(tied.getId(), older.getId());
+    }
+
+    private KaraokeJob save(JobStatus status, LocalDateTime createdAt) {
+        KaraokeJob job = jobRepository.save(KaraokeJob.builder()
+                .status(status)
+                .youtubeUrl("https://www.youtube.com/watch?v=test")
+                .options("{}")
+                .build());
+        // createdAt is set on insert; backdate it for the test
+        job.setCreatedAt(createdAt);
+        return jobRepository.save(job);
+    }
+}
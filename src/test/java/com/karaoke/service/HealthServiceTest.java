@@ -25,4 +25,15 @@ class HealthServiceTest {
         assertThat(healthStatus.get("service")).isEqualTo("Karaoke Backend API");
         assertThat(healthStatus.containsKey("timestamp")).isTrue();
     }
+
+    @Test
+    void testGetCacheStats() {
+        healthService.getHealthStatus();
+        healthService.getHealthStatus();
+
+        Map<String, Map<String, Object>> stats = healthService.getCacheStats();
+
+        assertThat(stats).containsKeys("health", "jobs");
+        assertThat((Long) stats.get("health").get("hitCount")).isPositive();
+    }
 }
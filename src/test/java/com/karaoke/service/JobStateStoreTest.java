@@ -0,0 +1,69 @@
+package com.karaoke.service;
+
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.KaraokeJob;
+import com.karaoke.repository.KaraokeJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JobStateStoreTest {
+
+    @Autowired
+    private JobStateStore jobStateStore;
+
+    @Autowired
+    private KaraokeJobRepository jobRepository;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void flush_ShouldWriteOnlyTheLatestProgressPerJob() {
+        KaraokeJob leader = jobRepository.save(job(JobStatus.PROCESSING, null));
+        KaraokeJob follower = jobRepository.save(job(JobStatus.PROCESSING, leader.getId()));
+
+        jobStateStore.recordProgress(leader.getId(), 20);
+        jobStateStore.recordProgress(leader.getId(), 40);
+        jobStateStore.recordProgress(leader.getId(), 35);
+        assertThat(jobRepository.findById(leader.getId()).orElseThrow().getProgress()).isZero();
+
+        jobStateStore.flush();
+
+        assertThat(jobStateStore.getPendingCount()).isZero();
+        assertThat(jobRepository.findById(leader.getId()).orElseThrow().getProgress()).isEqualTo(40);
+        assertThat(jobRepository.findById(follower.getId()).orElseThrow().getProgress()).isEqualTo(40);
+    }
+
+    @Test
+    void flush_ShouldNotOverwriteTerminalJobs() {
+        KaraokeJob completed = jobRepository.save(job(JobStatus.COMPLETED, null));
+        completed.setProgress(100);
+        jobRepository.save(completed);
+
+        jobStateStore.recordProgress(completed.getId(), 80);
+        jobStateStore.flush();
+
+        KaraokeJob reloaded = jobRepository.findById(completed.getId()).orElseThrow();
+        assertThat(reloaded.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(reloaded.getProgress()).isEqualTo(100);
+    }
+
+    private KaraokeJob job(JobStatus status, Long parentJobId) {
+        return KaraokeJob.builder()
+                .status(status)
+                .youtubeUrl("https://www.youtube.com/watch?v=dQw4w9WgXcQ")
+                .progress(0)
+                .options("{}")
+                .parentJobId(parentJobId)
+                .build();
+    }
+}
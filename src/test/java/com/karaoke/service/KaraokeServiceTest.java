@@ -1,11 +1,26 @@
 package com.karaoke.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.NodeIdentity;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.ArtifactType;
 import com.karaoke.model.dto.GenerateKaraokeRequest;
+import com.karaoke.model.dto.JobEvent;
 import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.SeparationQuality;
+import com.karaoke.model.entity.CachedArtifact;
 import com.karaoke.model.entity.KaraokeJob;
 import com.karaoke.repository.KaraokeJobRepository;
+import com.karaoke.service.audio.AudioSeparationEngine;
 import com.karaoke.service.audio.AudioSeparationService;
+import com.karaoke.service.cache.ArtifactCacheService;
+import com.karaoke.service.cache.PipelineKeys;
+import com.karaoke.service.events.JobEventBus;
+import com.karaoke.service.lyrics.LyricAligner;
+import com.karaoke.service.lyrics.LyricsProvider;
 import com.karaoke.service.lyrics.LyricsService;
 import com.karaoke.service.video.KaraokeVideoGeneratorService;
 import com.karaoke.service.video.VideoDownloadService;
@@ -14,12 +29,27 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,12 +67,39 @@ class KaraokeServiceTest {
     @Mock
     private LyricsService lyricsService;
 
+    @Mock
+    private LyricAligner lyricAligner;
+
     @Mock
     private KaraokeVideoGeneratorService karaokeVideoGeneratorService;
 
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private ArtifactCacheService artifactCacheService;
+
+    @Mock
+    private FileStorageConfig fileStorageConfig;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PipelineExecutors pipelineExecutors;
+
+    @Mock
+    private JobStateStore jobStateStore;
+
+    @Mock
+    private JobEventBus jobEventBus;
+
+    @Mock
+    private NodeIdentity nodeIdentity;
+
+    @Spy
+    private JobStatusCache jobStatusCache = new JobStatusCache(Caffeine.newBuilder().build());
+
     @InjectMocks
     private KaraokeService karaokeService;
 
@@ -78,6 +135,226 @@ class KaraokeServiceTest {
         verify(jobRepository, times(1)).save(any(KaraokeJob.class));
     }
 
+    @Test
+    void createJob_ShouldCompleteImmediatelyOnCacheHit() throws Exception {
+        CachedArtifact artifact = CachedArtifact.builder()
+                .path("/output/cached_karaoke.mp4")
+                .build();
+        when(artifactCacheService.lookup(anyString())).thenReturn(Optional.of(artifact));
+        when(jobRepository.save(any(KaraokeJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+
+        KaraokeJob result = karaokeService.createJob(request);
+
+        assertThat(result.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(result.getProgress()).isEqualTo(100);
+        assertThat(result.getOutputVideoPath()).isEqualTo("/output/cached_karaoke.mp4");
+        assertThat(result.getPipelineKey()).isNotBlank();
+    }
+
+    @Test
+    void createJob_ShouldCoalesceOntoInFlightJobWithSamePipelineKey() throws Exception {
+        KaraokeJob leader = KaraokeJob.builder()
+                .id(7L)
+                .status(JobStatus.PROCESSING)
+                .youtubeUrl(request.getYoutubeUrl())
+                .progress(30)
+                .build();
+        when(jobRepository.findFirstByPipelineKeyAndParentJobIdIsNullAndStatusInOrderByIdAsc(anyString(), anyList()))
+                .thenReturn(Optional.of(leader));
+        when(jobRepository.save(any(KaraokeJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+
+        KaraokeJob result = karaokeService.createJob(request);
+
+        assertThat(result.getParentJobId()).isEqualTo(7L);
+        assertThat(result.getStatus()).isEqualTo(JobStatus.PROCESSING);
+        assertThat(result.getProgress()).isEqualTo(30);
+    }
+
+    @Test
+    void createJob_ShouldCoalesceConcurrentSubmissionsBeforeLeaderIsVisible() throws Exception {
+        when(jobRepository.save(any(KaraokeJob.class))).thenAnswer(invocation -> {
+            KaraokeJob saved = invocation.getArgument(0);
+            if (saved.getId() == null) {
+                saved.setId(saved.getParentJobId() == null ? 1L : 2L);
+            }
+            return saved;
+        });
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+
+        KaraokeJob first = karaokeService.createJob(request);
+        KaraokeJob second = karaokeService.createJob(request);
+
+        assertThat(first.getParentJobId()).isNull();
+        assertThat(second.getParentJobId()).isEqualTo(first.getId());
+    }
+
+    @Test
+    void processJob_ShouldRunAllStagesAndCompleteJob() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        job.setPipelineKey("render-key");
+        stubPipeline(executor);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any())).thenReturn("/output/1_karaoke.mp4");
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(job.getOutputVideoPath()).isEqualTo("/output/1_karaoke.mp4");
+        verify(artifactCacheService).register(eq("render-key"), eq(ArtifactType.RENDER), eq("/output/1_karaoke.mp4"));
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldNotCacheRenderWhenSeparationWasDegraded() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        job.setPipelineKey("render-key");
+        stubPipeline(executor);
+        AudioSeparationEngine fast = engine(SeparationQuality.FAST);
+        when(audioSeparationService.selectEngine(SeparationQuality.BALANCED, job.getYoutubeUrl())).thenReturn(fast);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any())).thenReturn("/output/1_karaoke.mp4");
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        verify(artifactCacheService).resolveStage(eq(ArtifactType.STEMS),
+                eq(PipelineKeys.stemsKey(job.getYoutubeUrl(), "fast")), any(), any());
+        verify(artifactCacheService, never()).register(eq("render-key"), any(), anyString());
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldAlignOnlineLyricsWithoutTranscribing() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        stubPipeline(executor);
+        when(videoDownloadService.locateDownload(any())).thenReturn(new VideoDownloadService.VideoDownloadResult(
+                "/tmp/karaoke/1/video.wav", "/tmp/karaoke/1", "Artist", "Song"));
+        LyricsProvider.LyricsResult online = new LyricsProvider.LyricsResult(
+                List.of(new LyricsProvider.LyricLine("la la", null, null)), false);
+        when(lyricsService.findOnlineLyrics("Artist", "Song")).thenReturn(online);
+        LyricsProvider.LyricsResult aligned = new LyricsProvider.LyricsResult(
+                List.of(new LyricsProvider.LyricLine("la la", 12.5, 14.0)), true);
+        when(lyricAligner.align(online, "/stems/vocals.wav", "1")).thenReturn(aligned);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), eq(aligned),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any())).thenReturn("/output/1_karaoke.mp4");
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        verify(lyricsService, never()).transcribe(anyString());
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldSkipLyricsForAudioOnlyOutput() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        request.setOutputMode(OutputMode.AUDIO_ONLY);
+        stubPipeline(executor);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), isNull(),
+                anyBoolean(), anyDouble(), any(), eq(OutputMode.AUDIO_ONLY), anyBoolean(), anyString(), any()))
+                .thenReturn("/output/1_karaoke.m4a");
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        verifyNoInteractions(lyricsService, lyricAligner);
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldTranscribeVocalsWhenNoOnlineLyrics() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        stubPipeline(executor);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any())).thenReturn("/output/1_karaoke.mp4");
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        verify(lyricsService).transcribe("/stems/vocals.wav");
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldFailJobWhenAStageFails() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        stubPipeline(executor);
+        when(audioSeparationService.locateStems(any())).thenThrow(new IOException("Separated audio files not found"));
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.FAILED);
+        assertThat(job.getErrorMessage()).isEqualTo("Separated audio files not found");
+        verify(karaokeVideoGeneratorService, never()).generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any());
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldLeaveJobToNewLeaseOwner() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        job.setPipelineKey("render-key");
+        stubPipeline(executor);
+        when(jobRepository.finishLeasedJob(eq(1L), eq("node-a"), any(), any(), any(), any(), any())).thenReturn(0);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any())).thenReturn("/output/1_karaoke.mp4");
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.PROCESSING);
+        verify(jobRepository, never()).updateJobState(any(), any(), any(), any(), any(), any());
+        verify(artifactCacheService, never()).register(anyString(), any(), anyString());
+        verify(jobEventBus, never()).publish(argThat(JobEvent::isTerminal));
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldNotWriteOutcomeAfterLeaseWasLost() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        stubPipeline(executor);
+        when(karaokeVideoGeneratorService.generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any())).thenAnswer(invocation -> {
+                    karaokeService.leaseLost(1L);
+                    return "/output/1_karaoke.mp4";
+                });
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.PROCESSING);
+        verify(jobRepository, never()).finishLeasedJob(any(), any(), any(), any(), any(), any(), any());
+        executor.shutdown();
+    }
+
+    @Test
+    void processJob_ShouldNotStartFurtherStagesAfterLeaseWasLost() throws Exception {
+        ThreadPoolTaskExecutor executor = stageExecutor();
+        job.setStatus(JobStatus.PROCESSING);
+        stubPipeline(executor);
+        when(videoDownloadService.locateDownload(any())).thenAnswer(invocation -> {
+            karaokeService.leaseLost(1L);
+            return new VideoDownloadService.VideoDownloadResult("/tmp/karaoke/1/video.wav", "/tmp/karaoke/1");
+        });
+
+        karaokeService.processJob(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(JobStatus.PROCESSING);
+        verify(audioSeparationService, never()).selectEngine(any(), anyString());
+        verify(lyricsService, never()).findOnlineLyrics(any(), any());
+        verify(karaokeVideoGeneratorService, never()).generateKaraokeVideo(anyString(), anyString(), any(),
+                anyBoolean(), anyDouble(), any(), any(), anyBoolean(), anyString(), any());
+        executor.shutdown();
+    }
+
     @Test
     void getJob_ShouldReturnJobWhenExists() {
         when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
@@ -98,4 +375,50 @@ class KaraokeServiceTest {
             assertThat(e.getMessage()).contains("not found");
         }
     }
+
+    @Test
+    void resolveHlsFile_ShouldRejectNamesOutsideTheStream() {
+        assertThatThrownBy(() -> karaokeService.resolveHlsFile(1L, "../1_karaoke.mp4"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> karaokeService.resolveHlsFile(1L, "segment_00001.m4s.tmp"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(jobRepository);
+    }
+
+    private AudioSeparationEngine engine(SeparationQuality quality) {
+        AudioSeparationEngine engine = mock(AudioSeparationEngine.class);
+        lenient().when(engine.getQuality()).thenReturn(quality);
+        lenient().when(engine.getId()).thenReturn(quality.name().toLowerCase());
+        return engine;
+    }
+
+    private ThreadPoolTaskExecutor stageExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.initialize();
+        return executor;
+    }
+
+    private void stubPipeline(ThreadPoolTaskExecutor executor) throws Exception {
+        when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(objectMapper.readValue("{}", GenerateKaraokeRequest.class)).thenReturn(request);
+        when(fileStorageConfig.getTempDirPath()).thenReturn("/tmp/karaoke");
+        lenient().when(nodeIdentity.getNodeId()).thenReturn("node-a");
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(jobRepository.finishLeasedJob(eq(1L), eq("node-a"), any(), any(), any(), any(), any()))
+                .thenReturn(1);
+        when(pipelineExecutors.getDownloadExecutor()).thenReturn(executor);
+        when(pipelineExecutors.getSeparationExecutor()).thenReturn(executor);
+        lenient().when(pipelineExecutors.getLyricsExecutor()).thenReturn(executor);
+        lenient().when(pipelineExecutors.getRenderExecutor()).thenReturn(executor);
+        when(artifactCacheService.resolveStage(any(), anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(2));
+        when(videoDownloadService.locateDownload(any()))
+                .thenReturn(new VideoDownloadService.VideoDownloadResult("/tmp/karaoke/1/video.wav", "/tmp/karaoke/1"));
+        AudioSeparationEngine balanced = engine(SeparationQuality.BALANCED);
+        lenient().when(audioSeparationService.selectEngine(any(), anyString())).thenReturn(balanced);
+        lenient().when(audioSeparationService.locateStems(any()))
+                .thenReturn(new AudioSeparationService.AudioSeparationResult("/stems/vocals.wav", "/stems/instrumental.wav"));
+    }
 }
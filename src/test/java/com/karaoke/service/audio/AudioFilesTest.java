@@ -0,0 +1,58 @@
+package com.karaoke.service.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class AudioFilesTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void durationSeconds_ShouldReadWavHeader() throws Exception {
+        AudioFormat format = new AudioFormat(8000f, 16, 1, true, false);
+        byte[] pcm = new byte[8000 * 2 * 3];
+        Path wav = dir.resolve("stem.wav");
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm), format, 8000 * 3)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, wav.toFile());
+        }
+
+        assertThat(AudioFiles.durationSeconds(wav)).isCloseTo(3.0, within(1e-9));
+    }
+
+    @Test
+    void durationSeconds_ShouldReadFlacStreamInfo() throws Exception {
+        // 44.1 kHz stereo 16 bit, 13230000 samples = 300 s
+        long packed = (44100L << 44) | (1L << 41) | (15L << 36) | 13_230_000L;
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 34)
+                .put("fLaC".getBytes())
+                .put(new byte[] {(byte) 0x80, 0, 0, 34}) // last block, STREAMINFO, length 34
+                .put(new byte[10])
+                .putLong(packed)
+                .put(new byte[16]);
+        Path flac = Files.write(dir.resolve("stem.flac"), header.array());
+
+        assertThat(AudioFiles.durationSeconds(flac)).isCloseTo(300.0, within(1e-9));
+    }
+
+    @Test
+    void durationSeconds_ShouldRejectUnknownFormats() throws Exception {
+        Path opus = Files.write(dir.resolve("video.opus"), "OggS not audio we can parse".getBytes());
+
+        assertThatThrownBy(() -> AudioFiles.durationSeconds(opus)).isInstanceOf(IOException.class);
+    }
+}
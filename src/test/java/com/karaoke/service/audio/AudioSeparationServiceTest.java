@@ -0,0 +1,106 @@
+package com.karaoke.service.audio;
+
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.SeparationQuality;
+import com.karaoke.service.cache.ArtifactCacheService;
+import com.karaoke.service.cache.PipelineKeys;
+import com.karaoke.service.queue.JobQueueService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AudioSeparationServiceTest {
+
+    private static final String URL = "https://youtu.be/dQw4w9WgXcQ";
+
+    private final ArtifactCacheService artifactCacheService = mock(ArtifactCacheService.class);
+    private final JobQueueService jobQueueService = mock(JobQueueService.class);
+    private final PipelineExecutors pipelineExecutors = mock(PipelineExecutors.class);
+    private final ThreadPoolTaskExecutor separationExecutor = new ThreadPoolTaskExecutor();
+    private final AudioSeparationEngine fast = engine(SeparationQuality.FAST);
+    private final AudioSeparationEngine balanced = engine(SeparationQuality.BALANCED);
+    private final AudioSeparationEngine high = engine(SeparationQuality.HIGH);
+    private AudioSeparationService service;
+
+    @BeforeEach
+    void setUp() {
+        separationExecutor.initialize();
+        when(pipelineExecutors.getSeparationExecutor()).thenReturn(separationExecutor);
+        service = new AudioSeparationService(List.of(fast, balanced, high), artifactCacheService,
+                jobQueueService, pipelineExecutors);
+        ReflectionTestUtils.setField(service, "loadSheddingEnabled", true);
+        ReflectionTestUtils.setField(service, "balancedAbove", 8);
+        ReflectionTestUtils.setField(service, "fastAbove", 20);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        separationExecutor.shutdown();
+    }
+
+    @Test
+    void selectEngine_ShouldHonourRequestedTierWhenQueueIsShallow() {
+        when(jobQueueService.getQueueDepth()).thenReturn(8L);
+
+        assertThat(service.selectEngine(SeparationQuality.HIGH, URL)).isSameAs(high);
+        assertThat(service.selectEngine(SeparationQuality.FAST, URL)).isSameAs(fast);
+    }
+
+    @Test
+    void selectEngine_ShouldDegradeToFasterTiersAsQueueDeepens() {
+        when(jobQueueService.getQueueDepth()).thenReturn(9L);
+        assertThat(service.selectEngine(SeparationQuality.HIGH, URL)).isSameAs(balanced);
+        assertThat(service.selectEngine(SeparationQuality.BALANCED, URL)).isSameAs(balanced);
+
+        when(jobQueueService.getQueueDepth()).thenReturn(21L);
+        assertThat(service.selectEngine(SeparationQuality.HIGH, URL)).isSameAs(fast);
+        assertThat(service.selectEngine(SeparationQuality.BALANCED, URL)).isSameAs(fast);
+    }
+
+    @Test
+    void selectEngine_ShouldUseCachedStemsOfRequestedTierUnderLoad() {
+        when(jobQueueService.getQueueDepth()).thenReturn(100L);
+        when(artifactCacheService.exists(PipelineKeys.stemsKey(URL, high.getId()))).thenReturn(true);
+
+        assertThat(service.selectEngine(SeparationQuality.HIGH, URL)).isSameAs(high);
+        verify(artifactCacheService, never()).lookup(anyString());
+    }
+
+    @Test
+    void selectEngine_ShouldNotDegradeWhenLoadSheddingIsDisabled() {
+        ReflectionTestUtils.setField(service, "loadSheddingEnabled", false);
+        when(jobQueueService.getQueueDepth()).thenReturn(100L);
+
+        assertThat(service.selectEngine(SeparationQuality.HIGH, URL)).isSameAs(high);
+    }
+
+    @Test
+    void init_ShouldRequireAnEnginePerTier() {
+        AudioSeparationService incomplete = new AudioSeparationService(List.of(fast, balanced), artifactCacheService,
+                jobQueueService, pipelineExecutors);
+
+        assertThatThrownBy(incomplete::init)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("No separation engine for HIGH");
+    }
+
+    private static AudioSeparationEngine engine(SeparationQuality quality) {
+        AudioSeparationEngine engine = mock(AudioSeparationEngine.class);
+        when(engine.getQuality()).thenReturn(quality);
+        when(engine.getId()).thenReturn(quality.name().toLowerCase());
+        return engine;
+    }
+}
@@ -0,0 +1,180 @@
+package com.karaoke.service.audio;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.service.process.ProcessExecutionException;
+import com.karaoke.service.process.ProcessRunner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SeparationWorkerPoolTest {
+
+    private static final SeparationSettings SETTINGS = SeparationSettings.parse("method=demucs");
+
+    // Speaks the --serve protocol; the input path picks the behaviour
+    private static final String FAKE_WORKER = """
+            echo "$*" >> "$(dirname "$0")/started.log"
+            echo '{"event":"ready","method":"fake"}'
+            while IFS= read -r line; do
+              case "$line" in
+                *ping*) echo '{"event":"pong"}' ;;
+                *shutdown*) exit 0 ;;
+                *crash*) echo 'segfault in model' >&2; exit 139 ;;
+                *hang*) echo '{"event":"progress","percent":10}'; sleep 30 ;;
+                *separate*) echo '{"event":"progress","percent":50}'; echo '{"event":"done"}' ;;
+              esac
+            done
+            """;
+
+    @TempDir
+    Path workDir;
+
+    private final ProcessRunner processRunner = new ProcessRunner();
+    private final PipelineExecutors pipelineExecutors = new PipelineExecutors();
+    private SeparationWorkerPool pool;
+    private String script;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(processRunner, "killGraceMs", 1000L);
+        pool = new SeparationWorkerPool(processRunner, new ObjectMapper(), pipelineExecutors);
+        ReflectionTestUtils.setField(pool, "pythonPath", "sh");
+        ReflectionTestUtils.setField(pool, "poolSize", 1);
+        ReflectionTestUtils.setField(pool, "startupTimeoutMs", 5000L);
+        script = Files.writeString(workDir.resolve("worker.sh"), FAKE_WORKER).toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        processRunner.shutdown();
+    }
+
+    @Test
+    void separate_ShouldReuseOneWorkerAcrossJobs() throws Exception {
+        List<Double> progress = new CopyOnWriteArrayList<>();
+
+        pool.separate(script, SETTINGS, "song1.wav", workDir.toString(), "job-1", Duration.ofSeconds(10),
+                progress::add);
+        pool.separate(script, SETTINGS, "song2.wav", workDir.toString(), "job-2", Duration.ofSeconds(10),
+                progress::add);
+
+        assertThat(pool.getStartedWorkerCount()).isEqualTo(1);
+        assertThat(pool.getIdleWorkerCount()).isEqualTo(1);
+        assertThat(progress).containsExactly(0.5, 0.5);
+    }
+
+    @Test
+    void separate_ShouldPreloadEachTiersMethodAndSwapIdleWorkerOfAnotherKind() throws Exception {
+        SeparationSettings fast = SeparationSettings.parse("method=auto,model=htdemucs");
+
+        pool.separate(script, SETTINGS, "song1.wav", workDir.toString(), "job-1", Duration.ofSeconds(10), p -> { });
+        pool.separate(script, SETTINGS, "song2.wav", workDir.toString(), "job-2", Duration.ofSeconds(10), p -> { });
+        pool.separate(script, fast, "song3.wav", workDir.toString(), "job-3", Duration.ofSeconds(10), p -> { });
+
+        assertThat(Files.readAllLines(workDir.resolve("started.log"))).containsExactly(
+                "--serve --method demucs --model htdemucs",
+                "--serve --method auto --model htdemucs");
+        // The pool holds one worker, so the idle Demucs worker made room for the new kind
+        assertThat(pool.getStartedWorkerCount()).isEqualTo(2);
+        assertThat(pool.getIdleWorkerCount()).isEqualTo(1);
+    }
+
+    @Test
+    void separate_ShouldReplaceWorkerThatCrashed() throws Exception {
+        assertThatThrownBy(() -> pool.separate(script, SETTINGS, "crash.wav", workDir.toString(), "job-1",
+                Duration.ofSeconds(10), p -> { }))
+                .isInstanceOfSatisfying(ProcessExecutionException.class, e -> {
+                    assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.FAILED);
+                    assertThat(e.getStage()).isEqualTo("Audio separation");
+                });
+        assertThat(pool.getIdleWorkerCount()).isZero();
+
+        pool.separate(script, SETTINGS, "song.wav", workDir.toString(), "job-2", Duration.ofSeconds(10), p -> { });
+
+        assertThat(pool.getStartedWorkerCount()).isEqualTo(2);
+        assertThat(pool.getIdleWorkerCount()).isEqualTo(1);
+    }
+
+    @Test
+    void separate_ShouldTimeOutAndDiscardWorker() {
+        assertThatThrownBy(() -> pool.separate(script, SETTINGS, "hang.wav", workDir.toString(), "job-1",
+                Duration.ofMillis(500), p -> { }))
+                .isInstanceOfSatisfying(ProcessExecutionException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.TIMED_OUT));
+        assertThat(pool.getIdleWorkerCount()).isZero();
+    }
+
+    @Test
+    void cancel_ShouldStopJobRunningOnWorker() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<Void> job = CompletableFuture.runAsync(() -> {
+            try {
+                pool.separate(script, SETTINGS, "hang.wav", workDir.toString(), "42", Duration.ofSeconds(30),
+                        p -> running.countDown());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(processRunner.cancel("42")).isEqualTo(1);
+
+        assertThatThrownBy(() -> job.get(10, TimeUnit.SECONDS))
+                .rootCause()
+                .isInstanceOfSatisfying(ProcessExecutionException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.CANCELLED));
+        assertThat(pool.getIdleWorkerCount()).isZero();
+    }
+
+    @Test
+    void checkIdleWorkers_ShouldKeepResponsiveWorker() throws Exception {
+        pool.separate(script, SETTINGS, "song.wav", workDir.toString(), "job-1", Duration.ofSeconds(10), p -> { });
+
+        pool.checkIdleWorkers();
+
+        assertThat(pool.getStartedWorkerCount()).isEqualTo(1);
+        assertThat(pool.getIdleWorkerCount()).isEqualTo(1);
+    }
+
+    @Test
+    void scheduleHealthCheck_ShouldDropDeadWorkerOffTheSchedulerThreadWithoutRestartingIt() throws Exception {
+        pool.separate(script, SETTINGS, "song.wav", workDir.toString(), "job-1", Duration.ofSeconds(10), p -> { });
+        assertThat(pool.getIdleWorkerCount()).isEqualTo(1);
+        killIdleWorker();
+
+        pool.scheduleHealthCheck();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getIdleWorkerCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getIdleWorkerCount()).isZero();
+        // The replacement is started by the next job, not by the health check
+        assertThat(pool.getStartedWorkerCount()).isEqualTo(1);
+    }
+
+    private void killIdleWorker() throws Exception {
+        @SuppressWarnings("unchecked")
+        BlockingQueue<SeparationWorker> idle = (BlockingQueue<SeparationWorker>) ReflectionTestUtils.getField(pool, "idle");
+        Process process = idle.peek().getProcess();
+        process.destroyForcibly();
+        process.waitFor(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,101 @@
+package com.karaoke.service.audio;
+
+import com.karaoke.service.process.ProcessRequest;
+import com.karaoke.service.process.ProcessRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Mixing two stereo stems into a WAV with {@link StemMixer} against the ffmpeg
+ * {@code volume}/{@code amix} command the audio-only render used before. Warm-up rounds let
+ * C2 compile the mixer loops first; the median of the measured rounds is reported. Needs
+ * ffmpeg on the PATH and only runs on request:
+ * <pre>
+ * mvn test -Dtest=StemMixerBenchmarkTest -Dbenchmark=true [-Dbenchmark.seconds=300] [-Dbenchmark.rounds=5]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+class StemMixerBenchmarkTest {
+
+    private static final float SAMPLE_RATE = 44100f;
+
+    @TempDir
+    Path workDir;
+
+    private final ProcessRunner processRunner = new ProcessRunner();
+
+    @AfterEach
+    void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Test
+    void compareStemMixerWithFfmpegAmix() throws Exception {
+        int seconds = Integer.getInteger("benchmark.seconds", 300);
+        int rounds = Integer.getInteger("benchmark.rounds", 5);
+        Path instrumental = writeTone(workDir.resolve("instrumental.wav"), seconds, 220);
+        Path vocals = writeTone(workDir.resolve("vocals.wav"), seconds, 440);
+        Path output = workDir.resolve("mix.wav");
+
+        for (int i = 0; i < 3; i++) {
+            StemMixer.mix(instrumental, vocals, 0.3f, output, progress -> { });
+        }
+        long[] mixer = new long[rounds];
+        long[] ffmpeg = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            StemMixer.mix(instrumental, vocals, 0.3f, output, progress -> { });
+            mixer[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            processRunner.run(ProcessRequest.builder()
+                    .arg("ffmpeg").arg("-i").arg(instrumental.toString()).arg("-i").arg(vocals.toString())
+                    .arg("-filter_complex")
+                    .arg("[0:a]anull[a0];[1:a]volume=0.30[a1];[a0][a1]amix=inputs=2:duration=first:dropout_transition=2[a]")
+                    .arg("-map").arg("[a]").arg("-c:a").arg("pcm_s16le").arg("-y").arg(output.toString())
+                    .stage("FFmpeg")
+                    .timeout(Duration.ofMinutes(10))
+                    .build());
+            ffmpeg[i] = System.nanoTime() - start;
+        }
+
+        log.info("{}s stereo mix, median of {}: StemMixer {} ms, ffmpeg amix {} ms ({}x)",
+                seconds, rounds, median(mixer) / 1_000_000, median(ffmpeg) / 1_000_000,
+                String.format("%.1f", (double) median(ffmpeg) / median(mixer)));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Path writeTone(Path path, int seconds, double frequency) throws Exception {
+        int frames = (int) (SAMPLE_RATE * seconds);
+        ByteBuffer pcm = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE) * 12000);
+            pcm.putShort(sample).putShort(sample);
+        }
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm.array()), format, frames)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+        return path;
+    }
+}
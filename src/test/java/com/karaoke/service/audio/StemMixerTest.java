@@ -0,0 +1,151 @@
+package com.karaoke.service.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class StemMixerTest {
+
+    private static final float RATE = 8000f;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mix_ShouldAddVocalsAtTheirGain() throws Exception {
+        Path instrumental = writeWav("inst.wav", 2, constant(4000, 0.25));
+        Path vocals = writeWav("vocals.wav", 2, constant(4000, 0.5));
+        Path output = dir.resolve("out.wav");
+
+        StemMixer.mix(instrumental, vocals, 0.5f, output, progress -> { });
+
+        short[] mixed = readWav(output);
+        assertThat(mixed).hasSize(4000 * 2);
+        // 0.25 + 0.5 * 0.5
+        assertThat(mixed[0] / 32767.0).isCloseTo(0.5, within(1e-3));
+        assertThat(mixed[mixed.length - 1] / 32767.0).isCloseTo(0.5, within(1e-3));
+    }
+
+    @Test
+    void mix_ShouldLimitInsteadOfClipping() throws Exception {
+        Path instrumental = writeWav("inst.wav", 1, sine(16000, 0.9));
+        Path vocals = writeWav("vocals.wav", 1, sine(16000, 0.9));
+        Path output = dir.resolve("out.wav");
+
+        StemMixer.mix(instrumental, vocals, 1.0f, output, progress -> { });
+
+        short[] mixed = readWav(output);
+        int peak = 0;
+        for (short sample : mixed) {
+            peak = Math.max(peak, Math.abs(sample));
+        }
+        assertThat(peak).isLessThan(32767).isGreaterThan(30000);
+    }
+
+    @Test
+    void mix_ShouldLastAsLongAsTheInstrumentalAndReportProgress() throws Exception {
+        Path instrumental = writeWav("inst.wav", 2, constant(6000, 0.1));
+        Path vocals = writeWav("vocals.wav", 2, constant(1000, 0.1));
+        Path output = dir.resolve("out.wav");
+        List<Double> progress = new ArrayList<>();
+
+        StemMixer.mix(instrumental, vocals, 1.0f, output, progress::add);
+
+        short[] mixed = readWav(output);
+        assertThat(mixed).hasSize(6000 * 2);
+        // Past the end of the vocals only the instrumental is left
+        assertThat(mixed[mixed.length - 1] / 32767.0).isCloseTo(0.1, within(1e-3));
+        assertThat(progress).isSorted().last().isEqualTo(1.0);
+    }
+
+    @Test
+    void mix_ShouldReadFloatWav() throws Exception {
+        Path instrumental = writeFloatWav("inst.wav", new float[] {0.1f, -0.2f, 0.3f, -0.4f});
+        Path output = dir.resolve("out.wav");
+
+        StemMixer.mix(instrumental, null, 0f, output, progress -> { });
+
+        short[] mixed = readWav(output);
+        assertThat(mixed).hasSize(4);
+        assertThat(mixed[3] / 32767.0).isCloseTo(-0.4, within(1e-3));
+    }
+
+    @Test
+    void canMix_ShouldRejectMismatchedOrNonWavStems() throws Exception {
+        Path stereo = writeWav("stereo.wav", 2, constant(100, 0.1));
+        Path mono = writeWav("mono.wav", 1, constant(100, 0.1));
+        Path flac = Files.write(dir.resolve("vocals.flac"), "fLaC".getBytes());
+
+        assertThat(StemMixer.canMix(stereo, stereo)).isTrue();
+        assertThat(StemMixer.canMix(stereo, null)).isTrue();
+        assertThat(StemMixer.canMix(stereo, mono)).isFalse();
+        assertThat(StemMixer.canMix(stereo, flac)).isFalse();
+    }
+
+    private static double[] constant(int frames, double value) {
+        double[] samples = new double[frames];
+        Arrays.fill(samples, value);
+        return samples;
+    }
+
+    private static double[] sine(int frames, double amplitude) {
+        double[] samples = new double[frames];
+        for (int i = 0; i < frames; i++) {
+            samples[i] = amplitude * Math.sin(2 * Math.PI * 440 * i / RATE);
+        }
+        return samples;
+    }
+
+    // Every channel gets the same signal
+    private Path writeWav(String name, int channels, double[] signal) throws Exception {
+        ByteBuffer pcm = ByteBuffer.allocate(signal.length * channels * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : signal) {
+            for (int c = 0; c < channels; c++) {
+                pcm.putShort((short) Math.round(value * 32767));
+            }
+        }
+        AudioFormat format = new AudioFormat(RATE, 16, channels, true, false);
+        Path path = dir.resolve(name);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm.array()), format, signal.length)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+        return path;
+    }
+
+    private Path writeFloatWav(String name, float[] samples) throws Exception {
+        ByteBuffer wav = ByteBuffer.allocate(44 + samples.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + samples.length * 4).put("WAVE".getBytes())
+                .put("fmt ".getBytes()).putInt(16).putShort((short) 3).putShort((short) 1)
+                .putInt((int) RATE).putInt((int) RATE * 4).putShort((short) 4).putShort((short) 32)
+                .put("data".getBytes()).putInt(samples.length * 4);
+        for (float sample : samples) {
+            wav.putFloat(sample);
+        }
+        return Files.write(dir.resolve(name), wav.array());
+    }
+
+    private static short[] readWav(Path path) throws Exception {
+        try (AudioInputStream stream = AudioSystem.getAudioInputStream(path.toFile())) {
+            assertThat(stream.getFormat().getSampleSizeInBits()).isEqualTo(16);
+            ByteBuffer bytes = ByteBuffer.wrap(stream.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            short[] samples = new short[bytes.remaining() / 2];
+            bytes.asShortBuffer().get(samples);
+            return samples;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.karaoke.service.cache;
+
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.NodeIdentity;
+import com.karaoke.model.dto.ArtifactType;
+import com.karaoke.model.entity.ArtifactPin;
+import com.karaoke.model.entity.CachedArtifact;
+import com.karaoke.repository.ArtifactPinRepository;
+import com.karaoke.repository.CachedArtifactRepository;
+import com.karaoke.repository.KaraokeJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArtifactCacheServiceTest {
+
+    @Mock
+    private CachedArtifactRepository artifactRepository;
+
+    @Mock
+    private FileStorageConfig fileStorageConfig;
+
+    @Mock
+    private KaraokeJobRepository jobRepository;
+
+    @Mock
+    private ArtifactPinRepository pinRepository;
+
+    @Mock
+    private NodeIdentity nodeIdentity;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private ArtifactCacheService artifactCacheService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(artifactCacheService, "enabled", true);
+        ReflectionTestUtils.setField(artifactCacheService, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(artifactCacheService, "maxEntries", 10);
+        lenient().when(nodeIdentity.getNodeId()).thenReturn("node-a");
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void lookup_ShouldDropEntryWhenFileIsMissing() {
+        CachedArtifact artifact = artifact("key", tempDir.resolve("gone.mp4"), 10, LocalDateTime.now());
+        when(artifactRepository.findByArtifactKey("key")).thenReturn(Optional.of(artifact));
+
+        assertThat(artifactCacheService.lookup("key")).isEmpty();
+        verify(artifactRepository).delete(artifact);
+    }
+
+    @Test
+    void exists_ShouldProbeWithoutTouchingTheEntry() throws Exception {
+        Path stems = Files.createDirectories(tempDir.resolve("stems"));
+        CachedArtifact artifact = artifact("key", stems, 10, LocalDateTime.now().minusHours(1));
+        LocalDateTime lastAccessedAt = artifact.getLastAccessedAt();
+        when(artifactRepository.findByArtifactKey("key")).thenReturn(Optional.of(artifact));
+        when(artifactRepository.findByArtifactKey("gone"))
+                .thenReturn(Optional.of(artifact("gone", tempDir.resolve("gone"), 10, LocalDateTime.now())));
+
+        assertThat(artifactCacheService.exists("key")).isTrue();
+        assertThat(artifactCacheService.exists("gone")).isFalse();
+        assertThat(artifact.getLastAccessedAt()).isEqualTo(lastAccessedAt);
+        verify(artifactRepository, never()).save(any());
+        verify(artifactRepository, never()).delete(any());
+    }
+
+    @Test
+    void evict_ShouldRemoveLeastRecentlyUsedUntilUnderBudget() throws Exception {
+        Path oldest = Files.write(tempDir.resolve("oldest.mp4"), new byte[700 * 1024]);
+        Path newest = Files.write(tempDir.resolve("newest.mp4"), new byte[700 * 1024]);
+        CachedArtifact oldEntry = artifact("old", oldest, 700 * 1024, LocalDateTime.now().minusHours(2));
+        CachedArtifact newEntry = artifact("new", newest, 700 * 1024, LocalDateTime.now());
+
+        when(artifactRepository.sumSizeBytes()).thenReturn(1400L * 1024);
+        when(artifactRepository.count()).thenReturn(2L);
+        when(artifactRepository.findAllByOrderByLastAccessedAtAsc()).thenReturn(List.of(oldEntry, newEntry));
+
+        artifactCacheService.evict();
+
+        assertThat(oldest).doesNotExist();
+        assertThat(newest).exists();
+        verify(artifactRepository).delete(oldEntry);
+        verify(artifactRepository, never()).delete(newEntry);
+    }
+
+    @Test
+    void evict_ShouldSkipArtifactsPinnedByRunningJobs() throws Exception {
+        Path stems = Files.createDirectories(tempDir.resolve("stems"));
+        Files.write(stems.resolve("vocals.wav"), new byte[700 * 1024]);
+        Path render = Files.write(tempDir.resolve("render.mp4"), new byte[700 * 1024]);
+        CachedArtifact stemsEntry = artifact("stems", stems, 700 * 1024, LocalDateTime.now().minusHours(2));
+        CachedArtifact renderEntry = artifact("render", render, 700 * 1024, LocalDateTime.now());
+
+        when(artifactRepository.sumSizeBytes()).thenReturn(1400L * 1024);
+        when(artifactRepository.count()).thenReturn(2L);
+        when(artifactRepository.findAllByOrderByLastAccessedAtAsc()).thenReturn(List.of(stemsEntry, renderEntry));
+
+        when(pinRepository.isPinned("stems")).thenReturn(true);
+        artifactCacheService.evict();
+
+        assertThat(stems.resolve("vocals.wav")).exists();
+        assertThat(render).doesNotExist();
+        verify(artifactRepository, never()).delete(stemsEntry);
+        verify(artifactRepository).delete(renderEntry);
+    }
+
+    @Test
+    void pin_ShouldRecordThePinForEveryNodeAndUnpinOnlyThisNodesOwn() {
+        artifactCacheService.pin("stems", 7L);
+        artifactCacheService.unpin("stems", 7L);
+
+        verify(pinRepository).save(argThat((ArtifactPin pin) -> pin.getArtifactKey().equals("stems")
+                && pin.getJobId() == 7L && pin.getNodeId().equals("node-a")));
+        verify(pinRepository).deletePin("stems", 7L, "node-a");
+    }
+
+    @Test
+    void evict_ShouldExpireOutputsOfCompletedJobs() throws Exception {
+        Path render = Files.write(tempDir.resolve("render.mp4"), new byte[1200 * 1024]);
+        CachedArtifact renderEntry = artifact("render", render, 1200 * 1024, LocalDateTime.now());
+
+        when(artifactRepository.sumSizeBytes()).thenReturn(1200L * 1024);
+        when(artifactRepository.count()).thenReturn(1L);
+        when(artifactRepository.findAllByOrderByLastAccessedAtAsc()).thenReturn(List.of(renderEntry));
+
+        artifactCacheService.evict();
+
+        assertThat(render).doesNotExist();
+        verify(jobRepository).expireOutput(eq(render.toString()), any());
+    }
+
+    @Test
+    void resolveStage_ShouldPublishOutputsOnMissAndSkipComputationOnHit() throws Exception {
+        when(fileStorageConfig.getCacheDirPath()).thenReturn(tempDir.toString());
+        when(artifactRepository.findByArtifactKey("stems")).thenReturn(Optional.empty());
+
+        Path stageDir = artifactCacheService.resolveStage(ArtifactType.STEMS, "stems", tempDir.resolve("fallback"),
+                dir -> Files.writeString(dir.resolve("vocals.wav"), "data"));
+
+        assertThat(stageDir).isEqualTo(tempDir.resolve("stems").resolve("stems"));
+        assertThat(stageDir.resolve("vocals.wav")).hasContent("data");
+        verify(artifactRepository).saveAndFlush(any(CachedArtifact.class));
+
+        CachedArtifact cached = artifact("stems", stageDir, 4, LocalDateTime.now());
+        when(artifactRepository.findByArtifactKey("stems")).thenReturn(Optional.of(cached));
+        when(artifactRepository.save(cached)).thenReturn(cached);
+
+        Path reused = artifactCacheService.resolveStage(ArtifactType.STEMS, "stems", tempDir.resolve("fallback"),
+                dir -> {
+                    throw new AssertionError("stage must not be recomputed");
+                });
+
+        assertThat(reused).isEqualTo(stageDir);
+    }
+
+    private CachedArtifact artifact(String key, Path path, long size, LocalDateTime lastAccessedAt) {
+        return CachedArtifact.builder()
+                .artifactKey(key)
+                .type(ArtifactType.RENDER)
+                .path(path.toString())
+                .sizeBytes(size)
+                .hitCount(0L)
+                .lastAccessedAt(lastAccessedAt)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.karaoke.service.cache;
+
+import com.karaoke.model.dto.GenerateKaraokeRequest;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.RenderQuality;
+import com.karaoke.model.dto.SeparationQuality;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineKeysTest {
+
+    @Test
+    void videoId_ShouldNormalizeDifferentUrlShapes() {
+        assertThat(PipelineKeys.videoId("https://www.youtube.com/watch?v=dQw4w9WgXcQ")).isEqualTo("dQw4w9WgXcQ");
+        assertThat(PipelineKeys.videoId("https://youtu.be/dQw4w9WgXcQ?t=42")).isEqualTo("dQw4w9WgXcQ");
+        assertThat(PipelineKeys.videoId("youtube.com/watch?feature=share&v=dQw4w9WgXcQ")).isEqualTo("dQw4w9WgXcQ");
+        assertThat(PipelineKeys.videoId("https://www.youtube.com/shorts/dQw4w9WgXcQ")).isEqualTo("dQw4w9WgXcQ");
+    }
+
+    @Test
+    void renderKey_ShouldMatchForEquivalentRequests() {
+        GenerateKaraokeRequest first = request("https://www.youtube.com/watch?v=dQw4w9WgXcQ", false, 0.3);
+        GenerateKaraokeRequest second = request("https://youtu.be/dQw4w9WgXcQ", false, 0.8);
+
+        // Vocals volume is irrelevant when background vocals are not mixed in
+        assertThat(PipelineKeys.renderKey(first, "m4a")).isEqualTo(PipelineKeys.renderKey(second, "m4a"));
+    }
+
+    @Test
+    void renderKey_ShouldDifferWhenRenderOptionsDiffer() {
+        GenerateKaraokeRequest quiet = request("https://youtu.be/dQw4w9WgXcQ", true, 0.3);
+        GenerateKaraokeRequest loud = request("https://youtu.be/dQw4w9WgXcQ", true, 0.8);
+        GenerateKaraokeRequest instrumental = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+
+        assertThat(PipelineKeys.renderKey(quiet, "m4a")).isNotEqualTo(PipelineKeys.renderKey(loud, "m4a"));
+        assertThat(PipelineKeys.renderKey(quiet, "m4a")).isNotEqualTo(PipelineKeys.renderKey(instrumental, "m4a"));
+
+        GenerateKaraokeRequest draft = request("https://youtu.be/dQw4w9WgXcQ", true, 0.3);
+        draft.setQuality(RenderQuality.DRAFT);
+        assertThat(PipelineKeys.renderKey(quiet, "m4a")).isNotEqualTo(PipelineKeys.renderKey(draft, "m4a"));
+    }
+
+    @Test
+    void renderKey_ShouldIgnoreQualityWhenNoVideoIsEncoded() {
+        GenerateKaraokeRequest draft = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        draft.setQuality(RenderQuality.DRAFT);
+        draft.setOutputMode(OutputMode.AUDIO_ONLY);
+        GenerateKaraokeRequest high = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        high.setQuality(RenderQuality.HIGH);
+        high.setOutputMode(OutputMode.AUDIO_ONLY);
+
+        assertThat(PipelineKeys.renderKey(draft, "m4a")).isEqualTo(PipelineKeys.renderKey(high, "m4a"));
+        assertThat(PipelineKeys.renderKey(draft, "m4a"))
+                .isNotEqualTo(PipelineKeys.renderKey(request("https://youtu.be/dQw4w9WgXcQ", false, 0.3), "m4a"));
+    }
+
+    @Test
+    void renderKey_ShouldDifferBySeparationQuality() {
+        GenerateKaraokeRequest balanced = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        GenerateKaraokeRequest high = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        high.setSeparationQuality(SeparationQuality.HIGH);
+
+        assertThat(PipelineKeys.renderKey(balanced, "m4a")).isNotEqualTo(PipelineKeys.renderKey(high, "m4a"));
+    }
+
+    @Test
+    void renderKey_ShouldDifferByAudioOnlyFormatUnlessStreamed() {
+        GenerateKaraokeRequest audio = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        audio.setOutputMode(OutputMode.AUDIO_ONLY);
+        GenerateKaraokeRequest video = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+
+        assertThat(PipelineKeys.renderKey(audio, "m4a")).isNotEqualTo(PipelineKeys.renderKey(audio, "wav"));
+        assertThat(PipelineKeys.renderKey(video, "m4a")).isEqualTo(PipelineKeys.renderKey(video, "wav"));
+
+        audio.setStreamHls(true);
+        assertThat(PipelineKeys.renderKey(audio, "m4a")).isEqualTo(PipelineKeys.renderKey(audio, "wav"));
+    }
+
+    @Test
+    void renderKey_ShouldDifferByStreamingUnlessSubtitlesAreSoft() {
+        GenerateKaraokeRequest plain = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        GenerateKaraokeRequest streamed = request("https://youtu.be/dQw4w9WgXcQ", false, 0.3);
+        streamed.setStreamHls(true);
+
+        assertThat(PipelineKeys.renderKey(plain, "wav")).isNotEqualTo(PipelineKeys.renderKey(streamed, "wav"));
+
+        plain.setOutputMode(OutputMode.SOFT_SUBTITLES);
+        streamed.setOutputMode(OutputMode.SOFT_SUBTITLES);
+        assertThat(PipelineKeys.renderKey(plain, "wav")).isEqualTo(PipelineKeys.renderKey(streamed, "wav"));
+    }
+
+    @Test
+    void stemsKey_ShouldDifferByEngine() {
+        assertThat(PipelineKeys.stemsKey("https://youtu.be/dQw4w9WgXcQ", "demucs:htdemucs:s1:o0.25"))
+                .isEqualTo(PipelineKeys.stemsKey("https://www.youtube.com/watch?v=dQw4w9WgXcQ", "demucs:htdemucs:s1:o0.25"))
+                .isNotEqualTo(PipelineKeys.stemsKey("https://youtu.be/dQw4w9WgXcQ", "demucs:htdemucs:s5:o0.50"));
+    }
+
+    private GenerateKaraokeRequest request(String url, boolean includeBackgroundVocals, double vocalsVolume) {
+        GenerateKaraokeRequest request = new GenerateKaraokeRequest();
+        request.setYoutubeUrl(url);
+        request.setIncludeBackgroundVocals(includeBackgroundVocals);
+        request.setVocalsVolume(vocalsVolume);
+        return request;
+    }
+}
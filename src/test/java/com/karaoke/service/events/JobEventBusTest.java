@@ -0,0 +1,89 @@
+package com.karaoke.service.events;
+
+import com.karaoke.model.dto.JobEvent;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.KaraokeJob;
+import com.karaoke.repository.KaraokeJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JobEventBusTest {
+
+    @Mock
+    private KaraokeJobRepository jobRepository;
+
+    private JobEventBus jobEventBus;
+
+    @BeforeEach
+    void setUp() {
+        jobEventBus = new JobEventBus(jobRepository);
+    }
+
+    @Test
+    void publish_ShouldFanOutToAllSubscribersAndCompleteOnTerminalEvent() {
+        List<JobEvent> first = new CopyOnWriteArrayList<>();
+        List<JobEvent> second = new CopyOnWriteArrayList<>();
+        jobEventBus.subscribe(1L).subscribe(first::add);
+        jobEventBus.subscribe(1L).subscribe(second::add);
+        assertThat(jobEventBus.getWatchedJobCount()).isEqualTo(1);
+
+        jobEventBus.publish(event(1L, JobStatus.PROCESSING, 30));
+        jobEventBus.publish(event(2L, JobStatus.PROCESSING, 10));
+        jobEventBus.publish(event(1L, JobStatus.COMPLETED, 100));
+        jobEventBus.publish(event(1L, JobStatus.PROCESSING, 99));
+
+        assertThat(first).extracting(JobEvent::getProgress).containsExactly(30, 100);
+        assertThat(second).extracting(JobEvent::getProgress).containsExactly(30, 100);
+        // Both subscriptions completed, so the job is no longer watched
+        assertThat(jobEventBus.getWatchedJobCount()).isZero();
+    }
+
+    @Test
+    void subscribe_ShouldReplayLatestEventToLateSubscribers() {
+        Disposable early = jobEventBus.subscribe(1L).subscribe();
+        jobEventBus.publish(event(1L, JobStatus.PROCESSING, 20));
+        jobEventBus.publish(event(1L, JobStatus.PROCESSING, 45));
+
+        List<JobEvent> late = new CopyOnWriteArrayList<>();
+        Disposable lateSubscription = jobEventBus.subscribe(1L).subscribe(late::add);
+
+        assertThat(late).extracting(JobEvent::getProgress).containsExactly(45);
+        early.dispose();
+        lateSubscription.dispose();
+        assertThat(jobEventBus.getWatchedJobCount()).isZero();
+    }
+
+    @Test
+    void refresh_ShouldPublishChangesMadeOnOtherNodes() {
+        List<JobEvent> received = new CopyOnWriteArrayList<>();
+        jobEventBus.subscribe(1L).subscribe(received::add);
+        jobEventBus.publish(event(1L, JobStatus.PROCESSING, 40));
+        KaraokeJob job = KaraokeJob.builder().id(1L).status(JobStatus.PROCESSING).progress(40).build();
+        when(jobRepository.findAllById(any())).thenReturn(List.of(job));
+
+        // Unchanged in the database: nothing new to push
+        jobEventBus.refresh();
+        job.setStatus(JobStatus.FAILED);
+        job.setErrorMessage("FFmpeg failed with exit code: 1");
+        jobEventBus.refresh();
+
+        assertThat(received).extracting(JobEvent::getStatus).containsExactly(JobStatus.PROCESSING, JobStatus.FAILED);
+        assertThat(received.get(1).getErrorMessage()).isEqualTo("FFmpeg failed with exit code: 1");
+    }
+
+    private JobEvent event(Long jobId, JobStatus status, int progress) {
+        return JobEvent.builder().jobId(jobId).status(status).progress(progress).build();
+    }
+}
@@ -0,0 +1,170 @@
+package com.karaoke.service.lyrics;
+
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.service.process.ProcessRunner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LyricAlignerTest {
+
+    private static final float SAMPLE_RATE = 8000f;
+
+    @TempDir
+    Path dir;
+
+    private final ProcessRunner processRunner = new ProcessRunner();
+    private final FileStorageConfig fileStorageConfig = mock(FileStorageConfig.class);
+    private final LyricAligner aligner = new LyricAligner(processRunner, fileStorageConfig);
+
+    @AfterEach
+    void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Test
+    void align_ShouldTimeLinesToSungPhrasesInVocalsStem() throws Exception {
+        Path vocals = writeVocals(10, new double[][]{{1.0, 3.0}, {4.0, 6.0}, {8.0, 9.0}});
+        LyricsProvider.LyricsResult lyrics = untimed("first line", "second line", "third line");
+
+        LyricsProvider.LyricsResult aligned = aligner.align(lyrics, vocals.toString(), "1");
+
+        assertThat(aligned.hasTimestamps()).isTrue();
+        List<LyricsProvider.LyricLine> lines = aligned.getLines();
+        assertThat(lines).extracting(LyricsProvider.LyricLine::getText)
+                .containsExactly("first line", "second line", "third line");
+        assertThat(lines.get(0).getStartTime()).isCloseTo(1.0, within(0.05));
+        assertThat(lines.get(0).getEndTime()).isCloseTo(3.0, within(0.05));
+        assertThat(lines.get(1).getStartTime()).isCloseTo(4.0, within(0.05));
+        assertThat(lines.get(2).getStartTime()).isCloseTo(8.0, within(0.05));
+        assertThat(lines.get(2).getEndTime()).isCloseTo(9.0, within(0.05));
+        assertThat(lines.get(0).getWords()).extracting(LyricsProvider.LyricWord::getText)
+                .containsExactly("first", "line");
+        assertThat(lines.get(0).getWords().get(0).getStartTime()).isEqualTo(lines.get(0).getStartTime());
+        assertThat(lines.get(0).getWords().get(1).getEndTime()).isEqualTo(lines.get(0).getEndTime());
+    }
+
+    @Test
+    void align_ShouldBridgeBreathsAndMergeClosestPhrases() {
+        // 20 ms hops: phrases at 0.2-1.0 s, 1.1-2.0 s (a breath apart), 2.6-3.0 s and 4.0-5.0 s
+        float[] envelope = envelope(300, new int[][]{{10, 50}, {55, 100}, {130, 150}, {200, 250}});
+
+        List<LyricsProvider.LyricLine> lines = aligner.align(untimed("one", "two").getLines(), envelope);
+
+        assertThat(lines.get(0).getStartTime()).isCloseTo(0.2, within(1e-9));
+        assertThat(lines.get(0).getEndTime()).isCloseTo(3.0, within(1e-9));
+        assertThat(lines.get(1).getStartTime()).isCloseTo(4.0, within(1e-9));
+        assertThat(lines.get(1).getEndTime()).isCloseTo(5.0, within(1e-9));
+    }
+
+    @Test
+    void align_ShouldSplitLongPhraseAtItsQuietestPoint() {
+        float[] envelope = envelope(300, new int[][]{{50, 250}});
+        envelope[170] = 0.05f; // a dip that does not reach the gate
+
+        List<LyricsProvider.LyricLine> lines = aligner.align(untimed("one", "two").getLines(), envelope);
+
+        assertThat(lines.get(0).getStartTime()).isCloseTo(1.0, within(1e-9));
+        assertThat(lines.get(0).getEndTime()).isCloseTo(3.4, within(1e-9));
+        assertThat(lines.get(1).getStartTime()).isCloseTo(3.4, within(1e-9));
+        assertThat(lines.get(1).getEndTime()).isCloseTo(5.0, within(1e-9));
+    }
+
+    @Test
+    void align_ShouldLeaveLyricsUntimedWhenStemIsSilent() throws Exception {
+        Path vocals = writeVocals(5, new double[0][]);
+        LyricsProvider.LyricsResult lyrics = untimed("first line");
+
+        assertThat(aligner.align(lyrics, vocals.toString(), "1")).isSameAs(lyrics);
+    }
+
+    @Test
+    void align_ShouldKeepLyricsThatAlreadyHaveTimes() throws Exception {
+        LyricsProvider.LyricsResult synced = new LyricsProvider.LyricsResult(
+                List.of(new LyricsProvider.LyricLine("line", 1.0, 2.0)), true);
+
+        assertThat(aligner.align(synced, dir.resolve("missing.wav").toString(), "1")).isSameAs(synced);
+    }
+
+    @Test
+    void align_ShouldDecodeCompressedStemInsideTheJobsTempDir() throws Exception {
+        Path wav = writeVocals(10, new double[][]{{1.0, 3.0}, {4.0, 6.0}});
+        Path flac = Files.write(dir.resolve("vocals.flac"), "fLaC".getBytes());
+        // Stands in for ffmpeg: records the output path and writes the WAV there
+        Path ffmpeg = Files.writeString(dir.resolve("ffmpeg.sh"), """
+                #!/bin/sh
+                for last; do :; done
+                echo "$last" > "$(dirname "$0")/decoded-to.txt"
+                cp "$(dirname "$0")/vocals.wav" "$last"
+                """);
+        Files.setPosixFilePermissions(ffmpeg, PosixFilePermissions.fromString("rwx------"));
+        ReflectionTestUtils.setField(aligner, "ffmpegPath", ffmpeg.toString());
+        when(fileStorageConfig.getTempDirPath()).thenReturn(dir.resolve("temp").toString());
+
+        LyricsProvider.LyricsResult aligned = aligner.align(untimed("one", "two"), flac.toString(), "7");
+
+        assertThat(aligned.hasTimestamps()).isTrue();
+        Path decoded = Path.of(Files.readString(dir.resolve("decoded-to.txt")).trim());
+        assertThat(decoded.getParent()).isEqualTo(dir.resolve("temp").resolve("7"));
+        assertThat(decoded).doesNotExist();
+        assertThat(wav).exists();
+    }
+
+    private static LyricsProvider.LyricsResult untimed(String... texts) {
+        return new LyricsProvider.LyricsResult(Arrays.stream(texts)
+                .map(text -> new LyricsProvider.LyricLine(text, null, null))
+                .toList(), false);
+    }
+
+    private static float[] envelope(int hops, int[][] phrases) {
+        float[] envelope = new float[hops];
+        Arrays.fill(envelope, 0.001f);
+        for (int[] phrase : phrases) {
+            Arrays.fill(envelope, phrase[0], phrase[1], 0.3f);
+        }
+        return envelope;
+    }
+
+    // Mono 16-bit stem: a 220 Hz tone during the sung spans, faint noise elsewhere like separation bleed
+    private Path writeVocals(int seconds, double[][] sung) throws Exception {
+        int frames = (int) (SAMPLE_RATE * seconds);
+        ByteBuffer pcm = ByteBuffer.allocate(frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(1);
+        for (int i = 0; i < frames; i++) {
+            double t = i / SAMPLE_RATE;
+            double sample = random.nextGaussian() * 20;
+            for (double[] span : sung) {
+                if (t >= span[0] && t < span[1]) {
+                    sample += Math.sin(2 * Math.PI * 220 * t) * 10000;
+                }
+            }
+            pcm.putShort((short) sample);
+        }
+        Path path = dir.resolve("vocals.wav");
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm.array()), format, frames)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+        return path;
+    }
+}
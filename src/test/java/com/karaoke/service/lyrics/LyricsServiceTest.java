@@ -0,0 +1,182 @@
+package com.karaoke.service.lyrics;
+
+import com.karaoke.config.PipelineExecutors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class LyricsServiceTest {
+
+    private static final String SYNCED = """
+            {"duration": 30.0, "plainLyrics": "first\\nsecond",
+             "syncedLyrics": "[ar:Artist]\\n[00:12.50] first\\n[00:15.00][00:25.00] second\\n[00:20.00] "}
+            """;
+    private static final String PLAIN = """
+            {"lyrics": "first\\r\\n\\nsecond \\"quoted\\"\\n"}
+            """;
+
+    private final ExecutorService stubThreads = Executors.newCachedThreadPool();
+    private final PipelineExecutors pipelineExecutors = new PipelineExecutors();
+    private HttpServer lrcLib;
+    private HttpServer lyricsOvh;
+    private LyricsService lyricsService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pipelineExecutors.init();
+        lrcLib = stubServer();
+        lyricsOvh = stubServer();
+        List<LyricsProvider> providers = List.of(
+                new LrcLibLyricsProvider(WebClient.builder(), baseUrl(lrcLib)),
+                new LyricsOvhProvider(WebClient.builder(), baseUrl(lyricsOvh)));
+        lyricsService = new LyricsService(providers, mock(SpeechToTextService.class), pipelineExecutors);
+        ReflectionTestUtils.setField(lyricsService, "providerTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(lyricsService, "hedgeMs", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lrcLib.stop(0);
+        lyricsOvh.stop(0);
+        stubThreads.shutdownNow();
+        pipelineExecutors.shutdown();
+    }
+
+    @Test
+    void findOnlineLyrics_ShouldWaitBrieflyForSyncedLyricsFromBetterRankedSource() throws Exception {
+        respond(lrcLib, "/api/get", 200, SYNCED, 300);
+        respond(lyricsOvh, "/v1/", 200, PLAIN, 0);
+
+        LyricsProvider.LyricsResult result = lyricsService.findOnlineLyrics("Artist", "Song");
+
+        assertThat(result.hasTimestamps()).isTrue();
+        assertThat(result.getLines()).extracting(LyricsProvider.LyricLine::getText)
+                .containsExactly("first", "second", "second");
+        assertThat(result.getLines()).extracting(LyricsProvider.LyricLine::getStartTime)
+                .containsExactly(12.5, 15.0, 25.0);
+        // The empty line at 20 s is an instrumental break that ends the line before it
+        assertThat(result.getLines()).extracting(LyricsProvider.LyricLine::getEndTime)
+                .containsExactly(15.0, 20.0, 30.0);
+    }
+
+    @Test
+    void findOnlineLyrics_ShouldTakeFirstResultAndCancelSourceSlowerThanTheHedge() throws Exception {
+        respond(lrcLib, "/api/get", 200, SYNCED, 3000);
+        respond(lyricsOvh, "/v1/", 200, PLAIN, 0);
+        ReflectionTestUtils.setField(lyricsService, "hedgeMs", 200L);
+        ReflectionTestUtils.setField(lyricsService, "providerTimeoutMs", 5000L);
+
+        LyricsProvider.LyricsResult result = lyricsService.findOnlineLyrics("Artist", "Song");
+
+        assertThat(result.hasTimestamps()).isFalse();
+        assertThat(result.getLines()).extracting(LyricsProvider.LyricLine::getText)
+                .containsExactly("first", "second \"quoted\"");
+        // Cancelling interrupts the blocked request, so the provider thread is freed long before LRCLIB answers
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (pipelineExecutors.getLyricsProviderExecutor().getActiveCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pipelineExecutors.getLyricsProviderExecutor().getActiveCount()).isZero();
+    }
+
+    @Test
+    void findOnlineLyrics_ShouldFallBackToNextSourceWhenOneFails() throws Exception {
+        respond(lrcLib, "/api/get", 500, "{}", 0);
+        AtomicReference<String> requested = new AtomicReference<>();
+        lyricsOvh.createContext("/v1/", exchange -> {
+            requested.set(exchange.getRequestURI().getRawPath());
+            send(exchange, 200, PLAIN);
+        });
+
+        LyricsProvider.LyricsResult result = lyricsService.findOnlineLyrics("AC/DC", "Back In Black");
+
+        assertThat(result.getLines()).hasSize(2);
+        assertThat(requested.get()).isEqualTo("/v1/AC%2FDC/Back%20In%20Black");
+    }
+
+    @Test
+    void findOnlineLyrics_ShouldGiveUpOnSourcesThatMissTheTimeout() throws Exception {
+        respond(lrcLib, "/api/get", 404, "{}", 0);
+        respond(lyricsOvh, "/v1/", 200, PLAIN, 3000);
+        ReflectionTestUtils.setField(lyricsService, "providerTimeoutMs", 300L);
+
+        long start = System.nanoTime();
+        assertThat(lyricsService.findOnlineLyrics("Artist", "Song")).isNull();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+    }
+
+    @Test
+    void findOnlineLyrics_ShouldDropAHangingSourceAtItsOwnTimeout() throws Exception {
+        respond(lrcLib, "/api/get", 200, SYNCED, 3000);
+        respond(lyricsOvh, "/v1/", 200, PLAIN, 0);
+        ReflectionTestUtils.setField(lyricsService, "providerTimeoutMs", 300L);
+        ReflectionTestUtils.setField(lyricsService, "hedgeMs", 5000L);
+
+        long start = System.nanoTime();
+        LyricsProvider.LyricsResult result = lyricsService.findOnlineLyrics("Artist", "Song");
+
+        // Without its own timeout LRCLIB could still beat the untimed answer, so the hedge would run out
+        assertThat(result.hasTimestamps()).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+    }
+
+    @Test
+    void findOnlineLyrics_ShouldStopAtTheTotalTimeoutWhateverEachSourceMayTake() throws Exception {
+        respond(lrcLib, "/api/get", 200, SYNCED, 3000);
+        respond(lyricsOvh, "/v1/", 200, PLAIN, 3000);
+        ReflectionTestUtils.setField(lyricsService, "providerTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(lyricsService, "totalTimeoutMs", 300L);
+
+        long start = System.nanoTime();
+        assertThat(lyricsService.findOnlineLyrics("Artist", "Song")).isNull();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+    }
+
+    private HttpServer stubServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(stubThreads);
+        server.start();
+        return server;
+    }
+
+    private static String baseUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static void respond(HttpServer server, String path, int status, String body, long delayMs) {
+        server.createContext(path, exchange -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, status, body);
+        });
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
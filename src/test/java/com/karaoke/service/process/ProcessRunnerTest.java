@@ -0,0 +1,120 @@
+package com.karaoke.service.process;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProcessRunnerTest {
+
+    private ProcessRunner processRunner;
+
+    @BeforeEach
+    void setUp() {
+        processRunner = new ProcessRunner();
+        ReflectionTestUtils.setField(processRunner, "outputTailLines", 5);
+        ReflectionTestUtils.setField(processRunner, "killGraceMs", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Test
+    void run_ShouldDrainChattyOutputIntoBoundedTail() throws Exception {
+        List<String> seen = new ArrayList<>();
+
+        // Far more output than a pipe buffer holds; without draining the child would block forever
+        ProcessResult result = processRunner.run(sh("i=0; while [ $i -lt 20000 ]; do echo line $i; i=$((i+1)); done")
+                .timeout(Duration.ofSeconds(30))
+                .lineListener(seen::add)
+                .build());
+
+        assertThat(result.getExitCode()).isZero();
+        assertThat(result.getOutputTail()).containsExactly("line 19995", "line 19996", "line 19997", "line 19998", "line 19999");
+        assertThat(seen).hasSize(20000);
+    }
+
+    @Test
+    void run_ShouldReportExitCodeAndOutputTailOnFailure() {
+        assertThatThrownBy(() -> processRunner.run(sh("echo starting; echo 'bad input' >&2; exit 3")
+                .stage("tool")
+                .build()))
+                .isInstanceOfSatisfying(ProcessExecutionException.class, e -> {
+                    assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.FAILED);
+                    assertThat(e.getExitCode()).isEqualTo(3);
+                    assertThat(e.getOutputTail()).containsExactly("starting", "bad input");
+                    assertThat(e.getMessage()).isEqualTo("tool failed with exit code: 3 (bad input)");
+                });
+    }
+
+    @Test
+    void run_ShouldKillProcessTreeOnTimeout() {
+        long started = System.nanoTime();
+
+        assertThatThrownBy(() -> processRunner.run(sh("sleep 30 & sleep 30; wait")
+                .stage("sleeper")
+                .timeout(Duration.ofMillis(300))
+                .build()))
+                .isInstanceOfSatisfying(ProcessExecutionException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.TIMED_OUT));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+        assertThat(ProcessHandle.current().descendants().filter(ProcessHandle::isAlive)).isEmpty();
+    }
+
+    @Test
+    void cancel_ShouldStopAllProcessesOfTheJob() throws Exception {
+        CompletableFuture<ProcessResult> run = CompletableFuture.supplyAsync(() -> {
+            try {
+                return processRunner.run(sh("sleep 30").jobId("42").build());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (processRunner.getRunningProcessCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(processRunner.cancel("42")).isEqualTo(1);
+
+        assertThatThrownBy(() -> run.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RuntimeException.class)
+                .rootCause()
+                .isInstanceOfSatisfying(ProcessExecutionException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.CANCELLED));
+        assertThat(processRunner.getRunningProcessCount()).isZero();
+    }
+
+    @Test
+    void cancel_ShouldStopProcessesAndHooksRegisteredAfterItUntilReset() throws Exception {
+        processRunner.cancel("42");
+        List<String> hooksRun = new ArrayList<>();
+        processRunner.onCancel("42", () -> hooksRun.add("worker"));
+        long started = System.nanoTime();
+
+        assertThatThrownBy(() -> processRunner.run(sh("sleep 30").jobId("42").build()))
+                .isInstanceOfSatisfying(ProcessExecutionException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(ProcessExecutionException.Reason.CANCELLED));
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+        assertThat(hooksRun).containsExactly("worker");
+
+        processRunner.resetCancellation("42");
+        assertThat(processRunner.run(sh("exit 0").jobId("42").build()).getExitCode()).isZero();
+    }
+
+    private ProcessRequest.ProcessRequestBuilder sh(String script) {
+        return ProcessRequest.builder().arg("sh").arg("-c").arg(script);
+    }
+}
@@ -0,0 +1,61 @@
+package com.karaoke.service.process;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ProgressParsersTest {
+
+    @Test
+    void ytDlp_ShouldParseDownloadPercentages() {
+        ProgressParser parser = ProgressParsers.ytDlp();
+
+        assertThat(parser.parse("[download]  42.3% of 3.50MiB at 1.20MiB/s ETA 00:02")).isCloseTo(0.423, within(1e-9));
+        assertThat(parser.parse("[download] 100% of 3.50MiB in 00:03")).isEqualTo(1.0);
+        assertThat(parser.parse("[youtube] dQw4w9WgXcQ: Downloading webpage")).isNull();
+    }
+
+    @Test
+    void separation_ShouldParseMilestonesAndModelProgressBars() {
+        ProgressParser parser = ProgressParsers.separation();
+
+        assertThat(parser.parse("PROGRESS 40")).isEqualTo(0.4);
+        assertThat(parser.parse(" 63%|██████▎   | 146.25/234.0 [00:31<00:18,  4.71seconds/s]")).isEqualTo(0.63);
+        assertThat(parser.parse("Audio separated successfully using Demucs")).isNull();
+    }
+
+    @Test
+    void ffmpeg_ShouldMeasureOutTimeAgainstKnownDuration() {
+        ProgressParser parser = ProgressParsers.ffmpeg(200.0);
+
+        assertThat(parser.parse("out_time_us=50000000")).isEqualTo(0.25);
+        assertThat(parser.parse("out_time_ms=100000000")).isEqualTo(0.5);
+        assertThat(parser.parse("out_time_us=N/A")).isNull();
+        assertThat(parser.parse("progress=end")).isEqualTo(1.0);
+    }
+
+    @Test
+    void ffmpeg_ShouldLearnDurationFromInputBannerWhenUnknown() {
+        ProgressParser parser = ProgressParsers.ffmpeg(0);
+
+        assertThat(parser.parse("out_time_us=1000000")).isNull();
+        parser.parse("  Duration: N/A, start: 0.000000, bitrate: N/A");
+        parser.parse("  Duration: 00:01:40.00, bitrate: 1411 kb/s");
+
+        assertThat(parser.parse("out_time_us=25000000")).isEqualTo(0.25);
+    }
+
+    @Test
+    void reportingTo_ShouldClampAndSkipLinesWithoutProgress() {
+        List<Double> reported = new ArrayList<>();
+
+        ProgressParsers.ffmpeg(10.0).reportingTo(reported::add).accept("out_time_us=12000000");
+        ProgressParsers.ffmpeg(10.0).reportingTo(reported::add).accept("frame=120");
+
+        assertThat(reported).containsExactly(1.0);
+    }
+}
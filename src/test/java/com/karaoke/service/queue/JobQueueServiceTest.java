@@ -0,0 +1,115 @@
+package com.karaoke.service.queue;
+
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.KaraokeJob;
+import com.karaoke.repository.KaraokeJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JobQueueServiceTest {
+
+    @Autowired
+    private JobQueueService jobQueueService;
+
+    @Autowired
+    private KaraokeJobRepository jobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void claimJobs_ShouldLeasePendingJobsExactlyOnce() {
+        KaraokeJob first = jobRepository.save(job(JobStatus.PENDING, null));
+        KaraokeJob second = jobRepository.save(job(JobStatus.PENDING, null));
+
+        List<Long> claimed = jobQueueService.claimJobs(5);
+
+        assertThat(claimed).containsExactly(first.getId(), second.getId());
+        assertThat(jobQueueService.claimJobs(5)).isEmpty();
+
+        KaraokeJob leased = jobRepository.findById(first.getId()).orElseThrow();
+        assertThat(leased.getStatus()).isEqualTo(JobStatus.PROCESSING);
+        assertThat(leased.getLeaseOwner()).isEqualTo(jobQueueService.getNodeId());
+        assertThat(leased.getLeaseExpiresAt()).isAfter(LocalDateTime.now());
+        assertThat(leased.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void claimJobs_ShouldMoveCoalescedJobsWithTheirLeader() {
+        KaraokeJob leader = jobRepository.save(job(JobStatus.PENDING, null));
+        KaraokeJob follower = jobRepository.save(job(JobStatus.PENDING, leader.getId()));
+
+        assertThat(jobQueueService.claimJobs(5)).containsExactly(leader.getId());
+
+        assertThat(jobRepository.findById(follower.getId()).orElseThrow().getStatus())
+                .isEqualTo(JobStatus.PROCESSING);
+    }
+
+    @Test
+    void requeueExpiredJobs_ShouldRecoverLapsedLeasesButKeepLiveOnes() {
+        KaraokeJob lapsed = job(JobStatus.PROCESSING, null);
+        lapsed.setLeaseOwner("dead-node");
+        lapsed.setLeaseExpiresAt(LocalDateTime.now().minusMinutes(5));
+        lapsed.setAttempts(1);
+        lapsed = jobRepository.save(lapsed);
+
+        KaraokeJob live = jobRepository.save(job(JobStatus.PENDING, null));
+        jobQueueService.claimJobs(1);
+
+        assertThat(jobQueueService.requeueExpiredJobs()).isEqualTo(1);
+        assertThat(jobRepository.findById(lapsed.getId()).orElseThrow().getStatus()).isEqualTo(JobStatus.PENDING);
+        assertThat(jobRepository.findById(live.getId()).orElseThrow().getStatus()).isEqualTo(JobStatus.PROCESSING);
+        assertThat(jobQueueService.heartbeat(List.of(live.getId()))).containsExactly(live.getId());
+    }
+
+    @Test
+    void requeueExpiredJobs_ShouldFailJobsThatExhaustedTheirAttempts() {
+        KaraokeJob exhausted = job(JobStatus.PROCESSING, null);
+        exhausted.setLeaseOwner("dead-node");
+        exhausted.setLeaseExpiresAt(LocalDateTime.now().minusMinutes(5));
+        exhausted.setAttempts(3);
+        exhausted = jobRepository.save(exhausted);
+
+        jobQueueService.requeueExpiredJobs();
+
+        KaraokeJob failed = jobRepository.findById(exhausted.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(JobStatus.FAILED);
+        assertThat(failed.getErrorMessage()).contains("3 attempts");
+    }
+
+    @Test
+    void heartbeat_ShouldReportLeasesTakenOverByAnotherNode() {
+        KaraokeJob job = jobRepository.save(job(JobStatus.PENDING, null));
+        jobQueueService.claimJobs(1);
+        transactionTemplate.executeWithoutResult(tx -> jobRepository.findById(job.getId())
+                .ifPresent(stolen -> stolen.setLeaseOwner("other-node")));
+
+        assertThat(jobQueueService.heartbeat(List.of(job.getId()))).isEmpty();
+    }
+
+    private KaraokeJob job(JobStatus status, Long parentJobId) {
+        return KaraokeJob.builder()
+                .status(status)
+                .youtubeUrl("https://www.youtube.com/watch?v=dQw4w9WgXcQ")
+                .progress(0)
+                .options("{}")
+                .parentJobId(parentJobId)
+                .build();
+    }
+}
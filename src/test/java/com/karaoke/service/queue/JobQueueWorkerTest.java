@@ -0,0 +1,143 @@
+package com.karaoke.service.queue;
+
+import com.karaoke.config.NodeIdentity;
+import com.karaoke.model.dto.JobStatus;
+import com.karaoke.model.entity.KaraokeJob;
+import com.karaoke.repository.KaraokeJobRepository;
+import com.karaoke.service.KaraokeService;
+import com.karaoke.service.process.ProcessRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs several independently identified workers against the shared H2 queue, the way
+ * separate worker nodes would run against PostgreSQL.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class JobQueueWorkerTest {
+
+    private static final int JOB_COUNT = 24;
+    private static final long WORK_MILLIS = 100;
+
+    @Autowired
+    private KaraokeJobRepository jobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, String> processedBy = new ConcurrentHashMap<>();
+    private final AtomicInteger duplicateRuns = new AtomicInteger();
+    // Jobs started by a node that did not hold their lease, or beyond the node's one slot
+    private final AtomicInteger leaseViolations = new AtomicInteger();
+    private final Map<String, AtomicInteger> runningByNode = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void workers_ShouldProcessEveryJobOnceSpreadOverAllNodesWithoutOverlappingLeases() throws Exception {
+        enqueueJobs();
+
+        runWorkers(4);
+
+        assertThat(duplicateRuns).hasValue(0);
+        assertThat(processedBy).hasSize(JOB_COUNT);
+        assertThat(leaseViolations).hasValue(0);
+        assertThat(processedBy.values()).as("every node claims work")
+                .contains("node-0", "node-1", "node-2", "node-3");
+        assertThat(jobRepository.findByStatus(JobStatus.COMPLETED)).hasSize(JOB_COUNT);
+    }
+
+    private void runWorkers(int nodeCount) throws Exception {
+        List<JobQueueWorker> workers = new ArrayList<>();
+        List<ExecutorService> executors = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            String nodeId = "node-" + i;
+            JobQueueService queueService = new JobQueueService(jobRepository, new NodeIdentity(nodeId), transactionTemplate);
+            ReflectionTestUtils.setField(queueService, "leaseDurationMs", 60000L);
+            ReflectionTestUtils.setField(queueService, "maxAttempts", 3);
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            JobQueueWorker worker = new JobQueueWorker(queueService, simulatedPipeline(nodeId, executor), new ProcessRunner());
+            ReflectionTestUtils.setField(worker, "maxConcurrentJobs", 1);
+            workers.add(worker);
+            executors.add(executor);
+        }
+
+        ExecutorService pollers = Executors.newFixedThreadPool(nodeCount);
+        for (JobQueueWorker worker : workers) {
+            pollers.submit(() -> {
+                while (processedBy.size() < JOB_COUNT || worker.getRunningJobCount() > 0) {
+                    worker.poll();
+                    Thread.sleep(5);
+                }
+                return null;
+            });
+        }
+        pollers.shutdown();
+        assertThat(pollers.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        executors.forEach(ExecutorService::shutdown);
+    }
+
+    private KaraokeService simulatedPipeline(String nodeId, ExecutorService executor) {
+        KaraokeService pipeline = mock(KaraokeService.class);
+        doAnswer(invocation -> {
+            Long jobId = invocation.getArgument(0);
+            if (processedBy.putIfAbsent(jobId, nodeId) != null) {
+                duplicateRuns.incrementAndGet();
+            }
+            AtomicInteger running = runningByNode.computeIfAbsent(nodeId, id -> new AtomicInteger());
+            if (running.incrementAndGet() > 1
+                    || !nodeId.equals(jobRepository.findById(jobId).orElseThrow().getLeaseOwner())) {
+                leaseViolations.incrementAndGet();
+            }
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(WORK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                transactionTemplate.executeWithoutResult(tx -> jobRepository.updateJobState(
+                        jobId, JobStatus.COMPLETED, 100, "/output/" + jobId + ".mp4", null, LocalDateTime.now()));
+                running.decrementAndGet();
+            }, executor);
+        }).when(pipeline).processJob(anyLong());
+        return pipeline;
+    }
+
+    private void enqueueJobs() {
+        for (int i = 0; i < JOB_COUNT; i++) {
+            jobRepository.save(KaraokeJob.builder()
+                    .status(JobStatus.PENDING)
+                    .youtubeUrl("https://www.youtube.com/watch?v=video" + i)
+                    .progress(0)
+                    .options("{}")
+                    .build());
+        }
+    }
+}
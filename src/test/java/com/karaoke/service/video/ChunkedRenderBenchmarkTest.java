@@ -0,0 +1,121 @@
+package com.karaoke.service.video;
+
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.RenderQuality;
+import com.karaoke.service.lyrics.LyricsProvider;
+import com.karaoke.service.process.ProcessRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Wall time of a real single-pass render against a chunked render of the same synthetic song.
+ * Needs ffmpeg on the PATH and only runs on request:
+ * <pre>
+ * mvn test -Dtest=ChunkedRenderBenchmarkTest -Dbenchmark=true [-Dbenchmark.seconds=600] [-Dbenchmark.quality=HIGH]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+class ChunkedRenderBenchmarkTest {
+
+    private static final float SAMPLE_RATE = 44100f;
+
+    @TempDir
+    Path workDir;
+
+    private final ProcessRunner processRunner = new ProcessRunner();
+    private final PipelineExecutors pipelineExecutors = new PipelineExecutors();
+    private KaraokeVideoGeneratorService generator;
+    private int durationSeconds;
+    private RenderQuality quality;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        durationSeconds = Integer.getInteger("benchmark.seconds", 300);
+        quality = RenderQuality.valueOf(System.getProperty("benchmark.quality", "STANDARD"));
+
+        FileStorageConfig storage = new FileStorageConfig();
+        ReflectionTestUtils.setField(storage, "tempDir", Files.createDirectories(workDir.resolve("temp")).toString());
+        ReflectionTestUtils.setField(storage, "outputDir", Files.createDirectories(workDir.resolve("output")).toString());
+        pipelineExecutors.init();
+
+        generator = new KaraokeVideoGeneratorService(storage, processRunner, pipelineExecutors);
+        ReflectionTestUtils.setField(generator, "ffmpegPath", "ffmpeg");
+        ReflectionTestUtils.setField(generator, "backgroundColor", "black");
+        ReflectionTestUtils.setField(generator, "timeoutMs", 3_600_000L);
+        ReflectionTestUtils.setField(generator, "chunkedMinDurationSeconds", 0.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipelineExecutors.shutdown();
+        processRunner.shutdown();
+    }
+
+    @Test
+    void compareSinglePassWithChunkedRender() throws Exception {
+        Path instrumental = writeTone(workDir.resolve("instrumental.wav"), durationSeconds);
+        LyricsProvider.LyricsResult lyrics = lyrics(durationSeconds);
+
+        ReflectionTestUtils.setField(generator, "chunkedEnabled", false);
+        long singlePassMs = timeRender("single", instrumental, lyrics);
+
+        ReflectionTestUtils.setField(generator, "chunkedEnabled", true);
+        long chunkedMs = timeRender("chunked", instrumental, lyrics);
+
+        log.info("{}s {} render on {} cores: single-pass {} ms, chunked {} ms ({}x)",
+                durationSeconds, quality, Runtime.getRuntime().availableProcessors(),
+                singlePassMs, chunkedMs, String.format("%.2f", (double) singlePassMs / chunkedMs));
+    }
+
+    private long timeRender(String jobId, Path instrumental, LyricsProvider.LyricsResult lyrics) throws Exception {
+        long start = System.nanoTime();
+        String output = generator.generateKaraokeVideo(instrumental.toString(), null, lyrics, false, 0,
+                quality, OutputMode.BURNED, false, jobId, progress -> { });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertThat(Path.of(output)).isNotEmptyFile();
+        return elapsedMs;
+    }
+
+    private static Path writeTone(Path path, int seconds) throws Exception {
+        int frames = (int) (SAMPLE_RATE * seconds);
+        byte[] pcm = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE) * 8000);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm), format, frames)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+        return path;
+    }
+
+    private static LyricsProvider.LyricsResult lyrics(int seconds) {
+        List<LyricsProvider.LyricLine> lines = new ArrayList<>();
+        for (int t = 0; t + 3 <= seconds; t += 3) {
+            lines.add(new LyricsProvider.LyricLine("Line at " + t + " seconds", (double) t, t + 3.0));
+        }
+        return new LyricsProvider.LyricsResult(lines, true);
+    }
+}
@@ -0,0 +1,53 @@
+package com.karaoke.service.video;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FilterGraphBuilderTest {
+
+    @Test
+    void build_ShouldMixAudioAndBurnSubtitlesInOneGraph() {
+        String graph = new FilterGraphBuilder("0:v")
+                .audio("1:a", 1.0)
+                .audio("2:a", 0.3)
+                .subtitles("/tmp/job 1/subtitles.srt", "FontSize=24,BorderStyle=1")
+                .build();
+
+        assertThat(graph).isEqualTo("[0:v]subtitles=filename=/tmp/job 1/subtitles.srt"
+                + ":force_style=FontSize=24\\,BorderStyle=1[v];"
+                + "[1:a]anull[a0];[2:a]volume=0.30[a1];"
+                + "[a0][a1]amix=inputs=2:duration=first:dropout_transition=2[a]");
+    }
+
+    @Test
+    void build_ShouldPassThroughSingleAudioInputWithoutVideoFilters() {
+        String graph = new FilterGraphBuilder("0:v").audio("1:a", 1.0).build();
+
+        assertThat(graph).isEqualTo("[0:v]null[v];[1:a]anull[a]");
+    }
+
+    @Test
+    void build_ShouldEscapeSpecialCharactersInSubtitlePath() {
+        String graph = new FilterGraphBuilder("0:v")
+                .audio("1:a", 1.0)
+                .scale(1280, 720)
+                .subtitles("C:\\jobs\\it's[1].srt", null)
+                .build();
+
+        assertThat(graph).startsWith("[0:v]scale=1280:720,subtitles=filename=C\\\\:/jobs/it\\\\\\'s\\[1\\].srt[v]");
+        assertThatThrownBy(() -> new FilterGraphBuilder("0:v").build()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void buildVideo_ShouldShiftSubtitleTimingForTimelineChunk() {
+        String graph = new FilterGraphBuilder("0:v")
+                .subtitles("/tmp/subtitles.srt", null)
+                .timeOffset(120)
+                .buildVideo();
+
+        assertThat(graph).isEqualTo("[0:v]setpts=PTS+120.000/TB,subtitles=filename=/tmp/subtitles.srt,"
+                + "setpts=PTS-STARTPTS[v]");
+    }
+}
@@ -0,0 +1,211 @@
+package com.karaoke.service.video;
+
+import com.karaoke.config.FileStorageConfig;
+import com.karaoke.config.PipelineExecutors;
+import com.karaoke.model.dto.OutputMode;
+import com.karaoke.model.dto.RenderQuality;
+import com.karaoke.service.audio.AudioFiles;
+import com.karaoke.service.process.ProcessRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class KaraokeVideoGeneratorServiceTest {
+
+    private KaraokeVideoGeneratorService generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = new KaraokeVideoGeneratorService(mock(FileStorageConfig.class), mock(ProcessRunner.class),
+                mock(PipelineExecutors.class));
+        ReflectionTestUtils.setField(generator, "ffmpegPath", "ffmpeg");
+        ReflectionTestUtils.setField(generator, "backgroundColor", "black");
+    }
+
+    @Test
+    void buildArgs_ShouldEncodeVideoWithTierSettingsWhenBurningSubtitles() {
+        List<String> args = generator.buildArgs("inst.wav", "vocals.wav", 0.3, "subs.srt",
+                RenderQuality.DRAFT, OutputMode.BURNED, "out.mp4", null);
+
+        assertThat(args).containsSubsequence("-f", "lavfi", "-i", "color=c=black:s=854x480:r=25",
+                "-i", "inst.wav", "-i", "vocals.wav", "-filter_complex");
+        assertThat(args).containsSubsequence("-map", "[v]", "-map", "[a]", "-c:v", "libx264",
+                "-preset", "ultrafast", "-crf", "28");
+        assertThat(args).doesNotContain("-tune", "-threads");
+        assertThat(args).containsSubsequence("-movflags", "+faststart", "out.mp4");
+    }
+
+    @Test
+    void buildArgs_ShouldBurnKaraokeSubtitlesWithTheirOwnStyle() {
+        List<String> args = generator.buildArgs("inst.wav", null, 0.3, "subs.ass",
+                RenderQuality.DRAFT, OutputMode.BURNED, "out.mp4", null);
+
+        String graph = args.get(args.indexOf("-filter_complex") + 1);
+        assertThat(graph).contains("subtitles=filename=subs.ass").doesNotContain("force_style");
+    }
+
+    @Test
+    void buildArgs_ShouldTeeHlsSegmentsAlongsideTheFile() {
+        Path hlsDir = Paths.get("/data/output/7_hls");
+        List<String> args = generator.buildArgs("inst.wav", null, 0.3, "subs.srt",
+                RenderQuality.STANDARD, OutputMode.BURNED, "/data/output/7_karaoke.mp4", hlsDir);
+
+        assertThat(args).containsSubsequence("-force_key_frames", "expr:gte(t,n_forced*4)",
+                "-flags", "+global_header", "-f", "tee");
+        String tee = args.get(args.size() - 1);
+        assertThat(tee).startsWith("[f=mp4:movflags=+faststart]/data/output/7_karaoke.mp4|[f=hls:hls_time=4:");
+        assertThat(tee).contains("hls_segment_type=fmp4", "hls_playlist_type=event",
+                "hls_segment_filename=/data/output/7_hls/segment_%05d.m4s");
+        assertThat(tee).endsWith("]/data/output/7_hls/playlist.m3u8");
+        assertThat(args).doesNotContain("-movflags");
+    }
+
+    @Test
+    void buildArgs_ShouldMuxSoftSubtitlesWithoutEncodingVideo() {
+        List<String> args = generator.buildArgs("inst.wav", null, 0.3, "subs.srt",
+                RenderQuality.HIGH, OutputMode.SOFT_SUBTITLES, "out.mp4", null);
+
+        assertThat(args).containsSubsequence("-i", "inst.wav", "-i", "subs.srt",
+                "-filter_complex", "[0:a]anull[a]", "-map", "[a]", "-map", "1:s", "-c:s", "mov_text", "-c:a", "aac");
+        assertThat(args).doesNotContain("lavfi", "-c:v", "[v]");
+    }
+
+    @Test
+    void buildArgs_ShouldProduceAudioOnlyOutput() {
+        List<String> args = generator.buildArgs("inst.wav", "vocals.wav", 0.5, null,
+                RenderQuality.STANDARD, OutputMode.AUDIO_ONLY, "out.m4a", null);
+
+        assertThat(args).containsSubsequence("-i", "inst.wav", "-i", "vocals.wav", "-filter_complex",
+                "[0:a]anull[a0];[1:a]volume=0.50[a1];[a0][a1]amix=inputs=2:duration=first:dropout_transition=2[a]",
+                "-map", "[a]", "-c:a", "aac");
+        assertThat(args).doesNotContain("-c:v", "-c:s");
+    }
+
+    @Test
+    void buildArgs_ShouldWritePcmForWavAudioOnlyOutput() {
+        List<String> args = generator.buildArgs("inst.flac", "vocals.flac", 0.5, null,
+                RenderQuality.STANDARD, OutputMode.AUDIO_ONLY, "out.wav", null);
+
+        assertThat(args).containsSubsequence("-map", "[a]", "-c:a", "pcm_s16le");
+        assertThat(args.get(args.size() - 1)).isEqualTo("out.wav");
+        assertThat(args).doesNotContain("-movflags", "aac");
+    }
+
+    @Test
+    void generateKaraokeVideo_ShouldMixWavStemsWithoutFfmpeg(@TempDir Path dir) throws Exception {
+        ProcessRunner processRunner = mock(ProcessRunner.class);
+        FileStorageConfig storage = mock(FileStorageConfig.class);
+        when(storage.getOutputDirPath()).thenReturn(dir.toString());
+        generator = new KaraokeVideoGeneratorService(storage, processRunner, mock(PipelineExecutors.class));
+        Path instrumental = silence(dir.resolve("instrumental.wav"));
+        Path vocals = silence(dir.resolve("vocals.wav"));
+
+        String output = generator.generateKaraokeVideo(instrumental.toString(), vocals.toString(), null, true, 0.3,
+                RenderQuality.STANDARD, OutputMode.AUDIO_ONLY, false, "9", progress -> { });
+
+        assertThat(output).endsWith("9_karaoke.wav");
+        assertThat(AudioFiles.durationSeconds(Path.of(output))).isEqualTo(1.0);
+        verifyNoInteractions(processRunner);
+    }
+
+    @Test
+    void generateKaraokeVideo_ShouldMixWithFfmpegForFlacStemsOrM4aOutput(@TempDir Path dir) throws Exception {
+        ProcessRunner processRunner = mock(ProcessRunner.class);
+        FileStorageConfig storage = mock(FileStorageConfig.class);
+        when(storage.getOutputDirPath()).thenReturn(dir.toString());
+        generator = new KaraokeVideoGeneratorService(storage, processRunner, mock(PipelineExecutors.class));
+        ReflectionTestUtils.setField(generator, "ffmpegPath", "ffmpeg");
+        // Stems cached as FLAC by a video job, which StemMixer does not read
+        Path instrumental = Files.write(dir.resolve("instrumental.flac"), "fLaC".getBytes());
+        Path vocals = Files.write(dir.resolve("vocals.flac"), "fLaC".getBytes());
+
+        String wav = generator.generateKaraokeVideo(instrumental.toString(), vocals.toString(), null, true, 0.3,
+                RenderQuality.STANDARD, OutputMode.AUDIO_ONLY, false, "9", progress -> { });
+        ReflectionTestUtils.setField(generator, "audioOnlyFormat", "m4a");
+        String m4a = generator.generateKaraokeVideo(instrumental.toString(), vocals.toString(), null, true, 0.3,
+                RenderQuality.STANDARD, OutputMode.AUDIO_ONLY, false, "9", progress -> { });
+
+        assertThat(wav).endsWith("9_karaoke.wav");
+        assertThat(m4a).endsWith("9_karaoke.m4a");
+        verify(processRunner, times(2)).run(any());
+    }
+
+    @Test
+    void mixesStemsInJvm_ShouldHoldOnlyForUnstreamedWavAudioOnlyOutput() {
+        assertThat(generator.mixesStemsInJvm(OutputMode.AUDIO_ONLY, false)).isTrue();
+        assertThat(generator.mixesStemsInJvm(OutputMode.AUDIO_ONLY, true)).isFalse();
+        assertThat(generator.mixesStemsInJvm(OutputMode.BURNED, false)).isFalse();
+        ReflectionTestUtils.setField(generator, "audioOnlyFormat", "m4a");
+        assertThat(generator.mixesStemsInJvm(OutputMode.AUDIO_ONLY, false)).isFalse();
+    }
+
+    @Test
+    void planChunks_ShouldCoverTimelineAndFoldShortRemainder() {
+        List<KaraokeVideoGeneratorService.RenderChunk> chunks = KaraokeVideoGeneratorService.planChunks(250, 60);
+
+        assertThat(chunks).extracting(KaraokeVideoGeneratorService.RenderChunk::getStart)
+                .containsExactly(0.0, 60.0, 120.0, 180.0);
+        assertThat(chunks.get(3).getLength()).isEqualTo(70.0);
+        assertThat(KaraokeVideoGeneratorService.planChunks(200, 60)).hasSize(4);
+    }
+
+    @Test
+    void planChunks_ShouldCutWholeFramesAndCoverAPartialLastFrame() {
+        List<KaraokeVideoGeneratorService.RenderChunk> chunks = KaraokeVideoGeneratorService.planChunks(100.01, 60);
+
+        assertThat(chunks).extracting(KaraokeVideoGeneratorService.RenderChunk::getLength)
+                .containsExactly(60.0, 40.04);
+        assertThat(chunks.get(1).getStart()).isEqualTo(60.0);
+    }
+
+    @Test
+    void buildChunkArgs_ShouldEncodeVideoSliceWithShiftedSubtitles() {
+        List<String> args = generator.buildChunkArgs("subs.srt", RenderQuality.STANDARD,
+                new KaraokeVideoGeneratorService.RenderChunk(2, 120, 60), "chunk_0002.mp4");
+
+        assertThat(args).containsSubsequence("-f", "lavfi", "-i", "color=c=black:s=1280x720:r=25:d=60.000",
+                "-filter_complex");
+        assertThat(args.get(args.indexOf("-filter_complex") + 1))
+                .startsWith("[0:v]setpts=PTS+120.000/TB,subtitles=filename=subs.srt:force_style=");
+        assertThat(args).containsSubsequence("-map", "[v]", "-c:v", "libx264", "-threads", "4", "-an", "chunk_0002.mp4");
+        assertThat(args).doesNotContain("-c:a");
+    }
+
+    @Test
+    void buildConcatArgs_ShouldCopyVideoAndMixAudioOverWholeSong() {
+        List<String> args = generator.buildConcatArgs("chunks.txt", "inst.wav", "vocals.wav", 0.3, "out.mp4");
+
+        assertThat(args).containsSubsequence("-f", "concat", "-safe", "0", "-i", "chunks.txt",
+                "-i", "inst.wav", "-i", "vocals.wav", "-filter_complex",
+                "[1:a]anull[a0];[2:a]volume=0.30[a1];[a0][a1]amix=inputs=2:duration=first:dropout_transition=2[a]",
+                "-map", "0:v", "-map", "[a]", "-c:v", "copy", "-c:a", "aac");
+        assertThat(args).containsSubsequence("-movflags", "+faststart", "out.mp4");
+    }
+
+    private static Path silence(Path path) throws Exception {
+        AudioFormat format = new AudioFormat(8000f, 16, 2, true, false);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(new byte[8000 * 4]), format, 8000)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+        return path;
+    }
+}
@@ -0,0 +1,56 @@
+package com.karaoke.service.video;
+
+import com.karaoke.service.lyrics.LyricsProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubtitleWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAss_ShouldTagEachWordWithItsDuration() throws Exception {
+        LyricsProvider.LyricLine line = new LyricsProvider.LyricLine("Hello {big} world", 61.5, 64.0, List.of(
+                new LyricsProvider.LyricWord("Hello", 61.5, 62.0),
+                new LyricsProvider.LyricWord("{big}", 62.0, 62.75),
+                new LyricsProvider.LyricWord("world", 63.25, 64.0)));
+        Path ass = dir.resolve("subtitles.ass");
+
+        SubtitleWriter.writeAss(List.of(line), ass);
+
+        List<String> lines = Files.readAllLines(ass);
+        assertThat(lines).contains("[Events]");
+        assertThat(lines.get(lines.size() - 1)).isEqualTo(
+                "Dialogue: 0,0:01:01.50,0:01:04.00,Karaoke,,0,0,0,,{\\k50}Hello {\\k75}(big) {\\k50}{\\k75}world");
+    }
+
+    @Test
+    void writeAss_ShouldSpreadWordsOverLinesTimedAsAWhole() throws Exception {
+        Path ass = dir.resolve("subtitles.ass");
+
+        SubtitleWriter.writeAss(List.of(new LyricsProvider.LyricLine("ab abcd", 10.0, 11.0)), ass);
+
+        List<String> lines = Files.readAllLines(ass);
+        assertThat(lines.get(lines.size() - 1)).endsWith(",,{\\k38}ab {\\k62}abcd");
+    }
+
+    @Test
+    void writeSrt_ShouldGiveUntimedLinesConsecutiveSlots() throws Exception {
+        Path srt = dir.resolve("subtitles.srt");
+
+        SubtitleWriter.writeSrt(List.of(
+                new LyricsProvider.LyricLine("timed", 3661.25, 3663.0),
+                new LyricsProvider.LyricLine("untimed", null, null)), srt);
+
+        assertThat(Files.readAllLines(srt)).containsExactly(
+                "1", "01:01:01,250 --> 01:01:03,000", "timed", "",
+                "2", "00:00:03,000 --> 00:00:06,000", "untimed", "");
+    }
+}